@@ -0,0 +1,108 @@
+package dev.platonov.bank.accountapi.benchmarks;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * In-memory JDBC objects, so the mappers are measured without a database and a driver.
+ */
+final class FakeJdbc {
+
+    private FakeJdbc() {
+    }
+
+    static Connection connection() {
+        return (Connection) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> defaultValue(method));
+    }
+
+    /**
+     * A result set positioned on one row forever. Timestamps are given as {@link Timestamp}
+     * and returned as {@link OffsetDateTime} too, like the driver does.
+     */
+    static ResultSet row(String[] labels, Object[] values) {
+        var offsetDateTimes = Arrays.stream(values)
+                .map(value -> value instanceof Timestamp
+                        ? ((Timestamp) value).toLocalDateTime().atZone(ZoneId.systemDefault()).toOffsetDateTime()
+                        : null)
+                .toArray();
+        var metaData = (ResultSetMetaData) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return labels.length;
+                        case "getColumnLabel":
+                        case "getColumnName":
+                            return labels[(int) args[0] - 1];
+                        default:
+                            return defaultValue(method);
+                    }
+                });
+        var wasNull = new boolean[1];
+
+        return (ResultSet) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMetaData":
+                            return metaData;
+                        case "next":
+                            return true;
+                        case "wasNull":
+                            return wasNull[0];
+                        case "findColumn":
+                            return Arrays.asList(labels).indexOf((String) args[0]) + 1;
+                        default:
+                            break;
+                    }
+
+                    if (!method.getName().startsWith("get") || args == null || args.length == 0) {
+                        return defaultValue(method);
+                    }
+
+                    var index = args[0] instanceof String
+                            ? Arrays.asList(labels).indexOf((String) args[0])
+                            : (int) args[0] - 1;
+                    var value = args.length == 2 && OffsetDateTime.class.equals(args[1])
+                            ? offsetDateTimes[index]
+                            : values[index];
+                    wasNull[0] = value == null;
+
+                    switch (method.getName()) {
+                        case "getLong":
+                            return value == null ? 0L : ((Number) value).longValue();
+                        case "getInt":
+                            return value == null ? 0 : ((Number) value).intValue();
+                        case "getBoolean":
+                            return value != null && (Boolean) value;
+                        case "getString":
+                            return value == null ? null : value.toString();
+                        case "getBigDecimal":
+                            return value == null ? null : new BigDecimal(value.toString());
+                        default:
+                            return value;
+                    }
+                });
+    }
+
+    private static Object defaultValue(Method method) {
+        var type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
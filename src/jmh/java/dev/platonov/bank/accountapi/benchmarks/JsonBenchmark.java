@@ -0,0 +1,59 @@
+package dev.platonov.bank.accountapi.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.platonov.bank.accountapi.models.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the REST responses and the Kafka payloads with an ObjectMapper configured like Spring Boot's.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonBenchmark {
+    private static final String ID = "5f0c6ad4-8a2c-4b5c-9a59-1c1e1f8e8d11";
+
+    private ObjectMapper mapper;
+    private Account account;
+    private Reserve reserve;
+    private DeniedReserveEvent deniedReserveEvent;
+
+    @Setup
+    public void setUp() {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        account = new Account(1L, new BigDecimal("1000.25"));
+        reserve = Reserve.withdraw(ID, 1, new BigDecimal("10.50"));
+        deniedReserveEvent = DeniedReserveEvent.builder()
+                .reserveOption(ReserveOption.builder()
+                        .reserveType(ReserveType.WITHDRAW)
+                        .accountId(1)
+                        .id(ID)
+                        .amount(new BigDecimal("10.50"))
+                        .build())
+                .reason(DenyReason.NOT_ENOUGH_MONEY)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] account() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] reserve() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(reserve);
+    }
+
+    @Benchmark
+    public byte[] deniedReserveEvent() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(deniedReserveEvent);
+    }
+}
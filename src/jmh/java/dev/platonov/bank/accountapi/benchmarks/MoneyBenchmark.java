@@ -0,0 +1,56 @@
+package dev.platonov.bank.accountapi.benchmarks;
+
+import dev.platonov.bank.accountapi.models.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The funds check of a withdraw reserve, on BigDecimal amounts as before Money and on minor units.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MoneyBenchmark {
+    private BigDecimal amount;
+    private BigDecimal reserved;
+    private BigDecimal reserving;
+    private long amountMinor;
+    private long reservedMinor;
+    private long reservingMinor;
+
+    @Setup
+    public void setUp() {
+        amount = new BigDecimal("1000.25");
+        reserved = new BigDecimal("250.50");
+        reserving = new BigDecimal("10.75");
+        amountMinor = Money.minorUnits(amount);
+        reservedMinor = Money.minorUnits(reserved);
+        reservingMinor = Money.minorUnits(reserving);
+    }
+
+    @Benchmark
+    public boolean bigDecimalHasEnoughMoney() {
+        var available = amount.subtract(reserved);
+        return available.subtract(reserving).compareTo(BigDecimal.ZERO) >= 0;
+    }
+
+    @Benchmark
+    public boolean minorUnitsHasEnoughMoney() { // as LedgerAccountManager.LedgerAccount.canHold
+        return Money.hasEnoughMoney(Money.subtract(amountMinor, reservedMinor), reservingMinor);
+    }
+
+    @Benchmark
+    public long minorUnitsHold() { // as LedgerAccountManager.LedgerAccount.hold
+        return Money.add(reservedMinor, reservingMinor);
+    }
+
+    @Benchmark
+    public long toMinorUnits() { // at the edges, once per reserve
+        return Money.minorUnits(reserving);
+    }
+}
@@ -0,0 +1,49 @@
+package dev.platonov.bank.accountapi.benchmarks;
+
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a reserve like BasicAccountManager.reserveWithdraw does before saving it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReserveBuildingBenchmark {
+    private static final String ID = "5f0c6ad4-8a2c-4b5c-9a59-1c1e1f8e8d11";
+    private static final BigDecimal AMOUNT = new BigDecimal("10.50");
+
+    private ReserveOption option;
+
+    @Setup
+    public void setUp() {
+        option = option();
+    }
+
+    @Benchmark
+    public Reserve fromOption() {
+        return Reserve.from(option);
+    }
+
+    @Benchmark
+    public Reserve optionAndReserve() {
+        return Reserve.from(option());
+    }
+
+    private static ReserveOption option() {
+        return ReserveOption.builder()
+                .reserveType(ReserveType.WITHDRAW)
+                .accountId(1)
+                .id(ID)
+                .amount(AMOUNT)
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package dev.platonov.bank.accountapi.benchmarks;
+
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.repositories.AccountRowMapper;
+import dev.platonov.bank.accountapi.repositories.ReserveRowMapper;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.mapper.reflect.ConstructorMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.postgres.PostgresPlugin;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps rows with the mappers registered in JdbiConfig for each account-api.jdbi.row-mapper, specialized once
+ * per result set like Jdbi does for a query. Bulk reads map {@value #BULK_ROWS} rows per result set,
+ * like loading the ledger or the open reserves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RowMapperBenchmark {
+    private static final int BULK_ROWS = 1000;
+
+    @Param({"constructor", "index"})
+    public String rowMapper;
+
+    private Handle handle;
+    private StatementContext ctx;
+    private ResultSet accountRow;
+    private ResultSet reserveRow;
+    private RowMapper<Account> accountMapper;
+    private RowMapper<Reserve> reserveMapper;
+
+    @Setup
+    public void setUp() throws SQLException {
+        var jdbi = Jdbi.create(FakeJdbc::connection)
+                .installPlugin(new PostgresPlugin());
+        if ("constructor".equals(rowMapper)) { // sync with JdbiConfig
+            jdbi.registerRowMapper(ConstructorMapper.factory(Account.class));
+            jdbi.registerRowMapper(ConstructorMapper.factory(Reserve.class));
+        } else {
+            jdbi.registerRowMapper(Account.class, new AccountRowMapper());
+            jdbi.registerRowMapper(Reserve.class, new ReserveRowMapper());
+        }
+
+        handle = jdbi.open();
+        ctx = handle.createQuery("select").getContext();
+
+        var now = new Timestamp(System.currentTimeMillis());
+        accountRow = FakeJdbc.row(
+                new String[]{"id", "amount", "active", "created_at", "updated_at", "version"},
+                new Object[]{1L, 100025L, true, now, now, 7L}); // amounts in minor units
+        reserveRow = FakeJdbc.row(
+                new String[]{"id", "account_id", "amount", "type", "created_at", "expires_at"},
+                new Object[]{"5f0c6ad4-8a2c-4b5c-9a59-1c1e1f8e8d11", 1L, 1050L, "WITHDRAW", now, null});
+
+        accountMapper = ctx.findRowMapperFor(Account.class).orElseThrow().specialize(accountRow, ctx);
+        reserveMapper = ctx.findRowMapperFor(Reserve.class).orElseThrow().specialize(reserveRow, ctx);
+    }
+
+    @TearDown
+    public void tearDown() {
+        handle.close();
+    }
+
+    @Benchmark
+    public Account mapAccount() throws SQLException {
+        return accountMapper.map(accountRow, ctx);
+    }
+
+    @Benchmark
+    public Reserve mapReserve() throws SQLException {
+        return reserveMapper.map(reserveRow, ctx);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_ROWS)
+    public void bulkReadAccounts(Blackhole blackhole) throws SQLException {
+        var mapper = ctx.findRowMapperFor(Account.class).orElseThrow().specialize(accountRow, ctx);
+        for (int i = 0; i < BULK_ROWS; i++) {
+            blackhole.consume(mapper.map(accountRow, ctx));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_ROWS)
+    public void bulkReadReserves(Blackhole blackhole) throws SQLException {
+        var mapper = ctx.findRowMapperFor(Reserve.class).orElseThrow().specialize(reserveRow, ctx);
+        for (int i = 0; i < BULK_ROWS; i++) {
+            blackhole.consume(mapper.map(reserveRow, ctx));
+        }
+    }
+}
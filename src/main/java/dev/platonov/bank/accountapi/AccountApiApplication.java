@@ -1,66 +1,213 @@
 package dev.platonov.bank.accountapi;
 
+import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
 import dev.platonov.bank.accountapi.exceptions.ReserveNotFoundException;
-import dev.platonov.bank.accountapi.models.DeniedReserveEvent;
-import dev.platonov.bank.accountapi.models.Reserve;
-import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.*;
+import dev.platonov.bank.accountapi.repositories.ReserveOutboxRepository;
 import dev.platonov.bank.accountapi.services.AccountManager;
+import dev.platonov.bank.accountapi.services.AsyncAccountManager;
 import dev.platonov.bank.accountapi.services.ReserveIdValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
+@Slf4j
 @SpringBootApplication
 public class AccountApiApplication { // TODO: 15.06.2022 add javadocs
+    private static final String COMMITTED_RESERVE_OUT = "commitReserveBatch-out-0";
+    private static final String ROLLED_BACK_RESERVE_OUT = "rollbackReserveBatch-out-0";
 
     public static void main(String[] args) {
         SpringApplication.run(AccountApiApplication.class, args);
     }
 
+    // the events go through reserve_outbox, see ReserveOutboxRelay. a denial changes nothing,
+    // so its event is written on its own and a redelivered option is denied again if it's lost
+
     @Bean
-    public Consumer<ReserveOption> createReserve(AccountManager manager,
-                                                 ReserveIdValidator idValidator, StreamBridge streamBridge) {
-        return reserveOption -> {
+    public Consumer<ReserveOption> createReserve(AsyncAccountManager manager, ReserveIdValidator idValidator,
+                                                 ReserveOutboxRepository outbox, MeterRegistry registry) {
+        var timer = bindingTimer(registry, "createReserve");
+        return reserveOption -> timer.record(() -> {
             idValidator.throwIfInvalid(reserveOption.getId());
             try {
-                var reserve = manager.reserve(reserveOption);
-                streamBridge.send("prepared-reserve-out-0", reserve);
-            } catch (DeniedReserveException e) {
-                var deny = DeniedReserveEvent.builder()
-                        .reserveOption(reserveOption)
-                        .reason(e.getDenyReason())
-                        .build();
-                streamBridge.send("denied-reserve-out-0", deny);
+                join(manager.reserveAndPublish(reserveOption));
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof DeniedReserveException)) {
+                    throw e;
+                }
+                var reason = ((DeniedReserveException) e.getCause()).getDenyReason();
+                outbox.addDenied(List.of(denied(reserveOption, reason)));
             }
-        };
+        });
     }
 
     @Bean
-    public Function<String, Reserve> commitReserve(AccountManager manager, ReserveIdValidator idValidator) {
-        return id -> {
+    public Function<String, Reserve> commitReserve(AccountManager manager, AsyncAccountManager asyncManager,
+                                                   ReserveIdValidator idValidator, MeterRegistry registry) {
+        var timer = bindingTimer(registry, "commitReserve");
+        return id -> timer.record(() -> {
             idValidator.throwIfInvalid(id);
             return manager.getReserve(id)
                     .map(reserve -> {
-                        manager.commit(reserve);
+                        join(asyncManager.commit(reserve));
                         return reserve;
                     }).orElseThrow(() -> ReserveNotFoundException.withId(id));
-        };
+        });
     }
 
     @Bean
-    public Function<String, Reserve> rollbackReserve(AccountManager manager, ReserveIdValidator idValidator) {
-        return id -> {
+    public Function<String, Reserve> rollbackReserve(AccountManager manager, AsyncAccountManager asyncManager,
+                                                     ReserveIdValidator idValidator, MeterRegistry registry) {
+        var timer = bindingTimer(registry, "rollbackReserve");
+        return id -> timer.record(() -> {
             idValidator.throwIfInvalid(id);
             return manager.getReserve(id)
                     .map(reserve -> {
-                        manager.rollback(reserve);
+                        join(asyncManager.rollback(reserve));
                         return reserve;
                     }).orElseThrow(() -> ReserveNotFoundException.withId(id));
-        };
+        });
+    }
+
+    // batch mode: bind instead of the functions above with consumer.batch-mode = true
+
+    @Bean
+    public Consumer<List<ReserveOption>> createReserveBatch(AccountManager manager, ReserveIdValidator idValidator,
+                                                            ReserveOutboxRepository outbox, MeterRegistry registry) {
+        var timer = bindingTimer(registry, "createReserveBatch");
+        return reserveOptions -> timer.record(() -> {
+            var validOptions = new ArrayList<ReserveOption>(reserveOptions.size());
+            var indexes = new ArrayList<Integer>(reserveOptions.size()); // of the valid options in the batch
+            for (int i = 0; i < reserveOptions.size(); ++i) {
+                if (isValid(idValidator, reserveOptions.get(i).getId())) {
+                    validOptions.add(reserveOptions.get(i));
+                    indexes.add(i);
+                }
+            }
+
+            var denials = new ArrayList<DeniedReserveEvent>();
+            try {
+                var results = manager.reserveAllAndPublish(validOptions);
+                for (int i = 0; i < results.size(); ++i) {
+                    if (!results.get(i).isReserved()) {
+                        denials.add(denied(validOptions.get(i), results.get(i).getDenyReason()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("cannot reserve a batch of {} options, reserving one by one", validOptions.size(), e);
+                for (int i = 0; i < validOptions.size(); ++i) {
+                    try {
+                        reserveIsolated(manager, validOptions.get(i), denials);
+                    } catch (RuntimeException failed) {
+                        // the binder commits the offsets before the failed option and redelivers it and the rest,
+                        // so the denials of the options before it are written now
+                        outbox.addDenied(denials);
+                        var msg = String.format("cannot reserve %s", validOptions.get(i).getId());
+                        throw new BatchListenerFailedException(msg, failed, indexes.get(i));
+                    }
+                }
+            }
+            outbox.addDenied(denials);
+        });
+    }
+
+    // a message per handled reserve, to the destinations of commitReserve-out-0 and rollbackReserve-out-0
+
+    @Bean
+    public Consumer<List<String>> commitReserveBatch(AccountManager manager, ReserveIdValidator idValidator,
+                                                     StreamBridge streamBridge, MeterRegistry registry) {
+        var timer = bindingTimer(registry, "commitReserveBatch");
+        return ids -> timer.record(() -> handledReserves(manager.commitAll(validIds(idValidator, ids)))
+                .forEach(reserve -> streamBridge.send(COMMITTED_RESERVE_OUT, reserve)));
+    }
+
+    @Bean
+    public Consumer<List<String>> rollbackReserveBatch(AccountManager manager, ReserveIdValidator idValidator,
+                                                       StreamBridge streamBridge, MeterRegistry registry) {
+        var timer = bindingTimer(registry, "rollbackReserveBatch");
+        return ids -> timer.record(() -> handledReserves(manager.rollbackAll(validIds(idValidator, ids)))
+                .forEach(reserve -> streamBridge.send(ROLLED_BACK_RESERVE_OUT, reserve)));
+    }
+
+    private static Timer bindingTimer(MeterRegistry registry, String binding) {
+        return Timer.builder("account.binding")
+                .tag("binding", binding)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static void reserveIsolated(AccountManager manager, ReserveOption option,
+                                        List<DeniedReserveEvent> denials) {
+        try {
+            manager.reserveAndPublish(option);
+        } catch (DeniedReserveException e) {
+            denials.add(denied(option, e.getDenyReason()));
+        } catch (NotUniqueIdException e) {
+            denials.add(denied(option, DenyReason.NOT_UNIQUE_ID));
+        } catch (AccountNotFoundException e) {
+            denials.add(denied(option, DenyReason.ACCOUNT_NOT_FOUND));
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) { // rethrows unchecked failures as they are
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static DeniedReserveEvent denied(ReserveOption option, DenyReason reason) {
+        return DeniedReserveEvent.builder()
+                .reserveOption(option)
+                .reason(reason)
+                .build();
+    }
+
+    private static List<String> validIds(ReserveIdValidator idValidator, List<String> ids) {
+        return ids.stream()
+                .filter(id -> isValid(idValidator, id))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isValid(ReserveIdValidator idValidator, String id) {
+        try {
+            idValidator.throwIfInvalid(id);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("skipping reserve id = {}", id, e);
+            return false;
+        }
+    }
+
+    private static List<Reserve> handledReserves(List<ReserveHandleResult> results) {
+        var reserves = new ArrayList<Reserve>(results.size());
+        for (var result : results) {
+            if (result.isHandled()) {
+                reserves.add(result.getReserve());
+            } else {
+                log.warn("reserve id = {} is skipped as {}", result.getId(), result.getStatus());
+            }
+        }
+        return reserves;
     }
 }
@@ -0,0 +1,42 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.repositories.PgAccountChangeListener;
+import dev.platonov.bank.accountapi.services.BasicAccountService;
+import dev.platonov.bank.accountapi.services.CachingAccountService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "account-api.account-cache.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(AccountCacheProperties.class)
+public class AccountCacheConfig {
+
+    @Bean
+    @Primary
+    public CachingAccountService cachingAccountService(BasicAccountService service,
+                                                       AccountCacheProperties properties) {
+        return new CachingAccountService(service, properties.getMaximumSize(), properties.getExpireAfterWrite());
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "account-api.account-cache.listen", havingValue = "true", matchIfMissing = true)
+    public PgAccountChangeListener accountChangeListener(DataSourceProperties dataSourceProperties,
+                                                         CachingAccountService service,
+                                                         AccountCacheProperties properties) {
+        // LISTEN holds its connection for good, so it opens its own instead of taking one of the pool's
+        var dataSource = DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .url(dataSourceProperties.determineUrl())
+                .username(dataSourceProperties.determineUsername())
+                .password(dataSourceProperties.determinePassword())
+                .build();
+        return new PgAccountChangeListener(dataSource, service::invalidateAll, service::invalidateAll,
+                properties.getListenPollTimeout(), properties.getListenReconnectDelay());
+    }
+}
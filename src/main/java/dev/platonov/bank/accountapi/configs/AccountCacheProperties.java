@@ -0,0 +1,23 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.account-cache")
+public class AccountCacheProperties {
+
+    private boolean enabled = true;
+
+    private long maximumSize = 10_000;
+
+    private Duration expireAfterWrite = Duration.ofSeconds(5);
+
+    private boolean listen = true; // to the changes made by the other instances
+
+    private Duration listenPollTimeout = Duration.ofMillis(500);
+
+    private Duration listenReconnectDelay = Duration.ofSeconds(1);
+}
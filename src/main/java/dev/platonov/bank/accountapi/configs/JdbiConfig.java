@@ -1,26 +1,69 @@
 package dev.platonov.bank.accountapi.configs;
 
+import com.zaxxer.hikari.HikariDataSource;
 import dev.platonov.bank.accountapi.models.Account;
 import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.repositories.AccountRowMapper;
+import dev.platonov.bank.accountapi.repositories.JdbiRouter;
+import dev.platonov.bank.accountapi.repositories.ReserveRowMapper;
+import dev.platonov.bank.accountapi.repositories.RoundTripCounter;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.mapper.reflect.ConstructorMapper;
+import org.jdbi.v3.core.statement.SqlStatements;
 import org.jdbi.v3.postgres.PostgresPlugin;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.sql.DataSource;
 
 @Configuration
+@EnableConfigurationProperties({JdbiProperties.class, ReplicaProperties.class})
 public class JdbiConfig {
 
     @Bean
-    public Jdbi jdbi(DataSource dataSource) {
-        var jdbi = Jdbi.create(dataSource).installPlugin(new PostgresPlugin());
+    public RoundTripCounter roundTripCounter() {
+        return new RoundTripCounter();
+    }
 
-        jdbi.registerRowMapper(ConstructorMapper.factory(Account.class));
-        jdbi.registerRowMapper(ConstructorMapper.factory(Reserve.class));
+    @Bean
+    public Jdbi jdbi(DataSource dataSource, JdbiProperties jdbiProperties, RoundTripCounter roundTripCounter) {
+        return configure(Jdbi.create(dataSource), jdbiProperties, roundTripCounter);
+    }
 
-        return jdbi;
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public JdbiRouter jdbiRouter(Jdbi jdbi, JdbiProperties jdbiProperties, RoundTripCounter roundTripCounter,
+                                 ReplicaProperties properties) {
+        if (!properties.isEnabled()) {
+            return JdbiRouter.primaryOnly(jdbi);
+        }
+
+        // not a bean, so the primary DataSource is still auto-configured
+        var replicaPool = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(properties.getUrl())
+                .username(properties.getUsername())
+                .password(properties.getPassword())
+                .build();
+        replicaPool.setPoolName("replica");
+
+        var replica = configure(Jdbi.create(replicaPool), jdbiProperties, roundTripCounter);
+        return new JdbiRouter(jdbi, replica, replicaPool, properties.getMaxStaleness(), properties.getCheckInterval());
     }
 
+    private static Jdbi configure(Jdbi jdbi, JdbiProperties properties, RoundTripCounter roundTripCounter) {
+        jdbi.installPlugin(new PostgresPlugin());
+        jdbi.getConfig(SqlStatements.class).setSqlLogger(roundTripCounter);
+
+        if (properties.getRowMapper() == JdbiProperties.RowMapper.CONSTRUCTOR) {
+            jdbi.registerRowMapper(ConstructorMapper.factory(Account.class));
+            jdbi.registerRowMapper(ConstructorMapper.factory(Reserve.class));
+        } else {
+            jdbi.registerRowMapper(Account.class, new AccountRowMapper());
+            jdbi.registerRowMapper(Reserve.class, new ReserveRowMapper());
+        }
+
+        return jdbi;
+    }
 }
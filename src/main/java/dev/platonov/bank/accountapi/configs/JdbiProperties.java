@@ -0,0 +1,15 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("account-api.jdbi")
+public class JdbiProperties {
+
+    private RowMapper rowMapper = RowMapper.INDEX;
+
+    public enum RowMapper {
+        INDEX, CONSTRUCTOR
+    }
+}
@@ -0,0 +1,18 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.services.AccountManager;
+import dev.platonov.bank.accountapi.services.AsyncAccountManager;
+import dev.platonov.bank.accountapi.services.LaneAccountManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(LaneProperties.class)
+public class LaneConfig {
+
+    @Bean
+    public AsyncAccountManager asyncAccountManager(AccountManager manager, LaneProperties properties) {
+        return new LaneAccountManager(manager, properties.getCount(), properties.getQueueCapacity());
+    }
+}
@@ -0,0 +1,13 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("account-api.lanes")
+public class LaneProperties {
+
+    private int count = 0; // 0 runs operations on the caller's thread
+
+    private int queueCapacity = 1024;
+}
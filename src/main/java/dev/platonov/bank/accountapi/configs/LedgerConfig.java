@@ -0,0 +1,20 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.repositories.LedgerRepository;
+import dev.platonov.bank.accountapi.services.LedgerAccountManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "account-api.manager", havingValue = "ledger")
+@EnableConfigurationProperties(LedgerProperties.class)
+public class LedgerConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public LedgerAccountManager ledgerAccountManager(LedgerRepository repository, LedgerProperties properties) {
+        return new LedgerAccountManager(repository, properties.getBatchSize(),
+                properties.getCommitTimeout(), properties.getRetryInterval());
+    }
+}
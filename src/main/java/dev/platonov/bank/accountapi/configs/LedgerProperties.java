@@ -0,0 +1,17 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.ledger")
+public class LedgerProperties {
+
+    private int batchSize = 1000; // journal entries per transaction at most
+
+    private Duration commitTimeout = Duration.ofSeconds(5); // an operation waits for its entry to be persisted
+
+    private Duration retryInterval = Duration.ofMillis(100); // while the database is unreachable
+}
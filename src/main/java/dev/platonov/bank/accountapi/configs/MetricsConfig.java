@@ -0,0 +1,139 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.repositories.JdbiRouter;
+import dev.platonov.bank.accountapi.repositories.PgAccountChangeListener;
+import dev.platonov.bank.accountapi.repositories.ReserveIdFilter;
+import dev.platonov.bank.accountapi.repositories.ReserveTransactionStrategy;
+import dev.platonov.bank.accountapi.repositories.RoundTripCounter;
+import dev.platonov.bank.accountapi.services.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "account-api.manager", havingValue = "basic", matchIfMissing = true)
+    public MeteredAccountManager meteredBasicAccountManager(BasicAccountManager manager,
+                                                            RoundTripCounter roundTripCounter,
+                                                            MeterRegistry registry) {
+        return new MeteredAccountManager(manager, roundTripCounter, registry);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "account-api.manager", havingValue = "ledger")
+    public MeteredAccountManager meteredLedgerAccountManager(LedgerAccountManager manager,
+                                                             RoundTripCounter roundTripCounter,
+                                                             MeterRegistry registry) {
+        return new MeteredAccountManager(manager, roundTripCounter, registry);
+    }
+
+    // the stats the components already keep, read on scrape
+    @Bean
+    public MeterBinder accountApiMeters(ReserveTransactionStrategy strategy,
+                                        AsyncAccountManager asyncManager,
+                                        ReserveIdFilter idFilter,
+                                        JdbiRouter router,
+                                        OpenReserveRegistry openReserveRegistry,
+                                        ObjectProvider<CachingAccountService> cache,
+                                        ObjectProvider<ReserveExpirySweeper> expirySweeper,
+                                        ObjectProvider<ReserveOutboxRelay> outboxRelay,
+                                        ReservePartitionManager partitionManager,
+                                        ObjectProvider<PgAccountChangeListener> listener) {
+        return registry -> {
+            bindTransactions(registry, strategy);
+            bindLanes(registry, asyncManager);
+
+            Gauge.builder("reserve.id.filter.insertions", idFilter, ReserveIdFilter::getInsertions)
+                    .register(registry);
+            Gauge.builder("reserve.id.filter.expected.fpp", idFilter, ReserveIdFilter::getExpectedFpp)
+                    .register(registry);
+            Gauge.builder("reserve.id.filter.observed.fpp", idFilter, ReserveIdFilter::getObservedFpp)
+                    .register(registry);
+            Gauge.builder("reserve.id.filter.memory", idFilter, ReserveIdFilter::getMemoryBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+
+            Gauge.builder("reserve.registry.size", openReserveRegistry, OpenReserveRegistry::size)
+                    .register(registry);
+
+            expirySweeper.ifAvailable(sweeper -> FunctionCounter.builder("reserve.expired", sweeper,
+                            ReserveExpirySweeper::getExpiredCount)
+                    .register(registry));
+
+            outboxRelay.ifAvailable(relay -> FunctionCounter.builder("reserve.outbox.published", relay,
+                            ReserveOutboxRelay::getPublishedCount)
+                    .register(registry));
+
+            FunctionCounter.builder("reserve.partitions.dropped", partitionManager,
+                            ReservePartitionManager::getDroppedCount)
+                    .register(registry);
+
+            Gauge.builder("replica.lag", router, JdbiRouter::getReplicaLagMillis)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("replica.usable", router, r -> r.isReplicaUsable() ? 1 : 0)
+                    .register(registry);
+
+            cache.ifAvailable(service -> bindCache(registry, service));
+            listener.ifAvailable(changes -> Gauge.builder("account.cache.listener.lag", changes,
+                            PgAccountChangeListener::getLagMillis)
+                    .baseUnit("milliseconds")
+                    .register(registry));
+        };
+    }
+
+    private static void bindTransactions(MeterRegistry registry, ReserveTransactionStrategy strategy) {
+        var strategyName = strategy.getClass().getSimpleName();
+        FunctionCounter.builder("reserve.transactions", strategy, s -> s.getStats().getTransactions())
+                .tag("strategy", strategyName)
+                .register(registry);
+        FunctionCounter.builder("reserve.transaction.retries", strategy, s -> s.getStats().getRetries())
+                .tag("strategy", strategyName)
+                .description("serialization failures retried by saveIfAllowed")
+                .register(registry);
+        FunctionCounter.builder("reserve.transaction.exhausted.retries", strategy,
+                        s -> s.getStats().getExhaustedRetries())
+                .tag("strategy", strategyName)
+                .register(registry);
+        FunctionTimer.builder("reserve.transaction.lock.waits", strategy,
+                        s -> s.getStats().getLockWaits(),
+                        s -> s.getStats().getLockWaitMillis(),
+                        TimeUnit.MILLISECONDS)
+                .tag("strategy", strategyName)
+                .register(registry);
+    }
+
+    private static void bindLanes(MeterRegistry registry, AsyncAccountManager asyncManager) {
+        var lanes = asyncManager.getQueueDepths().size();
+        for (int i = 0; i < lanes; ++i) {
+            var lane = i;
+            Gauge.builder("account.lanes.queue.depth", asyncManager, m -> m.getQueueDepths().get(lane))
+                    .tag("lane", String.valueOf(lane))
+                    .register(registry);
+        }
+    }
+
+    private static void bindCache(MeterRegistry registry, CachingAccountService service) {
+        FunctionCounter.builder("account.cache.hits", service, s -> s.getStats().hitCount())
+                .register(registry);
+        FunctionCounter.builder("account.cache.misses", service, s -> s.getStats().missCount())
+                .register(registry);
+        FunctionCounter.builder("account.cache.evictions", service, s -> s.getStats().evictionCount())
+                .register(registry);
+        Gauge.builder("account.cache.size", service, CachingAccountService::getSize)
+                .register(registry);
+    }
+}
@@ -0,0 +1,18 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.services.OpenReserveRegistry;
+import dev.platonov.bank.accountapi.services.ReserveService;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(OpenReserveRegistryProperties.class)
+public class OpenReserveRegistryConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public OpenReserveRegistry openReserveRegistry(ReserveService reserveService,
+                                                   OpenReserveRegistryProperties properties) {
+        return new OpenReserveRegistry(reserveService::getAll, properties.getTtl(), properties.getSweepInterval());
+    }
+}
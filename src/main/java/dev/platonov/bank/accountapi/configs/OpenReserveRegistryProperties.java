@@ -0,0 +1,15 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.reserve.registry")
+public class OpenReserveRegistryProperties {
+
+    private Duration ttl = Duration.ofHours(1); // older reserves are read from the database
+
+    private Duration sweepInterval = Duration.ofMinutes(1);
+}
@@ -0,0 +1,60 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.repositories.ReactiveReserveTransaction;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * The R2DBC side of the reactive profile, which serves the account routes with WebFlux on Netty.
+ * The Kafka functions and the background jobs keep using Jdbi.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(ReactiveProperties.class)
+public class ReactiveConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool reactiveConnectionPool(ReactiveProperties properties) {
+        var options = ConnectionFactoryOptions.parse(properties.getUrl())
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, properties.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, properties.getPassword())
+                .build();
+        var configuration = ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("reactive")
+                .maxSize(properties.getMaxPoolSize())
+                .build();
+        return new ConnectionPool(configuration);
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionPool reactiveConnectionPool) {
+        return DatabaseClient.create(reactiveConnectionPool);
+    }
+
+    @Bean
+    public ReactiveReserveTransaction reactiveReserveTransaction(ConnectionPool reactiveConnectionPool,
+                                                                 ReserveTransactionProperties properties) {
+        switch (properties.getStrategy()) {
+            case SINGLE_STATEMENT:
+                return ReactiveReserveTransaction.singleStatement();
+            case SERIALIZABLE:
+                // not a bean, @Transactional methods keep the JDBC transaction manager
+                var transactionManager = new R2dbcTransactionManager(reactiveConnectionPool);
+                return ReactiveReserveTransaction.serializable(transactionManager, properties.getMaxAttempts(),
+                        properties.getBackoffBase(), properties.getBackoffMax());
+            default:
+                var msg = String.format("reserve transaction strategy %s is not supported by the reactive profile",
+                        properties.getStrategy());
+                throw new IllegalArgumentException(msg);
+        }
+    }
+}
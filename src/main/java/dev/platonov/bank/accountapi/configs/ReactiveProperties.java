@@ -0,0 +1,17 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("account-api.reactive")
+public class ReactiveProperties {
+
+    private String url; // r2dbc:postgresql://host:port/database
+
+    private String username;
+
+    private String password;
+
+    private int maxPoolSize = 10; // the same as the JDBC pool, so the stacks compare on equal connections
+}
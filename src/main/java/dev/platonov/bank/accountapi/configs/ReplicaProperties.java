@@ -0,0 +1,23 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.replica")
+public class ReplicaProperties {
+
+    private boolean enabled = false;
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    private Duration maxStaleness = Duration.ofSeconds(1); // reads go to the primary if the replica lags more
+
+    private Duration checkInterval = Duration.ofSeconds(1);
+}
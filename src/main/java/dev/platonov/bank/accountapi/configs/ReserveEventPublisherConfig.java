@@ -0,0 +1,54 @@
+package dev.platonov.bank.accountapi.configs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.platonov.bank.accountapi.services.ReserveEventPublisher;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.stream.binder.kafka.properties.KafkaBinderConfigurationProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.MicrometerProducerListener;
+
+/**
+ * The reserve events skip the binder's producer to get acks per event, the topics are still the destinations
+ * of their bindings and the brokers and the producer configuration those of the Kafka binder.
+ */
+@Configuration
+@EnableConfigurationProperties(ReserveEventPublisherProperties.class)
+public class ReserveEventPublisherConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReserveEventPublisher reserveEventPublisher(KafkaProperties kafkaProperties,
+                                                       BindingServiceProperties bindingServiceProperties,
+                                                       Environment environment,
+                                                       ObjectMapper objectMapper,
+                                                       MeterRegistry registry,
+                                                       ReserveEventPublisherProperties properties) {
+        // the binder binds its properties in its own context, so they are bound again the same way here
+        var binderProperties = Binder.get(environment).bindOrCreate("spring.cloud.stream.kafka.binder",
+                Bindable.ofInstance(new KafkaBinderConfigurationProperties(kafkaProperties)));
+        // spring.kafka merged with spring.cloud.stream.kafka.binder, the brokers included
+        var producerProperties = binderProperties.mergedProducerConfiguration();
+        producerProperties.put(ProducerConfig.LINGER_MS_CONFIG, properties.getLinger().toMillis());
+        producerProperties.put(ProducerConfig.BATCH_SIZE_CONFIG, (int) properties.getBatchSize().toBytes());
+        producerProperties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, properties.getCompression());
+
+        var producerFactory = new DefaultKafkaProducerFactory<>(producerProperties,
+                new StringSerializer(), new ByteArraySerializer());
+        // kafka.producer.record.queue.time.* and kafka.producer.batch.size.* among the client's metrics
+        producerFactory.addListener(new MicrometerProducerListener<>(registry));
+
+        return new ReserveEventPublisher(producerFactory, objectMapper,
+                bindingServiceProperties::getBindingDestination, properties.getMaxInFlight(),
+                properties.getPermitTimeout(), registry);
+    }
+}
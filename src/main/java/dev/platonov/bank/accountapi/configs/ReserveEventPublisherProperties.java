@@ -0,0 +1,22 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.reserve.publisher")
+public class ReserveEventPublisherProperties {
+
+    private Duration linger = Duration.ofMillis(5); // how long the producer waits to fill a batch
+
+    private DataSize batchSize = DataSize.ofKilobytes(64); // per partition
+
+    private String compression = "lz4"; // none | gzip | snappy | lz4 | zstd
+
+    private int maxInFlight = 10000; // events waiting for their acks
+
+    private Duration permitTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,31 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.services.OpenReserveRegistry;
+import dev.platonov.bank.accountapi.services.ReserveEventPublisher;
+import dev.platonov.bank.accountapi.services.ReserveExpirySweeper;
+import dev.platonov.bank.accountapi.services.ReserveService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The ledger keeps its open reserves in memory and would miss the expired ones, so it has no sweeper.
+ */
+@Configuration
+@ConditionalOnExpression("${account-api.reserve.expiry.enabled:true} and '${account-api.manager:basic}' == 'basic'")
+@EnableConfigurationProperties(ReserveExpiryProperties.class)
+public class ReserveExpiryConfig {
+    private static final String EXPIRED_RESERVE_OUT = "expired-reserve-out-0";
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReserveExpirySweeper reserveExpirySweeper(ReserveService reserveService,
+                                                     OpenReserveRegistry openReserveRegistry,
+                                                     ReserveEventPublisher publisher,
+                                                     ReserveExpiryProperties properties) {
+        return new ReserveExpirySweeper(reserveService, openReserveRegistry,
+                reserve -> publisher.send(EXPIRED_RESERVE_OUT, reserve), // a failure is logged by the publisher
+                properties.getDefaultTtl(), properties.getBatchSize(), properties.getMaxBatches(),
+                properties.getSweepInterval());
+    }
+}
@@ -0,0 +1,21 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.reserve.expiry")
+public class ReserveExpiryProperties {
+
+    private boolean enabled = true;
+
+    private Duration defaultTtl = Duration.ofHours(24); // for the reserves without a ttl, null keeps them
+
+    private Duration sweepInterval = Duration.ofSeconds(10);
+
+    private int batchSize = 500; // reserves expired per transaction
+
+    private int maxBatches = 20; // per sweep, the rest waits for the next one
+}
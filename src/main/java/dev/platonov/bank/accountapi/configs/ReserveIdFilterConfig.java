@@ -0,0 +1,19 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.repositories.ReserveIdFilter;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ReserveIdFilterProperties.class)
+public class ReserveIdFilterConfig {
+
+    @Bean
+    public ReserveIdFilter reserveIdFilter(ReserveIdFilterProperties properties) {
+        if (!properties.isEnabled()) {
+            return ReserveIdFilter.disabled();
+        }
+        return ReserveIdFilter.create(properties.getExpectedInsertions(), properties.getFpp());
+    }
+}
@@ -0,0 +1,15 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("account-api.reserve.id-filter")
+public class ReserveIdFilterProperties {
+
+    private boolean enabled = true;
+
+    private long expectedInsertions = 10_000_000; // 10 000 000 ids take about 12 MB at fpp = 0.01
+
+    private double fpp = 0.01;
+}
@@ -0,0 +1,40 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.models.ReserveOutboxEvent;
+import dev.platonov.bank.accountapi.repositories.ReserveOutboxRepository;
+import dev.platonov.bank.accountapi.services.ReserveEventPublisher;
+import dev.platonov.bank.accountapi.services.ReserveOutboxRelay;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Configuration
+@ConditionalOnProperty(name = "account-api.reserve.outbox.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(ReserveOutboxProperties.class)
+public class ReserveOutboxConfig {
+    private static final String PREPARED_RESERVE_OUT = "prepared-reserve-out-0";
+    private static final String DENIED_RESERVE_OUT = "denied-reserve-out-0";
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReserveOutboxRelay reserveOutboxRelay(ReserveOutboxRepository repository, ReserveEventPublisher publisher,
+                                                 ReserveOutboxProperties properties) {
+        return new ReserveOutboxRelay(repository, events -> sendAll(publisher, events),
+                properties.getBatchSize(), properties.getMaxBatches(), properties.getSendTimeout(),
+                properties.getLease(), properties.getPollInterval(), properties.getSentRetention(),
+                properties.getPurgeInterval());
+    }
+
+    // the whole batch goes to the producer before the first ack is awaited, a failed send leaves it unsent
+    private static CompletableFuture<Void> sendAll(ReserveEventPublisher publisher, List<ReserveOutboxEvent> events) {
+        var sent = events.stream()
+                .map(event -> event.isPrepared()
+                        ? publisher.send(PREPARED_RESERVE_OUT, event.getPrepared())
+                        : publisher.send(DENIED_RESERVE_OUT, event.getDenied()))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(sent);
+    }
+}
@@ -0,0 +1,27 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.reserve.outbox")
+public class ReserveOutboxProperties {
+
+    private boolean enabled = true; // the events are still written, e.g. for the relays of other instances
+
+    private Duration pollInterval = Duration.ofMillis(50);
+
+    private int batchSize = 500; // events claimed and published at once
+
+    private int maxBatches = 20; // per poll, the rest waits for the next one
+
+    private Duration sendTimeout = Duration.ofSeconds(10); // for the acks of a batch, then it's left unsent
+
+    private Duration lease = Duration.ofSeconds(30); // of a claimed batch, longer than sendTimeout
+
+    private Duration sentRetention = Duration.ofHours(1);
+
+    private Duration purgeInterval = Duration.ofMinutes(1);
+}
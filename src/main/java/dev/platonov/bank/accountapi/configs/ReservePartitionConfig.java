@@ -0,0 +1,19 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.repositories.ReservePartitionRepository;
+import dev.platonov.bank.accountapi.services.ReservePartitionManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ReservePartitionProperties.class)
+public class ReservePartitionConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReservePartitionManager reservePartitionManager(ReservePartitionRepository repository,
+                                                           ReservePartitionProperties properties) {
+        return new ReservePartitionManager(repository, properties.getPremakeDays(), properties.getRetention(),
+                properties.getMaintenanceInterval());
+    }
+}
@@ -0,0 +1,17 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.reserve.partitions")
+public class ReservePartitionProperties {
+
+    private int premakeDays = 3; // the partitions created ahead of today
+
+    private Duration retention = Duration.ofDays(7); // handled reserves and their ids are kept at least that long
+
+    private Duration maintenanceInterval = Duration.ofHours(1);
+}
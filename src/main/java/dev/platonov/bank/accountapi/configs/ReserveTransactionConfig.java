@@ -0,0 +1,34 @@
+package dev.platonov.bank.accountapi.configs;
+
+import dev.platonov.bank.accountapi.repositories.AdvisoryLockTransactionStrategy;
+import dev.platonov.bank.accountapi.repositories.ReserveTransactionStrategy;
+import dev.platonov.bank.accountapi.repositories.RowLockTransactionStrategy;
+import dev.platonov.bank.accountapi.repositories.SerializableRetryTransactionStrategy;
+import dev.platonov.bank.accountapi.repositories.SingleStatementTransactionStrategy;
+import org.jdbi.v3.core.Jdbi;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ReserveTransactionProperties.class)
+public class ReserveTransactionConfig {
+
+    @Bean
+    public ReserveTransactionStrategy reserveTransactionStrategy(Jdbi jdbi, ReserveTransactionProperties properties) {
+        switch (properties.getStrategy()) {
+            case SINGLE_STATEMENT:
+                return new SingleStatementTransactionStrategy(jdbi);
+            case SERIALIZABLE:
+                return new SerializableRetryTransactionStrategy(jdbi, properties.getMaxAttempts(),
+                        properties.getBackoffBase(), properties.getBackoffMax());
+            case ROW_LOCK:
+                return new RowLockTransactionStrategy(jdbi);
+            case ADVISORY_LOCK:
+                return new AdvisoryLockTransactionStrategy(jdbi);
+            default:
+                var msg = String.format("unknown reserve transaction strategy. %s", properties.getStrategy());
+                throw new IllegalArgumentException(msg);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package dev.platonov.bank.accountapi.configs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("account-api.reserve.transaction")
+public class ReserveTransactionProperties {
+
+    private Strategy strategy = Strategy.SINGLE_STATEMENT;
+
+    private int maxAttempts = 10; // serializable only
+
+    private Duration backoffBase = Duration.ofMillis(5); // serializable only
+
+    private Duration backoffMax = Duration.ofMillis(200); // serializable only
+
+    public enum Strategy {
+        SINGLE_STATEMENT, SERIALIZABLE, ROW_LOCK, ADVISORY_LOCK
+    }
+}
@@ -0,0 +1,50 @@
+package dev.platonov.bank.accountapi.configs;
+
+import org.apache.coyote.ProtocolHandler;
+import org.postgresql.Driver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.cloud.stream.config.ListenerContainerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs servlet requests and Kafka function invocations on virtual threads. Blocked requests don't hold
+ * platform threads anymore, so the JDBC pool (spring.datasource.hikari.maximum-pool-size) is the concurrency limit.
+ * <p>
+ * pgjdbc before 42.6 guards its socket I/O with synchronized, which pins the carrier thread for every query
+ * and caps the requests at the core count, so the startup fails with an older driver.
+ */
+@Configuration
+@ConditionalOnProperty(name = "account-api.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        var driver = new Driver();
+        if (driver.getMajorVersion() < 42 || driver.getMajorVersion() == 42 && driver.getMinorVersion() < 6) {
+            var msg = String.format("virtual threads need pgjdbc 42.6+, running on %d.%d",
+                    driver.getMajorVersion(), driver.getMinorVersion());
+            throw new IllegalStateException(msg);
+        }
+        return VirtualThreads.newThreadPerTaskExecutor(); // fails the startup on a JDK without virtual threads
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler(
+            ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean
+    public ListenerContainerCustomizer<AbstractMessageListenerContainer<?, ?>> virtualThreadListenerContainer(
+            ExecutorService virtualThreadExecutor) {
+        // the consumer thread polls and invokes the function
+        return (container, destinationName, group) -> container.getContainerProperties()
+                .setConsumerTaskExecutor(new ConcurrentTaskExecutor(virtualThreadExecutor));
+    }
+}
@@ -0,0 +1,49 @@
+package dev.platonov.bank.accountapi.configs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads of JDK 21+, looked up at runtime so the service still builds for and runs on Java 11.
+ */
+public final class VirtualThreads {
+    private static final MethodHandle NEW_EXECUTOR = findNewExecutor();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * An executor starting a virtual thread per task.
+     *
+     * @throws IllegalStateException if the JDK has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        if (NEW_EXECUTOR == null) {
+            var msg = String.format("virtual threads need JDK 21+, running on %s", Runtime.version());
+            throw new IllegalStateException(msg);
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("cannot create a virtual thread executor", e);
+        }
+    }
+
+    private static MethodHandle findNewExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -2,30 +2,45 @@ package dev.platonov.bank.accountapi.controllers;
 
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
 import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveResult;
 import dev.platonov.bank.accountapi.services.AccountManager;
 import dev.platonov.bank.accountapi.services.AccountService;
+import dev.platonov.bank.accountapi.services.AsyncAccountManager;
+import dev.platonov.bank.accountapi.services.LedgerAccountManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("accounts")
+@Profile("!reactive")
 public class AccountController {
 
     private final AccountService service;
     private final AccountManager manager;
+    private final AsyncAccountManager asyncManager;
+    private final LedgerAccountManager ledger; // null unless account-api.manager = ledger
 
-    public AccountController(AccountService service, AccountManager manager) {
+    public AccountController(AccountService service, AccountManager manager, AsyncAccountManager asyncManager,
+                             ObjectProvider<LedgerAccountManager> ledger) {
         this.service = service;
         this.manager = manager;
+        this.asyncManager = asyncManager;
+        this.ledger = ledger.getIfAvailable();
     }
 
     @GetMapping("{id}")
     public ResponseEntity<Account> get(@PathVariable("id") long id) {
-        return service.getActive(id)
+        return service.getActiveSnapshot(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -35,48 +50,37 @@ public class AccountController {
         return ResponseEntity.ok(service.create());
     }
 
-    @PutMapping("/{id}/deposit")
-    public ResponseEntity<?> deposit(@PathVariable("id") long id, @RequestParam("amount") BigDecimal amount) {
-        try {
-            var reserve = manager.reserveDeposit(UUID.randomUUID().toString(), id, amount);
-
-            var account = manager.commit(reserve);
-
-            return ResponseEntity.ok(account);
-
-        } catch (DeniedReserveException e) {
-
-            var reason = e.getDenyReason();
-            var msg = String.format("denied due to %d error [%s]", reason.code, reason.name());
+    @PostMapping("reserves:batch")
+    public ResponseEntity<List<ReserveResult>> reserveAll(@RequestBody List<ReserveOption> reserveOptions) {
+        return ResponseEntity.ok(manager.reserveAll(reserveOptions));
+    }
 
-            return ResponseEntity
-                    .status(HttpStatus.CONFLICT)
-                    .body(msg);
-        }
+    @PutMapping("/{id}/deposit")
+    public CompletableFuture<ResponseEntity<?>> deposit(@PathVariable("id") long id,
+                                                        @RequestParam("amount") BigDecimal amount) {
+        return asyncManager.reserveDeposit(UUID.randomUUID().toString(), id, amount)
+                .thenCompose(asyncManager::commit)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(AccountController::conflictIfDenied);
     }
 
     @PutMapping("/{id}/withdraw")
-    public ResponseEntity<?> withdraw(@PathVariable("id") long id, @RequestParam("amount") BigDecimal amount) {
-        try {
-            var reserve = manager.reserveWithdraw(UUID.randomUUID().toString(), id, amount);
-
-            var account = manager.commit(reserve);
-
-            return ResponseEntity.ok(account);
-
-        } catch (DeniedReserveException e) {
-
-            var reason = e.getDenyReason();
-            var msg = String.format("denied due to %d error [%s]", reason.code, reason.name());
-
-            return ResponseEntity
-                    .status(HttpStatus.CONFLICT)
-                    .body(msg);
-        }
+    public CompletableFuture<ResponseEntity<?>> withdraw(@PathVariable("id") long id,
+                                                         @RequestParam("amount") BigDecimal amount) {
+        return asyncManager.reserveWithdraw(UUID.randomUUID().toString(), id, amount)
+                .thenCompose(asyncManager::commit)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(AccountController::conflictIfDenied);
     }
 
     @DeleteMapping("{id}")
     public ResponseEntity<?> close(@PathVariable("id") long id) {
+        if (ledger != null) { // the ledger keeps deciding on the account until it is told
+            return ledger.closeAccount(id)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        }
+
         return service.getActive(id)
                 .filter(account -> {
                     service.close(account);
@@ -85,4 +89,19 @@ public class AccountController {
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    private static ResponseEntity<?> conflictIfDenied(Throwable e) {
+        var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+        if (!(cause instanceof DeniedReserveException)) {
+            throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+        }
+
+        var reason = ((DeniedReserveException) cause).getDenyReason();
+        var msg = String.format("denied due to %d error [%s]", reason.code, reason.name());
+
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(msg);
+    }
 }
@@ -0,0 +1,85 @@
+package dev.platonov.bank.accountapi.controllers;
+
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveResult;
+import dev.platonov.bank.accountapi.services.ReactiveAccountManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The routes of {@link AccountController} on WebFlux, nothing blocks the event loop.
+ */
+@RestController
+@RequestMapping("accounts")
+@Profile("reactive")
+public class ReactiveAccountController {
+
+    private final ReactiveAccountManager manager;
+
+    public ReactiveAccountController(ReactiveAccountManager manager) {
+        this.manager = manager;
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<Account>> get(@PathVariable("id") long id) {
+        return manager.getActiveAccount(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Account>> create() {
+        return manager.createAccount()
+                .map(ResponseEntity::ok);
+    }
+
+    @PostMapping("reserves:batch")
+    public Mono<ResponseEntity<List<ReserveResult>>> reserveAll(@RequestBody List<ReserveOption> reserveOptions) {
+        return manager.reserveAll(reserveOptions)
+                .map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/{id}/deposit")
+    public Mono<ResponseEntity<?>> deposit(@PathVariable("id") long id,
+                                           @RequestParam("amount") BigDecimal amount) {
+        return manager.reserveDeposit(UUID.randomUUID().toString(), id, amount)
+                .flatMap(manager::commit)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(DeniedReserveException.class, ReactiveAccountController::conflict);
+    }
+
+    @PutMapping("/{id}/withdraw")
+    public Mono<ResponseEntity<?>> withdraw(@PathVariable("id") long id,
+                                            @RequestParam("amount") BigDecimal amount) {
+        return manager.reserveWithdraw(UUID.randomUUID().toString(), id, amount)
+                .flatMap(manager::commit)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(DeniedReserveException.class, ReactiveAccountController::conflict);
+    }
+
+    @DeleteMapping("{id}")
+    public Mono<ResponseEntity<Account>> close(@PathVariable("id") long id) {
+        return manager.getActiveAccount(id)
+                .flatMap(manager::closeAccount)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    private static Mono<ResponseEntity<?>> conflict(DeniedReserveException e) {
+        var reason = e.getDenyReason();
+        var msg = String.format("denied due to %d error [%s]", reason.code, reason.name());
+
+        return Mono.just(ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(msg));
+    }
+}
@@ -16,6 +16,7 @@ public class Account {
     private boolean active;
     private final @NonNull LocalDateTime createdAt;
     private @NonNull LocalDateTime updatedAt;
+    private long version; // bumped on every change of amount or active
 
     public Account() {
         this(null, BigDecimal.ZERO);
@@ -30,7 +31,7 @@ public class Account {
     }
 
     public Account(Long id, @NonNull BigDecimal amount) {
-        this(id, amount, true, null, null);
+        this(id, amount, true, null, null, 0);
     }
 
     @ConstructorProperties({
@@ -38,25 +39,28 @@ public class Account {
             "amount",
             "active",
             "created_at",
-            "updated_at"
+            "updated_at",
+            "version"
     })
     public Account(
             long id,
-            @NonNull BigDecimal amount,
+            long amount, // minor units
             boolean active,
             @NonNull Timestamp createdAt,
-            @NonNull Timestamp updatedAt
+            @NonNull Timestamp updatedAt,
+            long version
     ) {
-        this(id, amount, active, createdAt.toLocalDateTime(), updatedAt.toLocalDateTime());
+        this(id, Money.toBigDecimal(amount), active, createdAt.toLocalDateTime(), updatedAt.toLocalDateTime(), version);
     }
 
     @Builder
     public Account(Long id, @NonNull BigDecimal amount, boolean active,
-                   LocalDateTime createdAt, LocalDateTime updatedAt) {
+                   LocalDateTime createdAt, LocalDateTime updatedAt, long version) {
         this.id = id;
-        this.amount = amount;
+        this.amount = Money.normalize(amount);
         this.active = active;
         this.createdAt = createdAt != null ? createdAt : LocalDateTime.now();
         this.updatedAt = updatedAt != null ? updatedAt : LocalDateTime.now();
+        this.version = version;
     }
 }
\ No newline at end of file
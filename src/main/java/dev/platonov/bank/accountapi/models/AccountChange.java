@@ -0,0 +1,19 @@
+package dev.platonov.bank.accountapi.models;
+
+import lombok.NonNull;
+import lombok.Value;
+
+@Value
+public class AccountChange {
+    long accountId;
+    long version;
+    long changedAtMillis; // epoch millis on the database clock
+
+    public static AccountChange parse(@NonNull String payload) { // id:version:millis, see notify_account_change
+        var parts = payload.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException(String.format("illegal account change = %s", payload));
+        }
+        return new AccountChange(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    }
+}
@@ -1,8 +1,15 @@
 package dev.platonov.bank.accountapi.models;
 
+import java.util.Optional;
+
 public enum DenyReason {
     EMPTY_RESERVE(1000),
     NOT_ENOUGH_MONEY(1001),
+    ACCOUNT_NOT_FOUND(1002), // batch results only, single reserves throw AccountNotFoundException
+    NOT_UNIQUE_ID(1003), // batch results only, single reserves throw NotUniqueIdException
+    INVALID_AMOUNT(1004), // more fraction digits than Money.SCALE or out of the bigint range
+    INVALID_TTL(1005), // not positive or longer than Reserve.MAX_TTL
+    NOT_PERSISTED(1006), // batch results of the ledger only, the database rejected the reserve
     ;
 
     public final int code;
@@ -10,4 +17,13 @@ public enum DenyReason {
     DenyReason(int code) {
         this.code = code;
     }
+
+    public static Optional<DenyReason> byCode(int code) {
+        for (var reason : values()) {
+            if (reason.code == code) {
+                return Optional.of(reason);
+            }
+        }
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,31 @@
+package dev.platonov.bank.accountapi.models;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * A state change made by the in-memory ledger, persisted to the database later.
+ */
+@Value
+public class LedgerEntry {
+    Reserve savedReserve; // null if no reserve is saved
+    Reserve deletedReserve; // null if no reserve is committed or rolled back
+    Account account; // the account after the change, null if neither its amount nor its state is changed
+    boolean published; // the prepared event of the saved reserve goes to reserve_outbox
+
+    public static LedgerEntry saved(@NonNull Reserve reserve, boolean published) {
+        return new LedgerEntry(reserve, null, null, published);
+    }
+
+    public static LedgerEntry committed(@NonNull Reserve reserve, @NonNull Account account) {
+        return new LedgerEntry(null, reserve, account, false);
+    }
+
+    public static LedgerEntry closed(@NonNull Account account) {
+        return new LedgerEntry(null, null, account, false);
+    }
+
+    public static LedgerEntry rolledBack(@NonNull Reserve reserve) {
+        return new LedgerEntry(null, reserve, null, false);
+    }
+}
@@ -0,0 +1,57 @@
+package dev.platonov.bank.accountapi.models;
+
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts as counts of minor units with the fixed currency {@link #SCALE}, stored as bigint in the database.
+ * The services keep the minor units in longs, so the checks don't allocate; arithmetic throws
+ * {@link ArithmeticException} on overflow instead of wrapping.
+ * The models keep {@link BigDecimal} amounts, so the REST and Kafka payloads are converted at the edges.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+    public static final BigDecimal MAX_AMOUNT = BigDecimal.valueOf(Long.MAX_VALUE, SCALE);
+    public static final BigDecimal MIN_AMOUNT = BigDecimal.valueOf(Long.MIN_VALUE, SCALE);
+
+    private Money() {
+    }
+
+    /**
+     * Minor units of the amount without allocating a {@link Money}.
+     *
+     * @throws ArithmeticException if the amount has more fraction digits than {@link #SCALE} or does not fit a long
+     */
+    public static long minorUnits(@NonNull BigDecimal amount) {
+        return amount.setScale(SCALE).unscaledValue().longValueExact();
+    }
+
+    public static boolean hasEnoughMoney(long available, long withdrawing) {
+        return available >= withdrawing;
+    }
+
+    public static long add(long minorUnits, long other) {
+        return Math.addExact(minorUnits, other);
+    }
+
+    public static long subtract(long minorUnits, long other) {
+        return Math.subtractExact(minorUnits, other);
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public static boolean isRepresentable(@NonNull BigDecimal amount) {
+        return amount.scale() <= SCALE && amount.compareTo(MAX_AMOUNT) <= 0 && amount.compareTo(MIN_AMOUNT) >= 0;
+    }
+
+    /**
+     * The amount with the currency scale, so amounts read back from the database are equal to the saved ones.
+     * Amounts that are not representable are kept as is, to be denied by the services.
+     */
+    public static BigDecimal normalize(@NonNull BigDecimal amount) {
+        return amount.scale() >= SCALE ? amount : amount.setScale(SCALE);
+    }
+}
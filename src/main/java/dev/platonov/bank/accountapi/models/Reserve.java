@@ -7,15 +7,19 @@ import lombok.NonNull;
 import java.beans.ConstructorProperties;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 @Data
 public class Reserve {
+    public static final Duration MAX_TTL = Duration.ofDays(365);
+
     private final @NonNull String id; // freestyle id allowed to generate in a remote system
     private final long accountId;
     private final @NonNull BigDecimal amount;
     private final @NonNull ReserveType type;
     private final @NonNull LocalDateTime createdAt;
+    private final LocalDateTime expiresAt; // null expires after account-api.reserve.expiry.default-ttl
 
     @Builder
     public Reserve(
@@ -23,24 +27,53 @@ public class Reserve {
             long accountId,
             @NonNull BigDecimal amount,
             @NonNull ReserveType type,
-            LocalDateTime createdAt
+            LocalDateTime createdAt,
+            LocalDateTime expiresAt
     ) {
         this.id = id;
         this.accountId = accountId;
-        this.amount = amount;
+        this.amount = Money.normalize(amount);
         this.type = type;
         this.createdAt = createdAt != null ? createdAt : LocalDateTime.now();
+        this.expiresAt = expiresAt;
     }
 
-    @ConstructorProperties({"id", "account_id", "amount", "type", "created_at"})
+    @ConstructorProperties({"id", "account_id", "amount", "type", "created_at", "expires_at"})
     public Reserve(
             @NonNull String id,
             long accountId,
-            @NonNull BigDecimal amount,
+            long amount, // minor units
             @NonNull ReserveType type,
-            @NonNull Timestamp createdAt
+            @NonNull Timestamp createdAt,
+            Timestamp expiresAt
     ) {
-        this(id, accountId, amount, type, createdAt.toLocalDateTime());
+        this(id, accountId, Money.toBigDecimal(amount), type, createdAt.toLocalDateTime(),
+                expiresAt != null ? expiresAt.toLocalDateTime() : null);
+    }
+
+    public static Reserve from(@NonNull ReserveOption option) {
+        var createdAt = LocalDateTime.now();
+        var ttl = option.getTtl();
+        return Reserve.builder()
+                .id(option.getId())
+                .accountId(option.getAccountId())
+                .createdAt(createdAt)
+                .expiresAt(ttl == null ? null : isValid(ttl) ? createdAt.plus(ttl) : createdAt) // denied by hasValidTtl
+                .amount(option.getAmount())
+                .type(option.getReserveType())
+                .build();
+    }
+
+    public boolean hasValidTtl() { // a ttl longer than MAX_TTL could overflow the dates
+        return expiresAt == null || expiresAt.isAfter(createdAt) && !expiresAt.isAfter(createdAt.plus(MAX_TTL));
+    }
+
+    public boolean isExpired(@NonNull LocalDateTime now) { // only by its own expires_at, not by the default ttl
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+
+    private static boolean isValid(Duration ttl) {
+        return !ttl.isNegative() && !ttl.isZero() && ttl.compareTo(MAX_TTL) <= 0;
     }
 
     public static Reserve deposit(@NonNull String id, long accountId, @NonNull BigDecimal amount) {
@@ -0,0 +1,15 @@
+package dev.platonov.bank.accountapi.models;
+
+import lombok.NonNull;
+import lombok.Value;
+
+@Value
+public class ReserveHandleResult {
+    @NonNull String id;
+    @NonNull ReserveHandleStatus status;
+    Reserve reserve; // null if the reserve isn't found
+
+    public boolean isHandled() {
+        return ReserveHandleStatus.HANDLED.equals(status);
+    }
+}
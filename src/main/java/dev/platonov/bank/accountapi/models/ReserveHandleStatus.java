@@ -0,0 +1,8 @@
+package dev.platonov.bank.accountapi.models;
+
+public enum ReserveHandleStatus {
+    HANDLED, // committed or rolled back by this call
+    ALREADY_HANDLED, // repeated id or handled concurrently
+    NOT_FOUND,
+    ACCOUNT_NOT_FOUND, // the reserve is kept, the account isn't active
+}
@@ -5,6 +5,7 @@ import lombok.NonNull;
 import lombok.Value;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 @Builder
 @Value
@@ -13,4 +14,5 @@ public class ReserveOption {
     long accountId;
     @NonNull ReserveType reserveType;
     @NonNull BigDecimal amount;
+    Duration ttl; // null expires the reserve after account-api.reserve.expiry.default-ttl
 }
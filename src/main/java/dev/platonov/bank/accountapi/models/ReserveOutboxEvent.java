@@ -0,0 +1,26 @@
+package dev.platonov.bank.accountapi.models;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * An unsent event of reserve_outbox: a prepared reserve or a denied reserve option.
+ */
+@Value
+public class ReserveOutboxEvent {
+    long id;
+    Reserve prepared; // null if the event is a denial
+    DeniedReserveEvent denied; // null if the event is a prepared reserve
+
+    public static ReserveOutboxEvent prepared(long id, @NonNull Reserve reserve) {
+        return new ReserveOutboxEvent(id, reserve, null);
+    }
+
+    public static ReserveOutboxEvent denied(long id, @NonNull DeniedReserveEvent event) {
+        return new ReserveOutboxEvent(id, null, event);
+    }
+
+    public boolean isPrepared() {
+        return prepared != null;
+    }
+}
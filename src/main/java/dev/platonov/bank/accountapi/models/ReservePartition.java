@@ -0,0 +1,12 @@
+package dev.platonov.bank.accountapi.models;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+public class ReservePartition {
+    @NonNull String name;
+    @NonNull LocalDateTime upperBound; // exclusive, the reserves of the partition are created before it
+}
@@ -0,0 +1,23 @@
+package dev.platonov.bank.accountapi.models;
+
+import lombok.NonNull;
+import lombok.Value;
+
+@Value
+public class ReserveResult {
+    @NonNull String id;
+    Reserve reserve; // null if the reserve is denied
+    DenyReason denyReason; // null if the reserve is saved
+
+    public static ReserveResult reserved(@NonNull Reserve reserve) {
+        return new ReserveResult(reserve.getId(), reserve, null);
+    }
+
+    public static ReserveResult denied(@NonNull String id, @NonNull DenyReason denyReason) {
+        return new ReserveResult(id, null, denyReason);
+    }
+
+    public boolean isReserved() {
+        return reserve != null;
+    }
+}
@@ -1,9 +1,13 @@
 package dev.platonov.bank.accountapi.repositories;
 
 import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
 import lombok.NonNull;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AccountRepository {
@@ -15,11 +19,17 @@ public interface AccountRepository {
 
     @NonNull Account decr(long id, @NonNull BigDecimal amount);
 
+    @NonNull Account commit(@NonNull Reserve reserve); // deletes the reserve and applies it to the account
+
+    @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds); // a result per id, in order
+
     void close(@NonNull Account account);
 
     @NonNull Optional<Account> get(long id);
 
-    @NonNull Optional<Account> getActive(long id);
+    @NonNull Optional<Account> getActive(long id); // from the primary, for the reads that feed a decision
+
+    @NonNull Optional<Account> getActiveSnapshot(long id); // from the replica if it's fresh enough, may be stale
 
     boolean existsAndActive(long id);
 }
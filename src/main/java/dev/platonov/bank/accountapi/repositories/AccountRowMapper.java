@@ -0,0 +1,38 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Money;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the account columns by index, without reflection.
+ */
+public class AccountRowMapper implements RowMapper<Account> {
+    private static final String[] COLUMNS = {"id", "amount", "active", "created_at", "updated_at", "version"};
+
+    @Override
+    public Account map(ResultSet rs, StatementContext ctx) throws SQLException {
+        return map(rs, ResultSets.indexes(rs, COLUMNS));
+    }
+
+    @Override
+    public RowMapper<Account> specialize(ResultSet rs, StatementContext ctx) throws SQLException {
+        var indexes = ResultSets.indexes(rs, COLUMNS);
+        return (row, rowCtx) -> map(row, indexes);
+    }
+
+    private static Account map(ResultSet rs, int[] indexes) throws SQLException {
+        return new Account(
+                rs.getLong(indexes[0]),
+                Money.toBigDecimal(rs.getLong(indexes[1])),
+                rs.getBoolean(indexes[2]),
+                ResultSets.localDateTime(rs, indexes[3]),
+                ResultSets.localDateTime(rs, indexes[4]),
+                rs.getLong(indexes[5])
+        );
+    }
+}
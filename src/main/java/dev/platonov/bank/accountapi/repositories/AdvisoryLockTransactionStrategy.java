@@ -0,0 +1,63 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import lombok.NonNull;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+
+import java.sql.Types;
+
+/**
+ * Read committed transaction that holds {@code pg_advisory_xact_lock} keyed by the account id,
+ * so the account row itself isn't locked for readers and other writers.
+ */
+public class AdvisoryLockTransactionStrategy implements ReserveTransactionStrategy {
+    private static final String ID = "id";
+
+    private static final String TRY_LOCK = "select pg_try_advisory_xact_lock(:id) ";
+
+    private static final String LOCK = "select true from pg_advisory_xact_lock(:id) ";
+
+    private final Jdbi jdbi;
+    private final ReserveTransactionStats stats = new ReserveTransactionStats();
+
+    public AdvisoryLockTransactionStrategy(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    @Override
+    public <R, X extends Exception> R inTransaction(long accountId, @NonNull HandleCallback<R, X> callback) throws X {
+        stats.recordTransaction();
+
+        HandleCallback<R, X> locked = handle -> {
+            lock(handle, accountId);
+            return callback.withHandle(handle);
+        };
+
+        return jdbi.inTransaction(TransactionIsolationLevel.READ_COMMITTED, locked);
+    }
+
+    @Override
+    public @NonNull ReserveTransactionStats getStats() {
+        return stats;
+    }
+
+    private void lock(Handle handle, long accountId) {
+        if (tryLock(handle, TRY_LOCK, accountId)) {
+            return;
+        }
+
+        var started = System.nanoTime();
+        tryLock(handle, LOCK, accountId);
+        stats.recordLockWait(System.nanoTime() - started);
+    }
+
+    private boolean tryLock(Handle handle, String query, long accountId) {
+        try (var lockQuery = handle.createQuery(query)
+                .bindBySqlType(ID, accountId, Types.BIGINT)) {
+            return lockQuery.mapTo(Boolean.class)
+                    .one();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
+import dev.platonov.bank.accountapi.models.ReserveHandleStatus;
+import lombok.Value;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * A row of the bulk commit and rollback statements: the reserve as it was before the statement,
+ * whether the statement has handled it, whether it was handled before and whether its account is active.
+ */
+@Value
+class HandledReserveRow {
+    private static final String HANDLED = "handled";
+    private static final String HANDLED_BEFORE = "handled_before";
+    private static final String ACCOUNT_ACTIVE = "account_active";
+
+    Reserve reserve;
+    boolean handled;
+    boolean handledBefore;
+    boolean accountActive;
+
+    static RowMapper<HandledReserveRow> mapper() {
+        return new RowMapper<>() {
+            @Override
+            public HandledReserveRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+                return specialize(rs, ctx).map(rs, ctx);
+            }
+
+            @Override
+            public RowMapper<HandledReserveRow> specialize(ResultSet rs, StatementContext ctx) throws SQLException {
+                var reserveMapper = ctx.findRowMapperFor(Reserve.class).orElseThrow().specialize(rs, ctx);
+                var handled = rs.findColumn(HANDLED);
+                var handledBefore = rs.findColumn(HANDLED_BEFORE);
+                var accountActive = rs.findColumn(ACCOUNT_ACTIVE);
+                return (row, rowCtx) -> new HandledReserveRow(
+                        reserveMapper.map(row, rowCtx),
+                        row.getBoolean(handled),
+                        row.getBoolean(handledBefore),
+                        row.getBoolean(accountActive)
+                );
+            }
+        };
+    }
+
+    static List<ReserveHandleResult> toResults(Collection<String> ids, List<HandledReserveRow> rows) {
+        var rowsById = new HashMap<String, HandledReserveRow>(rows.size() * 2);
+        for (var row : rows) {
+            rowsById.put(row.getReserve().getId(), row);
+        }
+
+        var seen = new HashSet<String>(ids.size() * 2);
+        var results = new ArrayList<ReserveHandleResult>(ids.size());
+        for (var id : ids) {
+            var row = rowsById.get(id);
+            var reserve = row != null ? row.getReserve() : null;
+            results.add(new ReserveHandleResult(id, status(row, seen.add(id)), reserve));
+        }
+        return results;
+    }
+
+    private static ReserveHandleStatus status(HandledReserveRow row, boolean firstSeen) {
+        if (row == null) {
+            return ReserveHandleStatus.NOT_FOUND;
+        }
+        if (!firstSeen || row.isHandledBefore()) { // like AlreadyHandledReserveException of a single commit
+            return ReserveHandleStatus.ALREADY_HANDLED;
+        }
+        if (row.isHandled()) {
+            return ReserveHandleStatus.HANDLED;
+        }
+        return row.isAccountActive() ? ReserveHandleStatus.ALREADY_HANDLED : ReserveHandleStatus.ACCOUNT_NOT_FOUND;
+    }
+}
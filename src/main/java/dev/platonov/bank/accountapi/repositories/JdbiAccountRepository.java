@@ -1,8 +1,13 @@
 package dev.platonov.bank.accountapi.repositories;
 
 import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
+import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
 import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Money;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
 import lombok.NonNull;
+import lombok.Value;
 import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
@@ -13,69 +18,143 @@ import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public class JdbiAccountRepository implements AccountRepository {
     private static final String ID = "id";
+    private static final String ACCOUNT_ID = "account_id";
+    private static final String RESERVE_ID = "reserve_id";
+    private static final String ACCOUNT_ACTIVE = "account_active";
+    private static final String COMMITTED = "committed";
+    private static final String IDS = "ids";
     private static final String AMOUNT = "amount";
     private static final String ACTIVE = "active";
     private static final String CREATED_AT = "created_at";
     private static final String UPDATED_AT = "updated_at";
-    private static final String FIELDS = "id, amount, active, created_at, updated_at ";
-    private static final String INSERT = "insert into accounts (id, amount, active, created_at, updated_at) " +
+    private static final String FIELDS = "id, amount, active, created_at, updated_at, version ";
+    // the statements shared with R2dbcAccountRepository are package-private
+    static final String INSERT = "insert into accounts (id, amount, active, created_at, updated_at) " +
             "values (nextval('accounts_id_seq'), :amount, :active, :created_at, :updated_at) " +
             "returning " + FIELDS;
 
     private static final String UPDATE = "update accounts " +
             "set amount = :amount, " +
-            "  updated_at = :updated_at " +
+            "  updated_at = :updated_at, " +
+            "  version = version + 1 " +
             "where id = :id " +
             "   and active = true ";
 
-    private static final String INCR = "update accounts " +
+    static final String INCR = "update accounts " +
             "set amount = amount + :amount, " +
-            "  updated_at = :updated_at " +
+            "  updated_at = :updated_at, " +
+            "  version = version + 1 " +
             "where id = :id " +
             "   and active = true " +
             "returning " + FIELDS;
 
-    private static final String DECR = "update accounts " +
+    static final String DECR = "update accounts " +
             "set amount = amount - :amount, " +
-            "  updated_at = :updated_at " +
+            "  updated_at = :updated_at, " +
+            "  version = version + 1 " +
             "where id = :id " +
             "   and active = true " +
             "returning " + FIELDS;
 
-    private static final String CLOSE = "update accounts " +
+    // locks the account, marks the reserve handled and applies it to the amount in a single statement
+    static final String COMMIT = "with locked as ( " +
+            "   select id from accounts " +
+            "   where id = :account_id and active = true " +
+            "   for update " +
+            "), deleted as ( " +
+            "   update reserves r set handled_at = now() " +
+            "   from locked l " +
+            "   where r.id = :reserve_id and r.account_id = l.id and r.handled_at is null " +
+            "   returning r.account_id, r.amount, r.type " +
+            "), updated as ( " +
+            "   update accounts a " +
+            "   set amount = case when d.type = 'DEPOSIT' then a.amount + d.amount else a.amount - d.amount end, " +
+            "       reserved_withdraw = case when d.type = 'WITHDRAW' " +
+            "           then a.reserved_withdraw - d.amount else a.reserved_withdraw end, " +
+            "       updated_at = :updated_at, " +
+            "       version = a.version + 1 " +
+            "   from deleted d " +
+            "   where a.id = d.account_id " +
+            "   returning a.id, a.amount, a.active, a.created_at, a.updated_at, a.version " +
+            ") " +
+            "select exists(select 1 from locked) as account_active, " +
+            "   u.id is not null as committed, u.id, u.amount, u.active, u.created_at, u.updated_at, u.version " +
+            "from (select 1) as one " +
+            "   left join updated u on true ";
+
+    // locks the accounts in id order, marks the reserves handled and applies the net delta with one update per account
+    private static final String COMMIT_ALL = "with locked as ( " +
+            "   select id from accounts " +
+            "   where active = true " +
+            "       and id in (select account_id from reserves where id = any(:ids) and handled_at is null) " +
+            "   order by id " +
+            "   for update " +
+            "), deleted as ( " +
+            "   update reserves r set handled_at = now() " +
+            "   from locked l " +
+            "   where r.id = any(:ids) and r.account_id = l.id and r.handled_at is null " +
+            "   returning r.id, r.account_id, r.amount, r.type " +
+            "), deltas as ( " +
+            "   select account_id, " +
+            "       sum(case when type = 'DEPOSIT' then amount else -amount end) as amount_delta, " +
+            "       sum(case when type = 'WITHDRAW' then amount else 0 end) as released " +
+            "   from deleted " +
+            "   group by account_id " +
+            "), updated as ( " +
+            "   update accounts a " +
+            "   set amount = a.amount + d.amount_delta, " +
+            "       reserved_withdraw = a.reserved_withdraw - d.released, " +
+            "       updated_at = :updated_at, " +
+            "       version = a.version + 1 " +
+            "   from deltas d " +
+            "   where a.id = d.account_id " +
+            ") " +
+            "select r.id, r.account_id, r.amount, r.type, r.created_at, r.expires_at, " +
+            "   d.id is not null as handled, r.handled_at is not null as handled_before, a.active as account_active " +
+            "from reserves r " +
+            "   join accounts a on a.id = r.account_id " +
+            "   left join deleted d on d.id = r.id " +
+            "where r.id = any(:ids) ";
+
+    static final String CLOSE = "update accounts " +
             "set active = false, " +
-            "  updated_at = :updated_at " +
+            "  updated_at = :updated_at, " +
+            "  version = version + 1 " +
             "where id = :id" +
             "   and active = true ";
 
-    private static final String GET_BY_ID = "select " + FIELDS +
+    static final String GET_BY_ID = "select " + FIELDS +
             "from accounts " +
             "where id = :id ";
 
-    private static final String GET_ACTIVE_BY_ID = "select " + FIELDS +
+    static final String GET_ACTIVE_BY_ID = "select " + FIELDS +
             "from accounts " +
             "where id = :id and active = true ";
 
 
-    private static final String GET_1_IF_EXISTS_AND_ACTIVE_BY_ID = "select 1 as exists " +
+    static final String GET_1_IF_EXISTS_AND_ACTIVE_BY_ID = "select 1 as exists " +
             "from accounts " +
             "where id = :id and active = true ";
 
     private final Jdbi jdbi;
+    private final JdbiRouter router;
 
-    public JdbiAccountRepository(Jdbi jdbi) {
-        this.jdbi = jdbi;
+    public JdbiAccountRepository(JdbiRouter router) {
+        this.jdbi = router.forWrites();
+        this.router = router;
     }
 
     @Override
     public @NonNull Account save(@NonNull Account account) {
         return jdbi.withHandle(handle -> handle.createUpdate(INSERT)
-                .bindBySqlType(AMOUNT, account.getAmount(), Types.NUMERIC)
+                .bindBySqlType(AMOUNT, Money.minorUnits(account.getAmount()), Types.BIGINT)
                 .bindBySqlType(ACTIVE, account.isActive(), Types.BOOLEAN)
                 .bindBySqlType(CREATED_AT, prepareDt(account.getCreatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
                 .bindBySqlType(UPDATED_AT, prepareDt(account.getUpdatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
@@ -93,7 +172,7 @@ public class JdbiAccountRepository implements AccountRepository {
 
             handle.createUpdate(UPDATE)
                     .bindBySqlType(ID, account.getId(), Types.BIGINT)
-                    .bindBySqlType(AMOUNT, account.getAmount(), Types.NUMERIC)
+                    .bindBySqlType(AMOUNT, Money.minorUnits(account.getAmount()), Types.BIGINT)
                     .bindBySqlType(UPDATED_AT, prepareDt(account.getUpdatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
                     .execute();
         });
@@ -117,7 +196,7 @@ public class JdbiAccountRepository implements AccountRepository {
 
             return handle.createUpdate(query)
                     .bindBySqlType(ID, id, Types.BIGINT)
-                    .bindBySqlType(AMOUNT, amount, Types.NUMERIC)
+                    .bindBySqlType(AMOUNT, Money.minorUnits(amount), Types.BIGINT)
                     .bindBySqlType(UPDATED_AT, prepareDt(LocalDateTime.now()), Types.TIMESTAMP_WITH_TIMEZONE)
                     .executeAndReturnGeneratedKeys(ID)
                     .mapTo(Account.class)
@@ -126,6 +205,46 @@ public class JdbiAccountRepository implements AccountRepository {
         });
     }
 
+    @Override
+    public @NonNull Account commit(@NonNull Reserve reserve) {
+        var result = jdbi.withHandle(handle -> handle.createQuery(COMMIT)
+                .bindBySqlType(ACCOUNT_ID, reserve.getAccountId(), Types.BIGINT)
+                .bindBySqlType(RESERVE_ID, reserve.getId(), Types.VARCHAR)
+                .bindBySqlType(UPDATED_AT, prepareDt(LocalDateTime.now()), Types.TIMESTAMP_WITH_TIMEZONE)
+                .map((rs, ctx) -> new CommitResult(
+                        rs.getBoolean(ACCOUNT_ACTIVE),
+                        rs.getBoolean(COMMITTED)
+                                ? ctx.findRowMapperFor(Account.class).orElseThrow().map(rs, ctx)
+                                : null
+                ))
+                .one());
+
+        if (!result.isAccountActive()) {
+            throw new AccountNotFoundException(reserve.getAccountId());
+        }
+
+        if (result.getAccount() == null) {
+            throw new AlreadyHandledReserveException(reserve);
+        }
+
+        return result.getAccount();
+    }
+
+    @Override
+    public @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds) {
+        if (reserveIds.isEmpty()) {
+            return List.of();
+        }
+
+        var rows = jdbi.withHandle(handle -> handle.createQuery(COMMIT_ALL)
+                .bindArray(IDS, String.class, reserveIds)
+                .bindBySqlType(UPDATED_AT, prepareDt(LocalDateTime.now()), Types.TIMESTAMP_WITH_TIMEZONE)
+                .map(HandledReserveRow.mapper())
+                .list());
+
+        return HandledReserveRow.toResults(reserveIds, rows);
+    }
+
     @Override
     public void close(@NonNull Account account) {
         jdbi.useHandle(handle -> {
@@ -142,20 +261,28 @@ public class JdbiAccountRepository implements AccountRepository {
 
     @Override
     public @NonNull Optional<Account> get(long id) {
-        return jdbi.withHandle(handle -> handle.createQuery(GET_BY_ID)
+        return router.forReads().withHandle(handle -> handle.createQuery(GET_BY_ID)
                 .bindBySqlType(ID, id, Types.BIGINT)
                 .mapTo(Account.class)
                 .findOne());
     }
 
     @Override
-    public @NonNull Optional<Account> getActive(long id) {
+    public @NonNull Optional<Account> getActive(long id) { // decides whether an account can be closed or reserved
         return jdbi.withHandle(handle -> handle.createQuery(GET_ACTIVE_BY_ID)
                 .bindBySqlType(ID, id, Types.BIGINT)
                 .mapTo(Account.class)
                 .findOne());
     }
 
+    @Override
+    public @NonNull Optional<Account> getActiveSnapshot(long id) {
+        return router.forReads().withHandle(handle -> handle.createQuery(GET_ACTIVE_BY_ID)
+                .bindBySqlType(ID, id, Types.BIGINT)
+                .mapTo(Account.class)
+                .findOne());
+    }
+
     @Override
     public boolean existsAndActive(long id) {
         return jdbi.withHandle(handle -> handle.createQuery(GET_1_IF_EXISTS_AND_ACTIVE_BY_ID)
@@ -177,6 +304,12 @@ public class JdbiAccountRepository implements AccountRepository {
         }
     }
 
+    @Value
+    private static class CommitResult {
+        boolean accountActive;
+        Account account; // null if the reserve has already been handled
+    }
+
     private OffsetDateTime prepareDt(LocalDateTime dateTime) {
         return dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime();
     }
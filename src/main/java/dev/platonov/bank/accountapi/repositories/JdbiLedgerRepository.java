@@ -0,0 +1,260 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.LedgerEntry;
+import dev.platonov.bank.accountapi.models.Money;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import lombok.NonNull;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Repository
+public class JdbiLedgerRepository implements LedgerRepository {
+    private static final String ID = "id";
+    private static final String IDS = "ids";
+    private static final String ACCOUNT_ID = "account_id";
+    private static final String AMOUNT = "amount";
+    private static final String TYPE = "type";
+    private static final String CREATED_AT = "created_at";
+    private static final String EXPIRES_AT = "expires_at";
+    private static final String UPDATED_AT = "updated_at";
+    private static final String ACTIVE = "active";
+    private static final String DELTA = "delta";
+    private static final String VERSION = "version";
+
+    private static final String GET_ACCOUNTS = "select id, amount, active, created_at, updated_at, version " +
+            "from accounts ";
+
+    private static final String GET_ACCOUNT = GET_ACCOUNTS +
+            "where id = :id ";
+
+    private static final String GET_RESERVES = "select id, account_id, amount, type, created_at, expires_at " +
+            "from reserves " +
+            "where handled_at is null ";
+
+    // marks the reserves handled and releases the holds of the withdraw ones
+    private static final String DELETE_RESERVES = "with deleted as ( " +
+            "   update reserves set handled_at = now() " +
+            "   where id = any(:ids) and handled_at is null " +
+            "   returning account_id, amount, type " +
+            "), released as ( " +
+            "   select account_id, sum(amount) as amount " +
+            "   from deleted " +
+            "   where type = 'WITHDRAW' " +
+            "   group by account_id " +
+            ") " +
+            "update accounts a " +
+            "set reserved_withdraw = a.reserved_withdraw - r.amount " +
+            "from released r " +
+            "where a.id = r.account_id ";
+
+    // the ledger has checked the open reserves only, reserve_ids rejects the ids of the handled ones too,
+    // like it does for the basic manager. no reserve is inserted for a taken id
+    private static final String INSERT_RESERVE = "with taken as ( " +
+            "   insert into reserve_ids (id, created_at) " +
+            "   values (:id, :created_at) " +
+            "   on conflict (id) do nothing " +
+            "   returning id " +
+            ") " +
+            "insert into reserves (id, account_id, amount, type, created_at, expires_at) " +
+            "select :id, :account_id, :amount, :type, :created_at, :expires_at " +
+            "from taken ";
+
+    private static final String INSERT_PREPARED = "insert into reserve_outbox " +
+            "(event, reserve_id, account_id, amount, type, created_at, expires_at) " +
+            "values ('PREPARED', :id, :account_id, :amount, :type, :created_at, :expires_at) ";
+
+    private static final String HOLD_WITHDRAW = "update accounts " +
+            "set reserved_withdraw = reserved_withdraw + :amount " +
+            "where id = :id ";
+
+    // by delta, so an entry the ledger reverts after the database rejected it doesn't leak in with a later one
+    private static final String UPDATE_ACCOUNT = "update accounts " +
+            "set amount = amount + :delta, " +
+            "  active = active and :active, " +
+            "  updated_at = :updated_at, " +
+            "  version = greatest(version, :version) " +
+            "where id = :id ";
+
+    private final Jdbi jdbi;
+
+    public JdbiLedgerRepository(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    @Override
+    public @NonNull List<Account> getAccounts() {
+        return jdbi.withHandle(handle -> handle.createQuery(GET_ACCOUNTS)
+                .mapTo(Account.class)
+                .list());
+    }
+
+    @Override
+    public @NonNull Optional<Account> getAccount(long id) {
+        return jdbi.withHandle(handle -> handle.createQuery(GET_ACCOUNT)
+                .bindBySqlType(ID, id, Types.BIGINT)
+                .mapTo(Account.class)
+                .findOne());
+    }
+
+    @Override
+    public @NonNull List<Reserve> getReserves() {
+        return jdbi.withHandle(handle -> handle.createQuery(GET_RESERVES)
+                .mapTo(Reserve.class)
+                .list());
+    }
+
+    /**
+     * Deletes go before inserts. The reserves whose ids are taken in reserve_ids, by reserves handled before
+     * or by the basic manager, are neither saved nor held nor published. The committed amounts of an account
+     * are summed up to one delta.
+     */
+    @Override
+    public @NonNull Set<String> append(@NonNull List<LedgerEntry> entries) {
+        var deleted = new LinkedHashSet<String>();
+        var saved = new ArrayList<Reserve>();
+        var published = new HashSet<String>();
+        var updated = new LinkedHashMap<Long, Account>();
+        var deltas = new HashMap<Long, Long>(); // minor units by account id
+
+        for (var entry : entries) {
+            if (entry.getDeletedReserve() != null) {
+                deleted.add(entry.getDeletedReserve().getId());
+            }
+            if (entry.getSavedReserve() != null) {
+                saved.add(entry.getSavedReserve());
+                if (entry.isPublished()) {
+                    published.add(entry.getSavedReserve().getId());
+                }
+            }
+            if (entry.getAccount() != null) {
+                updated.put(entry.getAccount().getId(), entry.getAccount());
+                deltas.merge(entry.getAccount().getId(), delta(entry.getDeletedReserve()), Money::add);
+            }
+        }
+
+        return jdbi.inTransaction(TransactionIsolationLevel.READ_COMMITTED, handle -> {
+            deleteAll(handle, deleted);
+            var inserted = insertAll(handle, saved);
+            updateAll(handle, updated.values(), deltas);
+            publishAll(handle, inserted.stream()
+                    .filter(reserve -> published.contains(reserve.getId()))
+                    .collect(Collectors.toList()));
+
+            var taken = new HashSet<String>();
+            saved.forEach(reserve -> taken.add(reserve.getId()));
+            inserted.forEach(reserve -> taken.remove(reserve.getId()));
+            return taken;
+        });
+    }
+
+    private void deleteAll(Handle handle, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        handle.createUpdate(DELETE_RESERVES)
+                .bindArray(IDS, String.class, ids)
+                .execute();
+    }
+
+    private List<Reserve> insertAll(Handle handle, List<Reserve> reserves) { // returns the inserted ones
+        if (reserves.isEmpty()) {
+            return List.of();
+        }
+
+        var batch = handle.prepareBatch(INSERT_RESERVE);
+        for (var reserve : reserves) {
+            batch.bindBySqlType(ID, reserve.getId(), Types.VARCHAR)
+                    .bindBySqlType(ACCOUNT_ID, reserve.getAccountId(), Types.BIGINT)
+                    .bindBySqlType(AMOUNT, Money.minorUnits(reserve.getAmount()), Types.BIGINT)
+                    .bindBySqlType(TYPE, reserve.getType().name(), Types.VARCHAR)
+                    .bindBySqlType(CREATED_AT, prepareDt(reserve.getCreatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
+                    .bindBySqlType(EXPIRES_AT, prepareDt(reserve.getExpiresAt()), Types.TIMESTAMP_WITH_TIMEZONE)
+                    .add();
+        }
+        var counts = batch.execute();
+
+        var inserted = new ArrayList<Reserve>(reserves.size());
+        var held = new HashMap<Long, Long>();
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] == 0) { // the id is taken
+                continue;
+            }
+            var reserve = reserves.get(i);
+            inserted.add(reserve);
+            if (ReserveType.WITHDRAW.equals(reserve.getType())) {
+                held.merge(reserve.getAccountId(), Money.minorUnits(reserve.getAmount()), Money::add);
+            }
+        }
+
+        if (held.isEmpty()) {
+            return inserted;
+        }
+
+        var holdBatch = handle.prepareBatch(HOLD_WITHDRAW);
+        held.forEach((accountId, amount) -> holdBatch
+                .bindBySqlType(ID, accountId, Types.BIGINT)
+                .bindBySqlType(AMOUNT, amount, Types.BIGINT)
+                .add());
+        holdBatch.execute();
+        return inserted;
+    }
+
+    private void publishAll(Handle handle, List<Reserve> reserves) {
+        if (reserves.isEmpty()) {
+            return;
+        }
+
+        var batch = handle.prepareBatch(INSERT_PREPARED);
+        for (var reserve : reserves) {
+            batch.bindBySqlType(ID, reserve.getId(), Types.VARCHAR)
+                    .bindBySqlType(ACCOUNT_ID, reserve.getAccountId(), Types.BIGINT)
+                    .bindBySqlType(AMOUNT, reserve.getAmount(), Types.NUMERIC)
+                    .bindBySqlType(TYPE, reserve.getType().name(), Types.VARCHAR)
+                    .bindBySqlType(CREATED_AT, prepareDt(reserve.getCreatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
+                    .bindBySqlType(EXPIRES_AT, prepareDt(reserve.getExpiresAt()), Types.TIMESTAMP_WITH_TIMEZONE)
+                    .add();
+        }
+        batch.execute();
+    }
+
+    private void updateAll(Handle handle, Collection<Account> accounts, Map<Long, Long> deltas) {
+        if (accounts.isEmpty()) {
+            return;
+        }
+
+        var batch = handle.prepareBatch(UPDATE_ACCOUNT);
+        for (var account : accounts) {
+            batch.bindBySqlType(ID, account.getId(), Types.BIGINT)
+                    .bindBySqlType(DELTA, deltas.get(account.getId()), Types.BIGINT)
+                    .bindBySqlType(ACTIVE, account.isActive(), Types.BOOLEAN)
+                    .bindBySqlType(UPDATED_AT, prepareDt(account.getUpdatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
+                    .bindBySqlType(VERSION, account.getVersion(), Types.BIGINT)
+                    .add();
+        }
+        batch.execute();
+    }
+
+    private static long delta(Reserve committed) { // 0 if the account is closed rather than a reserve committed
+        if (committed == null) {
+            return 0;
+        }
+        var minorUnits = Money.minorUnits(committed.getAmount());
+        return ReserveType.DEPOSIT.equals(committed.getType()) ? minorUnits : Math.negateExact(minorUnits);
+    }
+
+    private OffsetDateTime prepareDt(LocalDateTime dateTime) { // null for the reserves without expires_at
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime() : null;
+    }
+}
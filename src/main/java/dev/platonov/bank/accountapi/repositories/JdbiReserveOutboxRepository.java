@@ -0,0 +1,176 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.DeniedReserveEvent;
+import dev.platonov.bank.accountapi.models.DenyReason;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveOutboxEvent;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import lombok.NonNull;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+@Repository
+public class JdbiReserveOutboxRepository implements ReserveOutboxRepository {
+    private static final String ID = "id";
+    private static final String IDS = "ids";
+    private static final String EVENT = "event";
+    private static final String RESERVE_ID = "reserve_id";
+    private static final String ACCOUNT_ID = "account_id";
+    private static final String AMOUNT = "amount";
+    private static final String TYPE = "type";
+    private static final String CREATED_AT = "created_at";
+    private static final String EXPIRES_AT = "expires_at";
+    private static final String TTL_MICROS = "ttl_micros";
+    private static final long MAX_TTL_MICROS = 1_000_000_000_000_000_000L; // exact as a double, ~31 700 years
+    private static final String DENY_REASON = "deny_reason";
+    private static final String LEASE_MICROS = "lease_micros";
+    private static final String SENT_BEFORE = "sent_before";
+    private static final String LIMIT = "limit";
+
+    private static final String PREPARED = "PREPARED"; // sync with reserve_if_allowed in schema.sql
+
+    private static final String INSERT_DENIED = "insert into reserve_outbox " +
+            "(event, reserve_id, account_id, amount, type, ttl, deny_reason) " +
+            "values ('DENIED', :reserve_id, :account_id, :amount, :type, " +
+            "   :ttl_micros * interval '1 microsecond', :deny_reason) ";
+
+    // the relays of other instances skip the rows being claimed and the claimed ones, the row locks last
+    // only as long as the statement
+    private static final String CLAIM_UNSENT = "update reserve_outbox o " +
+            "set claimed_until = now() + :lease_micros * interval '1 microsecond' " +
+            "from (select id from reserve_outbox " +
+            "      where sent_at is null and (claimed_until is null or claimed_until <= now()) " +
+            "      order by id " +
+            "      limit :limit " +
+            "      for update skip locked) c " +
+            "where o.id = c.id " +
+            "returning o.id, o.event, o.reserve_id, o.account_id, o.amount, o.type, o.created_at, o.expires_at, " +
+            "   (extract(epoch from o.ttl) * 1000000)::bigint as ttl_micros, o.deny_reason ";
+
+    private static final String MARK_SENT = "update reserve_outbox " +
+            "set sent_at = now() " +
+            "where id = any(:ids) ";
+
+    private static final String PURGE_SENT = "delete from reserve_outbox " +
+            "where id in (select id from reserve_outbox " +
+            "             where sent_at < :sent_before " +
+            "             limit :limit) ";
+
+    private final Jdbi jdbi;
+
+    public JdbiReserveOutboxRepository(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    @Override
+    public void addDenied(@NonNull List<DeniedReserveEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        jdbi.useHandle(handle -> {
+            var batch = handle.prepareBatch(INSERT_DENIED);
+            for (var event : events) {
+                var option = event.getReserveOption();
+                batch.bindBySqlType(RESERVE_ID, option.getId(), Types.VARCHAR)
+                        .bindBySqlType(ACCOUNT_ID, option.getAccountId(), Types.BIGINT)
+                        .bindBySqlType(AMOUNT, option.getAmount(), Types.NUMERIC)
+                        .bindBySqlType(TYPE, option.getReserveType().name(), Types.VARCHAR)
+                        .bindBySqlType(TTL_MICROS, toMicros(option.getTtl()), Types.BIGINT)
+                        .bindBySqlType(DENY_REASON, event.getReason().name(), Types.VARCHAR)
+                        .add();
+            }
+            batch.execute();
+        });
+    }
+
+    @Override
+    public @NonNull List<ReserveOutboxEvent> claimUnsent(int limit, @NonNull Duration lease) {
+        var events = new ArrayList<>(jdbi.withHandle(handle -> handle.createQuery(CLAIM_UNSENT)
+                .bindBySqlType(LEASE_MICROS, toMicros(lease), Types.BIGINT)
+                .bindBySqlType(LIMIT, limit, Types.INTEGER)
+                .map(JdbiReserveOutboxRepository::map)
+                .list()));
+        events.sort(Comparator.comparingLong(ReserveOutboxEvent::getId)); // returning keeps no order
+        return events;
+    }
+
+    @Override
+    public int markSent(@NonNull Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        return jdbi.withHandle(handle -> handle.createUpdate(MARK_SENT)
+                .bindArray(IDS, Long.class, ids)
+                .execute());
+    }
+
+    @Override
+    public int purgeSent(@NonNull LocalDateTime sentBefore, int limit) {
+        return jdbi.withHandle(handle -> handle.createUpdate(PURGE_SENT)
+                .bindBySqlType(SENT_BEFORE, prepareDt(sentBefore), Types.TIMESTAMP_WITH_TIMEZONE)
+                .bindBySqlType(LIMIT, limit, Types.INTEGER)
+                .execute());
+    }
+
+    private static ReserveOutboxEvent map(ResultSet rs, StatementContext ctx) throws SQLException {
+        var id = rs.getLong(ID);
+        var type = ReserveType.valueOf(rs.getString(TYPE));
+        if (PREPARED.equals(rs.getString(EVENT))) {
+            return ReserveOutboxEvent.prepared(id, Reserve.builder()
+                    .id(rs.getString(RESERVE_ID))
+                    .accountId(rs.getLong(ACCOUNT_ID))
+                    .amount(rs.getBigDecimal(AMOUNT))
+                    .type(type)
+                    .createdAt(ResultSets.localDateTime(rs, rs.findColumn(CREATED_AT)))
+                    .expiresAt(ResultSets.localDateTime(rs, rs.findColumn(EXPIRES_AT)))
+                    .build());
+        }
+
+        var ttlMicros = rs.getLong(TTL_MICROS);
+        var ttl = rs.wasNull() ? null : Duration.of(ttlMicros, ChronoUnit.MICROS);
+        var option = ReserveOption.builder()
+                .id(rs.getString(RESERVE_ID))
+                .accountId(rs.getLong(ACCOUNT_ID))
+                .reserveType(type)
+                .amount(rs.getBigDecimal(AMOUNT))
+                .ttl(ttl)
+                .build();
+        return ReserveOutboxEvent.denied(id, DeniedReserveEvent.builder()
+                .reserveOption(option)
+                .reason(DenyReason.valueOf(rs.getString(DENY_REASON)))
+                .build());
+    }
+
+    // null for the options without a ttl, saturated for the denied ones too long for an interval
+    private static Long toMicros(Duration duration) {
+        if (duration == null) {
+            return null;
+        }
+        var seconds = duration.getSeconds();
+        if (seconds >= MAX_TTL_MICROS / 1_000_000 || seconds <= -MAX_TTL_MICROS / 1_000_000) {
+            return seconds < 0 ? -MAX_TTL_MICROS : MAX_TTL_MICROS;
+        }
+        return seconds * 1_000_000 + duration.getNano() / 1000;
+    }
+
+    private OffsetDateTime prepareDt(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime();
+    }
+}
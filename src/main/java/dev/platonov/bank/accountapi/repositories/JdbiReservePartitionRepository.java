@@ -0,0 +1,76 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.ReservePartition;
+import lombok.NonNull;
+import org.jdbi.v3.core.Jdbi;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * The DDL lives in create_reserve_partitions and drop_reserve_partition of schema.sql.
+ */
+@Repository
+public class JdbiReservePartitionRepository implements ReservePartitionRepository {
+    private static final String FROM = "from";
+    private static final String DAYS = "days";
+    private static final String NAME = "name";
+    private static final String UPPER_BOUND = "upper_bound";
+
+    private static final String CREATE_PARTITIONS = "select create_reserve_partitions(:from, :days) ";
+
+    // the upper bound is the TO of "FOR VALUES FROM (...) TO ('...')", the default partition has none
+    private static final String GET_PARTITIONS = "select c.relname as name, " +
+            "   substring(pg_get_expr(c.relpartbound, c.oid) from 'TO \\(''([^'']+)''\\)')::timestamptz " +
+            "       as upper_bound " +
+            "from pg_inherits i " +
+            "   join pg_class c on c.oid = i.inhrelid " +
+            "where i.inhparent = 'reserves'::regclass " +
+            "   and pg_get_expr(c.relpartbound, c.oid) <> 'DEFAULT' " +
+            "order by upper_bound ";
+
+    private static final String DROP_PARTITION = "select drop_reserve_partition(:name, :upper_bound) ";
+
+    private final Jdbi jdbi;
+
+    public JdbiReservePartitionRepository(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    @Override
+    public int createPartitions(@NonNull LocalDate from, int days) {
+        return jdbi.withHandle(handle -> handle.createQuery(CREATE_PARTITIONS)
+                .bindBySqlType(FROM, from, Types.DATE)
+                .bindBySqlType(DAYS, days, Types.INTEGER)
+                .mapTo(Integer.class)
+                .one());
+    }
+
+    @Override
+    public @NonNull List<ReservePartition> getPartitions() {
+        return jdbi.withHandle(handle -> handle.createQuery(GET_PARTITIONS)
+                .map((rs, ctx) -> new ReservePartition(
+                        rs.getString(NAME),
+                        ResultSets.localDateTime(rs, rs.findColumn(UPPER_BOUND))
+                ))
+                .list());
+    }
+
+    @Override
+    public int drop(@NonNull ReservePartition partition) {
+        return jdbi.withHandle(handle -> handle.createQuery(DROP_PARTITION)
+                .bindBySqlType(NAME, partition.getName(), Types.VARCHAR)
+                .bindBySqlType(UPPER_BOUND, prepareDt(partition.getUpperBound()), Types.TIMESTAMP_WITH_TIMEZONE)
+                .mapTo(Integer.class)
+                .one());
+    }
+
+    private OffsetDateTime prepareDt(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime();
+    }
+}
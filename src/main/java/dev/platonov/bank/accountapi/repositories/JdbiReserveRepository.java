@@ -3,183 +3,517 @@ package dev.platonov.bank.accountapi.repositories;
 import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
 import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
-import dev.platonov.bank.accountapi.models.Account;
 import dev.platonov.bank.accountapi.models.DenyReason;
+import dev.platonov.bank.accountapi.models.Money;
 import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
+import dev.platonov.bank.accountapi.models.ReserveResult;
 import dev.platonov.bank.accountapi.models.ReserveType;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
-import org.jdbi.v3.core.JdbiException;
 import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
-import org.postgresql.util.PSQLException;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
+import javax.annotation.PostConstruct;
+
 import java.sql.Types;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+@Slf4j
 @Repository
 public class JdbiReserveRepository implements ReserveRepository {
-    private static final String RETRY_HINT = "The transaction might succeed if retried.";
+    // sync with reserve_if_allowed in schema.sql, other statuses are DenyReason codes
+    static final int SAVED = 0;
+    static final int NOT_UNIQUE_ID = 1;
+    private static final int ACCOUNT_NOT_FOUND = 2;
+
     private static final String ID = "id";
+    private static final String IDS = "ids";
+    private static final String AVAILABLE = "available";
     private static final String ACCOUNT_ID = "account_id";
     private static final String TYPE = "type";
     private static final String AMOUNT = "amount";
     private static final String CREATED_AT = "created_at";
-
-    private static final String INSERT = "insert into reserves (id, account_id, amount, type, created_at ) " +
-            "values (:id, :account_id, :amount, :type, :created_at) ";
-
-    private static final String DELETE = "delete from reserves where id = :id ";
-
-    private static final String GET_ACTIVE_ACCOUNT_BY_ID = "select id, amount, active, created_at, updated_at " +
+    private static final String EXPIRES_AT = "expires_at";
+    private static final String CHECK_ID = "check_id";
+    private static final String PUBLISH = "publish";
+    private static final String OUTBOX_AMOUNT = "outbox_amount";
+    private static final String NOW = "now";
+    private static final String DEFAULT_EXPIRED_BEFORE = "default_expired_before";
+    private static final String LIMIT = "limit";
+
+    // the statements shared with R2dbcReserveRepository are package-private
+    static final String RESERVE_IF_ALLOWED = "select reserve_if_allowed(" +
+            ":id, :account_id, :amount, :type, :created_at, :check_id, :expires_at, :publish) ";
+
+    private static final String LOCK_ACTIVE_ACCOUNTS = "select id, amount - reserved_withdraw as available " +
             "from accounts " +
-            "where id = :account_id and active = true ";
+            "where id = any(:ids) and active = true " +
+            "order by id " +
+            "for update ";
+
+    private static final String GET_EXISTING_IDS = "select id " +
+            "from reserve_ids " +
+            "where id = any(:ids) ";
+
+    // takes the id first, the partitioned reserves can't have a primary key on the id alone
+    private static final String INSERT_IF_UNIQUE = "with taken as ( " +
+            "   insert into reserve_ids (id, created_at) " +
+            "   values (:id, :created_at) " +
+            "   on conflict (id) do nothing " +
+            "   returning id " +
+            ") " +
+            "insert into reserves (id, account_id, amount, type, created_at, expires_at) " +
+            "select :id, :account_id, :amount, :type, :created_at, :expires_at " +
+            "from taken ";
+
+    // the same, also writes the prepared event of a saved reserve to reserve_outbox, 0 rows if the id is taken
+    private static final String INSERT_IF_UNIQUE_AND_PUBLISH = "with taken as ( " +
+            "   insert into reserve_ids (id, created_at) " +
+            "   values (:id, :created_at) " +
+            "   on conflict (id) do nothing " +
+            "   returning id " +
+            "), saved as ( " +
+            "   insert into reserves (id, account_id, amount, type, created_at, expires_at) " +
+            "   select :id, :account_id, :amount, :type, :created_at, :expires_at " +
+            "   from taken " +
+            "   returning id " +
+            ") " +
+            "insert into reserve_outbox (event, reserve_id, account_id, amount, type, created_at, expires_at) " +
+            "select 'PREPARED', :id, :account_id, :outbox_amount, :type, :created_at, :expires_at " +
+            "from saved ";
+
+    private static final String HOLD_WITHDRAW = "update accounts " +
+            "set reserved_withdraw = reserved_withdraw + :amount " +
+            "where id = :id ";
 
-    private static final String GET_BY_ID = "select id, account_id, amount, type, created_at " +
+    // handled reserves are marked, not deleted, and go away with their partition.
+    // locks the account before the reserve like COMMIT, so a concurrent commit of the same reserve can't deadlock
+    static final String DELETE = "with locked as ( " +
+            "   select id from accounts " +
+            "   where id = (select account_id from reserves where id = :id and handled_at is null) " +
+            "   for update " +
+            "), deleted as ( " +
+            "   update reserves r set handled_at = now() " +
+            "   from locked l " +
+            "   where r.id = :id and r.account_id = l.id and r.handled_at is null " +
+            "   returning r.account_id, r.amount, r.type " +
+            "), released as ( " +
+            "   update accounts a " +
+            "   set reserved_withdraw = a.reserved_withdraw - d.amount " +
+            "   from deleted d " +
+            "   where a.id = d.account_id and d.type = 'WITHDRAW' " +
+            ") " +
+            "select count(*) from deleted ";
+
+    // locks the accounts with withdraws in id order, deletes the reserves and releases the holds per account
+    private static final String DELETE_ALL = "with locked as ( " +
+            "   select id from accounts " +
+            "   where id in (select account_id from reserves " +
+            "                where id = any(:ids) and type = 'WITHDRAW' and handled_at is null) " +
+            "   order by id " +
+            "   for update " +
+            "), deleted as ( " +
+            "   update reserves set handled_at = now() " +
+            "   where id = any(:ids) and handled_at is null " +
+            "   returning id, account_id, amount, type, created_at, expires_at " +
+            "), released as ( " +
+            "   update accounts a " +
+            "   set reserved_withdraw = a.reserved_withdraw - d.released " +
+            "   from (select account_id, sum(amount) as released " +
+            "         from deleted " +
+            "         where type = 'WITHDRAW' " +
+            "         group by account_id) d " +
+            "   where a.id = d.account_id and a.id in (select id from locked) " +
+            ") " +
+            "select r.id, r.account_id, r.amount, r.type, r.created_at, r.expires_at, " +
+            "   d.id is not null as handled, r.handled_at is not null as handled_before, true as account_active " +
+            "from reserves r " +
+            "   left join deleted d on d.id = r.id " +
+            "where r.id = any(:ids) ";
+
+    // the overdue reserves are those past their expires_at and those without it created before the default expiry.
+    // skips the accounts and the reserves locked by commits, rollbacks and other sweepers, so it never waits for
+    // a lock and never deadlocks with them. the skipped reserves are expired by a later sweep
+    private static final String EXPIRE_OVERDUE = "with candidates as ( " +
+            "   select distinct account_id " +
+            "   from (select account_id from reserves " +
+            "         where handled_at is null " +
+            "             and (expires_at <= :now " +
+            "                 or expires_at is null and created_at <= :default_expired_before) " +
+            "         limit :limit) c " +
+            "), locked as ( " +
+            "   select id from accounts " +
+            "   where id in (select account_id from candidates) " +
+            "   order by id " +
+            "   for update skip locked " +
+            "), overdue as ( " +
+            "   select id, created_at from reserves " +
+            "   where account_id in (select id from locked) " +
+            "       and handled_at is null " +
+            "       and (expires_at <= :now " +
+            "           or expires_at is null and created_at <= :default_expired_before) " +
+            "   limit :limit " +
+            "   for update skip locked " +
+            "), deleted as ( " +
+            "   update reserves r set handled_at = now() " +
+            "   from overdue o " +
+            "   where r.id = o.id and r.created_at = o.created_at " +
+            "   returning r.id, r.account_id, r.amount, r.type, r.created_at, r.expires_at " +
+            "), released as ( " +
+            "   update accounts a " +
+            "   set reserved_withdraw = a.reserved_withdraw - d.released " +
+            "   from (select account_id, sum(amount) as released " +
+            "         from deleted " +
+            "         where type = 'WITHDRAW' " +
+            "         group by account_id) d " +
+            "   where a.id = d.account_id " +
+            ") " +
+            "select id, account_id, amount, type, created_at, expires_at " +
+            "from deleted ";
+
+    private static final String GET_IDS = "select id " +
+            "from reserve_ids ";
+
+    private static final String GET_ALL = "select id, account_id, amount, type, created_at, expires_at " +
             "from reserves " +
-            "where id = :id ";
+            "where handled_at is null ";
 
-    private static final String GET_1_IF_EXISTS_BY_ID = "select 1 as exists " +
+    static final String GET_BY_ID = "select id, account_id, amount, type, created_at, expires_at " +
             "from reserves " +
-            "where id = :id ";
+            "where id = :id and handled_at is null ";
 
-    private static final String GET_SUM_RESERVES_AMOUNT = "select sum(amount) as reserves_sum " +
+    static final String GET_1_IF_EXISTS_BY_ID = "select 1 as exists " +
             "from reserves " +
-            "where account_id = :id and type = :type";
+            "where id = :id and handled_at is null ";
+
+    private static final String GET_INCONSISTENT_RESERVED_WITHDRAW = "select a.id " +
+            "from accounts a " +
+            "   left join (select account_id, sum(amount) as reserved " +
+            "              from reserves " +
+            "              where type = 'WITHDRAW' and handled_at is null " +
+            "              group by account_id) r on r.account_id = a.id " +
+            "where a.reserved_withdraw <> coalesce(r.reserved, 0) " +
+            "order by a.id ";
 
     private final Jdbi jdbi;
+    private final JdbiRouter router;
+    private final ReserveTransactionStrategy transactionStrategy;
+    private final ReserveIdFilter idFilter;
+
+    public JdbiReserveRepository(JdbiRouter router, ReserveTransactionStrategy transactionStrategy,
+                                 ReserveIdFilter idFilter) {
+        this.jdbi = router.forWrites();
+        this.router = router;
+        this.transactionStrategy = transactionStrategy;
+        this.idFilter = idFilter;
+    }
+
+    @PostConstruct
+    public void seedIdFilter() {
+        if (!idFilter.isEnabled()) {
+            return;
+        }
 
-    public JdbiReserveRepository(Jdbi jdbi) {
-        this.jdbi = jdbi;
+        jdbi.useHandle(handle -> {
+            try (var query = handle.createQuery(GET_IDS)) {
+                query.mapTo(String.class)
+                        .forEach(idFilter::put);
+            }
+        });
+        log.info("reserve id filter is seeded. ids = {}, memory = {} bytes, expected fpp = {}",
+                idFilter.getInsertions(), idFilter.getMemoryBytes(), idFilter.getExpectedFpp());
     }
 
     @Override
     public void saveIfAllowed(@NonNull Reserve reserve) throws DeniedReserveException {
-        boolean haveToRetry = false;
-        try {
-            jdbi.useTransaction(TransactionIsolationLevel.SERIALIZABLE, handle -> {
+        saveIfAllowed(reserve, false);
+    }
 
-                throwIfIdNotUnique(handle, reserve.getId());
+    @Override
+    public void saveIfAllowed(@NonNull Reserve reserve, boolean publish) throws DeniedReserveException {
+        var checkId = idFilter.mightContain(reserve.getId());
+        var status = transactionStrategy.inTransaction(reserve.getAccountId(), handle -> {
+            try (var query = handle.createQuery(RESERVE_IF_ALLOWED)
+                    .bindBySqlType(ID, reserve.getId(), Types.VARCHAR)
+                    .bindBySqlType(ACCOUNT_ID, reserve.getAccountId(), Types.BIGINT)
+                    .bindBySqlType(AMOUNT, Money.minorUnits(reserve.getAmount()), Types.BIGINT)
+                    .bindBySqlType(TYPE, reserve.getType().name(), Types.VARCHAR)
+                    .bindBySqlType(CREATED_AT, prepareDt(reserve.getCreatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
+                    .bindBySqlType(CHECK_ID, checkId, Types.BOOLEAN)
+                    .bindBySqlType(EXPIRES_AT, prepareDt(reserve.getExpiresAt()), Types.TIMESTAMP_WITH_TIMEZONE)
+                    .bindBySqlType(PUBLISH, publish, Types.BOOLEAN)) {
+                return query.mapTo(Integer.class)
+                        .one();
+            }
+        });
 
-                var account = getAccount(handle, reserve);
+        if (status == SAVED || status == NOT_UNIQUE_ID) {
+            idFilter.put(reserve.getId());
+        }
+        if (status == NOT_UNIQUE_ID && checkId) {
+            idFilter.recordConfirmedHit();
+        }
 
-                if (ReserveType.WITHDRAW.equals(reserve.getType())) {
+        throwIfNotSaved(reserve, status);
+    }
 
-                    throwIfIllegalWithdraw(handle, reserve, account);
+    static void throwIfNotSaved(Reserve reserve, int status) throws DeniedReserveException {
+        switch (status) {
+            case SAVED:
+                return;
+            case NOT_UNIQUE_ID:
+                throw NotUniqueIdException.builder()
+                        .id(reserve.getId())
+                        .model("reserve")
+                        .build();
+            case ACCOUNT_NOT_FOUND:
+                throw new AccountNotFoundException(reserve.getAccountId());
+            default:
+                var reason = DenyReason.byCode(status)
+                        .orElseThrow(() -> new IllegalStateException(
+                                String.format("unknown status of reserve_if_allowed. %d", status)));
+                throw new DeniedReserveException(
+                        String.format("reserve is denied due to %s. reserve's id = %s, account's id = %d",
+                                reason.name(), reserve.getId(), reserve.getAccountId()),
+                        reason);
+        }
+    }
 
-                }
+    /**
+     * Locks the accounts of the batch in id order, checks the funds in memory and saves the allowed
+     * reserves with one JDBC batch, so the number of round trips doesn't depend on the batch size.
+     */
+    @Override
+    public @NonNull List<ReserveResult> saveAllIfAllowed(@NonNull List<Reserve> reserves) {
+        return saveAllIfAllowed(reserves, false);
+    }
 
-                handle.createUpdate(INSERT)
-                        .bindBySqlType(ID, reserve.getId(), Types.VARCHAR)
-                        .bindBySqlType(ACCOUNT_ID, reserve.getAccountId(), Types.BIGINT)
-                        .bindBySqlType(AMOUNT, reserve.getAmount(), Types.NUMERIC)
-                        .bindBySqlType(TYPE, reserve.getType().name(), Types.VARCHAR)
-                        .bindBySqlType(CREATED_AT, prepareDt(reserve.getCreatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
-                        .execute();
-            });
-        } catch (JdbiException e) {
+    @Override
+    public @NonNull List<ReserveResult> saveAllIfAllowed(@NonNull List<Reserve> reserves, boolean publish) {
+        if (reserves.isEmpty()) {
+            return List.of();
+        }
+
+        var accountIds = reserves.stream()
+                .map(Reserve::getAccountId)
+                .distinct()
+                .collect(Collectors.toList());
+        var ids = reserves.stream()
+                .map(Reserve::getId)
+                .collect(Collectors.toList());
+
+        return jdbi.inTransaction(TransactionIsolationLevel.READ_COMMITTED, handle -> {
+            var available = lockActiveAccounts(handle, accountIds);
+            var takenIds = getExistingIds(handle, ids);
+            takenIds.forEach(id -> idFilter.recordConfirmedHit());
+
+            var results = new ReserveResult[reserves.size()];
+            var held = new HashMap<Long, Long>();
+            var pending = IntStream.range(0, reserves.size()).boxed().collect(Collectors.toList());
+
+            // an id taken by a concurrent insert gives its funds back, so the options denied for the money
+            // are checked again. rare, and each pass settles at least one option for good
+            while (checkAndInsert(handle, reserves, pending, available, takenIds, results, held, publish)) {
+                pending = pending.stream()
+                        .filter(i -> DenyReason.NOT_ENOUGH_MONEY.equals(results[i].getDenyReason()))
+                        .collect(Collectors.toList());
+            }
 
-            if (containsRetryReason(e)) {
-                haveToRetry = true;
+            holdAll(handle, held);
+
+            return Arrays.asList(results);
+        });
+    }
+
+    // returns whether a concurrent insert has taken the id of an allowed reserve
+    private boolean checkAndInsert(Handle handle, List<Reserve> reserves, List<Integer> indexes,
+                                   Map<Long, Long> available, Set<String> takenIds, ReserveResult[] results,
+                                   Map<Long, Long> held, boolean publish) {
+        var allowed = new ArrayList<Integer>(indexes.size());
+        for (var index : indexes) {
+            var reserve = reserves.get(index);
+            var denyReason = checkAndTake(reserve, available, takenIds);
+            if (denyReason == null) {
+                allowed.add(index);
             } else {
-                throw e;
+                results[index] = ReserveResult.denied(reserve.getId(), denyReason);
             }
+        }
 
+        var lost = false;
+        var inserted = insertAll(handle, reserves, allowed, publish);
+        for (int i = 0; i < inserted.length; ++i) {
+            var reserve = reserves.get(allowed.get(i));
+            idFilter.put(reserve.getId());
+            if (inserted[i] == 0) { // a concurrent reserve with the same id has won
+                results[allowed.get(i)] = ReserveResult.denied(reserve.getId(), DenyReason.NOT_UNIQUE_ID);
+                if (ReserveType.WITHDRAW.equals(reserve.getType())) {
+                    available.merge(reserve.getAccountId(), Money.minorUnits(reserve.getAmount()), Money::add);
+                }
+                lost = true;
+                continue;
+            }
+            if (ReserveType.WITHDRAW.equals(reserve.getType())) {
+                held.merge(reserve.getAccountId(), Money.minorUnits(reserve.getAmount()), Money::add);
+            }
+            results[allowed.get(i)] = ReserveResult.reserved(reserve);
         }
+        return lost;
+    }
 
-        if (haveToRetry) {
-            saveIfAllowed(reserve);
+    private Map<Long, Long> lockActiveAccounts(Handle handle, List<Long> accountIds) { // available minor units
+        try (var query = handle.createQuery(LOCK_ACTIVE_ACCOUNTS)
+                .bindArray(IDS, Long.class, accountIds)) {
+            return query.reduceRows(new HashMap<Long, Long>(), (available, row) -> {
+                available.put(row.getColumn(ID, Long.class), row.getColumn(AVAILABLE, Long.class));
+                return available;
+            });
         }
     }
 
-    private boolean containsRetryReason(JdbiException e) {
-        var cause = e.getCause();
-        if (cause instanceof PSQLException) {
+    private Set<String> getExistingIds(Handle handle, List<String> ids) {
+        var possiblyTaken = ids.stream()
+                .filter(idFilter::mightContain)
+                .collect(Collectors.toList());
+        if (possiblyTaken.isEmpty()) { // all the ids are new, no round trip
+            return new HashSet<>();
+        }
 
-            var error = ((PSQLException) cause).getServerErrorMessage();
+        try (var query = handle.createQuery(GET_EXISTING_IDS)
+                .bindArray(IDS, String.class, possiblyTaken)) {
+            return query.mapTo(String.class)
+                    .collect(Collectors.toCollection(HashSet::new));
+        }
+    }
 
-            return error != null
-                    && RETRY_HINT.equals(error.getHint());
+    // returns null and takes the id and the funds if the reserve is allowed
+    private DenyReason checkAndTake(Reserve reserve, Map<Long, Long> available, Set<String> takenIds) {
+        if (takenIds.contains(reserve.getId())) {
+            return DenyReason.NOT_UNIQUE_ID;
         }
 
-        return false;
-    }
+        var funds = available.get(reserve.getAccountId());
+        if (funds == null) {
+            return DenyReason.ACCOUNT_NOT_FOUND;
+        }
 
-    private void throwIfIdNotUnique(Handle handle, String id) {
-        if (getOneIfExists(handle, id).isPresent()) {
-            throw NotUniqueIdException.builder()
-                    .id(id)
-                    .model("reserve")
-                    .build();
+        if (ReserveType.WITHDRAW.equals(reserve.getType())) {
+            var reserving = Money.minorUnits(reserve.getAmount());
+            if (!Money.hasEnoughMoney(funds, reserving)) {
+                return DenyReason.NOT_ENOUGH_MONEY;
+            }
+            available.put(reserve.getAccountId(), Money.subtract(funds, reserving));
         }
-    }
 
-    private void throwIfIllegalWithdraw(Handle handle, Reserve reserve, Account account) throws DeniedReserveException {
-        try (var reservedAmountQuery = handle.createQuery(GET_SUM_RESERVES_AMOUNT)
-                .bindBySqlType(ID, reserve.getAccountId(), Types.BIGINT)
-                .bindBySqlType(TYPE, ReserveType.WITHDRAW, Types.VARCHAR)) {
+        takenIds.add(reserve.getId());
+        return null;
+    }
 
-            var reservedAmount = reservedAmountQuery
-                    .mapTo(BigDecimal.class)
-                    .findOne()
-                    .orElse(BigDecimal.ZERO);
+    private int[] insertAll(Handle handle, List<Reserve> reserves, List<Integer> indexes, boolean publish) {
+        if (indexes.isEmpty()) {
+            return new int[0];
+        }
 
-            if (!hasEnoughMoney(account, reservedAmount, reserve.getAmount())) {
-                throw new DeniedReserveException(
-                        String.format("there are not enough funds in the account to perform the withdraw. " +
-                                        "reserve's id = %s, account's id = %d",
-                                reserve.getId(), reserve.getAccountId()),
-                        DenyReason.NOT_ENOUGH_MONEY);
+        var batch = handle.prepareBatch(publish ? INSERT_IF_UNIQUE_AND_PUBLISH : INSERT_IF_UNIQUE);
+        for (var index : indexes) {
+            var reserve = reserves.get(index);
+            batch.bindBySqlType(ID, reserve.getId(), Types.VARCHAR)
+                    .bindBySqlType(ACCOUNT_ID, reserve.getAccountId(), Types.BIGINT)
+                    .bindBySqlType(AMOUNT, Money.minorUnits(reserve.getAmount()), Types.BIGINT)
+                    .bindBySqlType(TYPE, reserve.getType().name(), Types.VARCHAR)
+                    .bindBySqlType(CREATED_AT, prepareDt(reserve.getCreatedAt()), Types.TIMESTAMP_WITH_TIMEZONE)
+                    .bindBySqlType(EXPIRES_AT, prepareDt(reserve.getExpiresAt()), Types.TIMESTAMP_WITH_TIMEZONE);
+            if (publish) {
+                batch.bindBySqlType(OUTBOX_AMOUNT, reserve.getAmount(), Types.NUMERIC);
             }
+            batch.add();
+        }
+        return batch.execute();
+    }
 
+    private void holdAll(Handle handle, Map<Long, Long> held) {
+        if (held.isEmpty()) {
+            return;
         }
+
+        var batch = handle.prepareBatch(HOLD_WITHDRAW);
+        held.forEach((accountId, amount) -> batch
+                .bindBySqlType(ID, accountId, Types.BIGINT)
+                .bindBySqlType(AMOUNT, amount, Types.BIGINT)
+                .add());
+        batch.execute();
     }
 
-    private boolean hasEnoughMoney(Account account, BigDecimal reserved, BigDecimal reserving) {
-        var remainder = account.getAmount()
-                .subtract(
-                        reserved.add(reserving)
-                );
-        return remainder.compareTo(BigDecimal.ZERO) >= 0;
+    @Override
+    public boolean delete(@NonNull Reserve reserve) {
+        return jdbi.withHandle(handle -> handle.createQuery(DELETE)
+                .bindBySqlType(ID, reserve.getId(), Types.VARCHAR)
+                .mapTo(Integer.class)
+                .one()) == 1;
     }
 
-    private Account getAccount(Handle handle, Reserve reserve) {
-        try (var query = handle.createQuery(GET_ACTIVE_ACCOUNT_BY_ID)
-                .bindBySqlType(ACCOUNT_ID, reserve.getAccountId(), Types.BIGINT)) {
-            return query.mapTo(Account.class)
-                    .findOne()
-                    .orElseThrow(() -> {
-                        throw new AccountNotFoundException(reserve.getAccountId());
-                    });
+    @Override
+    public @NonNull List<ReserveHandleResult> deleteAll(@NonNull Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
         }
+
+        var rows = jdbi.withHandle(handle -> handle.createQuery(DELETE_ALL)
+                .bindArray(IDS, String.class, ids)
+                .map(HandledReserveRow.mapper())
+                .list());
+
+        return HandledReserveRow.toResults(ids, rows);
     }
 
     @Override
-    public boolean delete(@NonNull Reserve reserve) {
-        return jdbi.withHandle(handle -> handle.createUpdate(DELETE)
-                .bindBySqlType(ID, reserve.getId(), Types.VARCHAR)
-                .execute()) == 1;
+    public @NonNull List<Reserve> expireOverdue(@NonNull LocalDateTime now, Duration defaultTtl, int limit) {
+        var defaultExpiredBefore = defaultTtl != null ? now.minus(defaultTtl) : null;
+        return jdbi.withHandle(handle -> handle.createQuery(EXPIRE_OVERDUE)
+                .bindBySqlType(NOW, prepareDt(now), Types.TIMESTAMP_WITH_TIMEZONE)
+                .bindBySqlType(DEFAULT_EXPIRED_BEFORE, prepareDt(defaultExpiredBefore), Types.TIMESTAMP_WITH_TIMEZONE)
+                .bindBySqlType(LIMIT, limit, Types.INTEGER)
+                .mapTo(Reserve.class)
+                .list());
     }
 
     @Override
-    public @NonNull Optional<Reserve> get(@NonNull String id) {
-        return jdbi.withHandle(handle -> handle.createQuery(GET_BY_ID)
+    public @NonNull Optional<Reserve> get(@NonNull String id) { // decides whether a reserve can be committed
+        return router.forWrites().withHandle(handle -> handle.createQuery(GET_BY_ID)
                 .bindBySqlType(ID, id, Types.VARCHAR)
                 .mapTo(Reserve.class)
                 .findOne());
     }
 
+    @Override
+    public @NonNull List<Reserve> getAll() {
+        return jdbi.withHandle(handle -> handle.createQuery(GET_ALL)
+                .mapTo(Reserve.class)
+                .list());
+    }
+
     @Override
     public boolean exists(@NonNull String id) {
         return jdbi.withHandle(handle -> getOneIfExists(handle, id))
                 .isPresent();
     }
 
+    @Override
+    public @NonNull List<Long> getInconsistentReservedWithdrawAccountIds() {
+        return jdbi.withHandle(handle -> handle.createQuery(GET_INCONSISTENT_RESERVED_WITHDRAW)
+                .mapTo(Long.class)
+                .list());
+    }
+
     private Optional<Integer> getOneIfExists(Handle handle, String id) {
         try(var query = handle.createQuery(GET_1_IF_EXISTS_BY_ID)
                 .bindBySqlType(ID, id, Types.VARCHAR)) {
@@ -188,7 +522,7 @@ public class JdbiReserveRepository implements ReserveRepository {
         }
     }
 
-    private OffsetDateTime prepareDt(LocalDateTime dateTime) {
-        return dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime();
+    private OffsetDateTime prepareDt(LocalDateTime dateTime) { // null for the reserves without expires_at
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime() : null;
     }
 }
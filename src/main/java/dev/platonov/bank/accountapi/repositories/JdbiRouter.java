@@ -0,0 +1,117 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Jdbi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes read-only queries to a replica while it's reachable and no more stale than allowed,
+ * otherwise to the primary. Writes and reads that feed a decision always use the primary.
+ */
+@Slf4j
+public class JdbiRouter implements AutoCloseable {
+    // 0 for an up-to-date standby and for a database that isn't a standby at all,
+    // null for a standby without a WAL receiver: it has replayed all it got, but it isn't getting anything
+    private static final String REPLICA_LAG_MILLIS = "select case " +
+            "   when not pg_is_in_recovery() then 0 " +
+            "   when not exists (select 1 from pg_stat_wal_receiver) then null " +
+            "   when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 " +
+            "   else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000, 0) " +
+            "end::bigint ";
+
+    private final Jdbi primary;
+    private final Jdbi replica; // null if there is no replica
+    private final Closeable replicaPool;
+    private final long maxStalenessMillis;
+    private final Duration checkInterval;
+    private final ScheduledExecutorService checker;
+
+    private volatile boolean replicaUsable;
+    private volatile long replicaLagMillis = -1; // -1 if unknown or disconnected from the primary
+
+    public JdbiRouter(@NonNull Jdbi primary, Jdbi replica, Closeable replicaPool,
+                      @NonNull Duration maxStaleness, @NonNull Duration checkInterval) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaPool = replicaPool;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.checkInterval = checkInterval;
+        this.checker = replica == null ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "replica-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static JdbiRouter primaryOnly(@NonNull Jdbi primary) {
+        return new JdbiRouter(primary, null, null, Duration.ZERO, Duration.ZERO);
+    }
+
+    public void start() {
+        if (checker == null) {
+            return;
+        }
+        checkReplica();
+        checker.scheduleWithFixedDelay(this::checkReplica,
+                checkInterval.toNanos(), checkInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public @NonNull Jdbi forReads() {
+        return replicaUsable ? replica : primary;
+    }
+
+    public @NonNull Jdbi forWrites() {
+        return primary;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public long getReplicaLagMillis() {
+        return replicaLagMillis;
+    }
+
+    public void checkReplica() {
+        if (replica == null) {
+            return;
+        }
+
+        var wasUsable = replicaUsable;
+        try {
+            var lag = replica.withHandle(handle -> handle.createQuery(REPLICA_LAG_MILLIS)
+                    .mapTo(Long.class)
+                    .findOne());
+            replicaLagMillis = lag.orElse(-1L);
+            replicaUsable = lag.isPresent() && lag.get() <= maxStalenessMillis;
+        } catch (RuntimeException e) {
+            replicaLagMillis = -1;
+            replicaUsable = false;
+            if (wasUsable) {
+                log.warn("replica is unreachable, reading from the primary", e);
+            }
+            return;
+        }
+
+        if (wasUsable != replicaUsable) {
+            log.info("replica lag = {} ms, reading from the {}", replicaLagMillis, replicaUsable ? "replica" : "primary");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (checker != null) {
+            checker.shutdown();
+        }
+        if (replicaPool != null) {
+            replicaPool.close();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.LedgerEntry;
+import dev.platonov.bank.accountapi.models.Reserve;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public interface LedgerRepository {
+    @NonNull List<Account> getAccounts();
+    @NonNull Optional<Account> getAccount(long id);
+    @NonNull List<Reserve> getReserves();
+    // applies the entries within one transaction, returns the ids of the saved reserves taken in reserve_ids,
+    // nothing of which is written
+    @NonNull Set<String> append(@NonNull List<LedgerEntry> entries);
+}
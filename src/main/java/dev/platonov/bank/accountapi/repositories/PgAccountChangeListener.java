@@ -0,0 +1,113 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.AccountChange;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Listens to the account_changes channel filled by the notify_account_change trigger on a dedicated connection,
+ * so the data source should open a connection outside the application's pool, and hands the changes over
+ * in batches, one batch per poll. Notifications sent while the connection is lost
+ * can't be recovered, so {@code onReconnect} is called every time the channel is listened to again.
+ */
+@Slf4j
+public class PgAccountChangeListener implements AutoCloseable {
+    private static final String LISTEN = "listen account_changes";
+
+    private final DataSource dataSource;
+    private final Consumer<List<AccountChange>> onChanges;
+    private final Runnable onReconnect;
+    private final int pollTimeoutMillis;
+    private final Duration reconnectDelay;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile long lagMillis; // of the latest change in the latest batch
+
+    public PgAccountChangeListener(DataSource dataSource, Consumer<List<AccountChange>> onChanges,
+                                   Runnable onReconnect, @NonNull Duration pollTimeout,
+                                   @NonNull Duration reconnectDelay) {
+        this.dataSource = dataSource;
+        this.onChanges = onChanges;
+        this.onReconnect = onReconnect;
+        this.pollTimeoutMillis = Math.toIntExact(pollTimeout.toMillis());
+        this.reconnectDelay = reconnectDelay;
+        this.thread = new Thread(this::run, "account-change-listener");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            try (var connection = dataSource.getConnection()) {
+                listen(connection);
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("lost the account change channel, listening again in {}", reconnectDelay, e);
+                sleep(reconnectDelay);
+            }
+        }
+    }
+
+    private void listen(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute(LISTEN);
+        }
+        onReconnect.run();
+
+        var pgConnection = connection.unwrap(PGConnection.class);
+        while (running) {
+            var notifications = pgConnection.getNotifications(pollTimeoutMillis);
+            if (notifications == null || notifications.length == 0) {
+                continue;
+            }
+
+            var changes = new ArrayList<AccountChange>(notifications.length);
+            for (var notification : notifications) {
+                try {
+                    changes.add(AccountChange.parse(notification.getParameter()));
+                } catch (IllegalArgumentException e) {
+                    log.warn("skipping account change notification", e);
+                }
+            }
+
+            if (!changes.isEmpty()) {
+                onChanges.accept(changes);
+                lagMillis = System.currentTimeMillis() - changes.get(changes.size() - 1).getChangedAtMillis();
+            }
+        }
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
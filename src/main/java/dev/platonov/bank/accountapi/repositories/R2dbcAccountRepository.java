@@ -0,0 +1,148 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
+import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Money;
+import dev.platonov.bank.accountapi.models.Reserve;
+import io.r2dbc.spi.Row;
+import lombok.NonNull;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+/**
+ * Runs the statements of {@link JdbiAccountRepository} on R2DBC.
+ */
+@Repository
+@Profile("reactive")
+public class R2dbcAccountRepository implements ReactiveAccountRepository {
+    private static final String ID = "id";
+    private static final String ACCOUNT_ID = "account_id";
+    private static final String RESERVE_ID = "reserve_id";
+    private static final String ACCOUNT_ACTIVE = "account_active";
+    private static final String COMMITTED = "committed";
+    private static final String AMOUNT = "amount";
+    private static final String ACTIVE = "active";
+    private static final String CREATED_AT = "created_at";
+    private static final String UPDATED_AT = "updated_at";
+    private static final String VERSION = "version";
+
+    private final DatabaseClient client;
+
+    public R2dbcAccountRepository(DatabaseClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public @NonNull Mono<Account> save(@NonNull Account account) {
+        return client.sql(JdbiAccountRepository.INSERT)
+                .bind(AMOUNT, Money.minorUnits(account.getAmount()))
+                .bind(ACTIVE, account.isActive())
+                .bind(CREATED_AT, prepareDt(account.getCreatedAt()))
+                .bind(UPDATED_AT, prepareDt(account.getUpdatedAt()))
+                .map((row, metadata) -> map(row))
+                .one();
+    }
+
+    @Override
+    public @NonNull Mono<Account> incr(long id, @NonNull BigDecimal amount) {
+        return applyToAmount(id, amount, JdbiAccountRepository.INCR);
+    }
+
+    @Override
+    public @NonNull Mono<Account> decr(long id, @NonNull BigDecimal amount) {
+        return applyToAmount(id, amount, JdbiAccountRepository.DECR);
+    }
+
+    // the update only matches an active account, so no existence check is needed before it
+    private Mono<Account> applyToAmount(long id, BigDecimal amount, String query) {
+        return client.sql(query)
+                .bind(ID, id)
+                .bind(AMOUNT, Money.minorUnits(amount))
+                .bind(UPDATED_AT, prepareDt(LocalDateTime.now()))
+                .map((row, metadata) -> map(row))
+                .one()
+                .switchIfEmpty(Mono.error(() -> new AccountNotFoundException(id)));
+    }
+
+    @Override
+    public @NonNull Mono<Account> commit(@NonNull Reserve reserve) {
+        return client.sql(JdbiAccountRepository.COMMIT)
+                .bind(ACCOUNT_ID, reserve.getAccountId())
+                .bind(RESERVE_ID, reserve.getId())
+                .bind(UPDATED_AT, prepareDt(LocalDateTime.now()))
+                .map((row, metadata) -> {
+                    if (!row.get(ACCOUNT_ACTIVE, Boolean.class)) {
+                        throw new AccountNotFoundException(reserve.getAccountId());
+                    }
+                    if (!row.get(COMMITTED, Boolean.class)) {
+                        throw new AlreadyHandledReserveException(reserve);
+                    }
+                    return map(row);
+                })
+                .one();
+    }
+
+    @Override
+    public @NonNull Mono<Void> close(@NonNull Account account) {
+        return client.sql(JdbiAccountRepository.CLOSE)
+                .bind(ID, account.getId())
+                .bind(UPDATED_AT, prepareDt(account.getUpdatedAt()))
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated == 0
+                        ? Mono.<Void>error(new AccountNotFoundException(account.getId()))
+                        : Mono.empty());
+    }
+
+    @Override
+    public @NonNull Mono<Account> get(long id) {
+        return client.sql(JdbiAccountRepository.GET_BY_ID)
+                .bind(ID, id)
+                .map((row, metadata) -> map(row))
+                .one();
+    }
+
+    @Override
+    public @NonNull Mono<Account> getActive(long id) {
+        return client.sql(JdbiAccountRepository.GET_ACTIVE_BY_ID)
+                .bind(ID, id)
+                .map((row, metadata) -> map(row))
+                .one();
+    }
+
+    @Override
+    public @NonNull Mono<Boolean> existsAndActive(long id) {
+        return client.sql(JdbiAccountRepository.GET_1_IF_EXISTS_AND_ACTIVE_BY_ID)
+                .bind(ID, id)
+                .map((row, metadata) -> true)
+                .one()
+                .defaultIfEmpty(false);
+    }
+
+    private static Account map(Row row) {
+        return new Account(
+                row.get(ID, Long.class),
+                Money.toBigDecimal(row.get(AMOUNT, Long.class)),
+                row.get(ACTIVE, Boolean.class),
+                localDateTime(row.get(CREATED_AT, OffsetDateTime.class)),
+                localDateTime(row.get(UPDATED_AT, OffsetDateTime.class)),
+                row.get(VERSION, Long.class)
+        );
+    }
+
+    private static LocalDateTime localDateTime(OffsetDateTime dateTime) {
+        return dateTime.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    private OffsetDateTime prepareDt(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime();
+    }
+}
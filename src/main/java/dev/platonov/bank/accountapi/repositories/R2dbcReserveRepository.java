@@ -0,0 +1,118 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.Money;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import io.r2dbc.spi.Row;
+import lombok.NonNull;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+/**
+ * Runs the statements of {@link JdbiReserveRepository} on R2DBC. Shares the id filter with it,
+ * so the filter is seeded once by the blocking repository.
+ */
+@Repository
+@Profile("reactive")
+public class R2dbcReserveRepository implements ReactiveReserveRepository {
+    private static final String ID = "id";
+    private static final String ACCOUNT_ID = "account_id";
+    private static final String TYPE = "type";
+    private static final String AMOUNT = "amount";
+    private static final String CREATED_AT = "created_at";
+    private static final String EXPIRES_AT = "expires_at";
+    private static final String CHECK_ID = "check_id";
+    private static final String PUBLISH = "publish";
+
+    private final DatabaseClient client;
+    private final ReactiveReserveTransaction transaction;
+    private final ReserveIdFilter idFilter;
+
+    public R2dbcReserveRepository(DatabaseClient client, ReactiveReserveTransaction transaction,
+                                  ReserveIdFilter idFilter) {
+        this.client = client;
+        this.transaction = transaction;
+        this.idFilter = idFilter;
+    }
+
+    @Override
+    public @NonNull Mono<Void> saveIfAllowed(@NonNull Reserve reserve) {
+        var checkId = idFilter.mightContain(reserve.getId());
+        var statement = client.sql(JdbiReserveRepository.RESERVE_IF_ALLOWED)
+                .bind(ID, reserve.getId())
+                .bind(ACCOUNT_ID, reserve.getAccountId())
+                .bind(AMOUNT, Money.minorUnits(reserve.getAmount()))
+                .bind(TYPE, reserve.getType().name())
+                .bind(CREATED_AT, prepareDt(reserve.getCreatedAt()))
+                .bind(EXPIRES_AT, Parameter.fromOrEmpty(prepareDt(reserve.getExpiresAt()), OffsetDateTime.class))
+                .bind(CHECK_ID, checkId)
+                .bind(PUBLISH, false) // the reactive routes serve HTTP only, nothing is published
+                .map((row, metadata) -> row.get(0, Integer.class))
+                .one();
+
+        return transaction.run(reserve.getAccountId(), statement)
+                .flatMap(status -> Mono.<Void>fromCallable(() -> {
+                    if (status == JdbiReserveRepository.SAVED || status == JdbiReserveRepository.NOT_UNIQUE_ID) {
+                        idFilter.put(reserve.getId());
+                    }
+                    if (status == JdbiReserveRepository.NOT_UNIQUE_ID && checkId) {
+                        idFilter.recordConfirmedHit();
+                    }
+
+                    JdbiReserveRepository.throwIfNotSaved(reserve, status);
+                    return null;
+                }));
+    }
+
+    @Override
+    public @NonNull Mono<Boolean> delete(@NonNull Reserve reserve) {
+        return client.sql(JdbiReserveRepository.DELETE)
+                .bind(ID, reserve.getId())
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .map(deleted -> deleted > 0);
+    }
+
+    @Override
+    public @NonNull Mono<Reserve> get(@NonNull String id) {
+        return client.sql(JdbiReserveRepository.GET_BY_ID)
+                .bind(ID, id)
+                .map((row, metadata) -> map(row))
+                .one();
+    }
+
+    @Override
+    public @NonNull Mono<Boolean> exists(@NonNull String id) {
+        return client.sql(JdbiReserveRepository.GET_1_IF_EXISTS_BY_ID)
+                .bind(ID, id)
+                .map((row, metadata) -> true)
+                .one()
+                .defaultIfEmpty(false);
+    }
+
+    private static Reserve map(Row row) {
+        return new Reserve(
+                row.get(ID, String.class),
+                row.get(ACCOUNT_ID, Long.class),
+                Money.toBigDecimal(row.get(AMOUNT, Long.class)),
+                ReserveType.valueOf(row.get(TYPE, String.class)),
+                localDateTime(row.get(CREATED_AT, OffsetDateTime.class)),
+                localDateTime(row.get(EXPIRES_AT, OffsetDateTime.class))
+        );
+    }
+
+    private static LocalDateTime localDateTime(OffsetDateTime dateTime) {
+        return dateTime != null ? dateTime.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime() : null;
+    }
+
+    private OffsetDateTime prepareDt(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime() : null;
+    }
+}
@@ -0,0 +1,26 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import lombok.NonNull;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+public interface ReactiveAccountRepository {
+    @NonNull Mono<Account> save(@NonNull Account account);
+
+    @NonNull Mono<Account> incr(long id, @NonNull BigDecimal amount); // errors with AccountNotFoundException
+
+    @NonNull Mono<Account> decr(long id, @NonNull BigDecimal amount); // errors with AccountNotFoundException
+
+    @NonNull Mono<Account> commit(@NonNull Reserve reserve); // errors like AccountRepository.commit
+
+    @NonNull Mono<Void> close(@NonNull Account account); // errors with AccountNotFoundException
+
+    @NonNull Mono<Account> get(long id); // empty if there is no such account
+
+    @NonNull Mono<Account> getActive(long id);
+
+    @NonNull Mono<Boolean> existsAndActive(long id);
+}
@@ -0,0 +1,12 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.Reserve;
+import lombok.NonNull;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveReserveRepository {
+    @NonNull Mono<Void> saveIfAllowed(@NonNull Reserve reserve); // errors like ReserveRepository.saveIfAllowed
+    @NonNull Mono<Boolean> delete(@NonNull Reserve reserve);
+    @NonNull Mono<Reserve> get(@NonNull String id); // empty if there is no such reserve
+    @NonNull Mono<Boolean> exists(@NonNull String id);
+}
@@ -0,0 +1,97 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.exceptions.ReserveConflictException;
+import io.r2dbc.postgresql.api.PostgresqlException;
+import io.r2dbc.spi.R2dbcException;
+import lombok.NonNull;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * The reactive counterpart of {@link SingleStatementTransactionStrategy} and
+ * {@link SerializableRetryTransactionStrategy}: the statement runs on its own or in a serializable transaction
+ * retried with a jittered backoff, which waits on a timer instead of a sleeping thread.
+ */
+public class ReactiveReserveTransaction {
+    private static final String RETRY_HINT = "The transaction might succeed if retried.";
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    private final TransactionalOperator operator; // null runs the statement without a transaction
+    private final int maxAttempts;
+    private final Duration backoffBase;
+    private final Duration backoffMax;
+    private final ReserveTransactionStats stats = new ReserveTransactionStats();
+
+    private ReactiveReserveTransaction(TransactionalOperator operator, int maxAttempts,
+                                       Duration backoffBase, Duration backoffMax) {
+        this.operator = operator;
+        this.maxAttempts = maxAttempts;
+        this.backoffBase = backoffBase;
+        this.backoffMax = backoffMax;
+    }
+
+    public static ReactiveReserveTransaction singleStatement() {
+        return new ReactiveReserveTransaction(null, 1, Duration.ZERO, Duration.ZERO);
+    }
+
+    public static ReactiveReserveTransaction serializable(@NonNull ReactiveTransactionManager transactionManager,
+                                                          int maxAttempts, @NonNull Duration backoffBase,
+                                                          @NonNull Duration backoffMax) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException(String.format("max attempts must be positive. got %d", maxAttempts));
+        }
+        var definition = new DefaultTransactionDefinition();
+        definition.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        return new ReactiveReserveTransaction(TransactionalOperator.create(transactionManager, definition),
+                maxAttempts, backoffBase, backoffMax);
+    }
+
+    /**
+     * Runs the statement, resubscribing to it on every attempt, so it has to be lazy.
+     */
+    public <T> Mono<T> run(long accountId, @NonNull Mono<T> statement) {
+        if (operator == null) {
+            return statement.doOnSubscribe(subscription -> stats.recordTransaction());
+        }
+
+        return operator.transactional(statement)
+                .doOnSubscribe(subscription -> stats.recordTransaction())
+                .retryWhen(Retry.backoff(maxAttempts - 1, backoffBase)
+                        .maxBackoff(backoffMax)
+                        .jitter(1.0)
+                        .filter(ReactiveReserveTransaction::isRetryReason)
+                        .doBeforeRetry(signal -> stats.recordRetry())
+                        .onRetryExhaustedThrow((spec, signal) -> {
+                            stats.recordExhaustedRetries();
+                            var msg = String.format("cannot serialize a reserve on account with id = %d " +
+                                    "after %d attempts", accountId, signal.totalRetries() + 1);
+                            return new ReserveConflictException(msg, signal.failure());
+                        }));
+    }
+
+    public @NonNull ReserveTransactionStats getStats() {
+        return stats;
+    }
+
+    // DatabaseClient wraps the driver's exception into a DataAccessException
+    private static boolean isRetryReason(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof R2dbcException
+                    && SERIALIZATION_FAILURE.equals(((R2dbcException) cause).getSqlState())) {
+                return true;
+            }
+            if (cause instanceof PostgresqlException && ((PostgresqlException) cause).getErrorDetails().getHint()
+                    .filter(RETRY_HINT::equals)
+                    .isPresent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
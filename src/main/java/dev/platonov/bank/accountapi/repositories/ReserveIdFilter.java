@@ -0,0 +1,145 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent bloom filter of reserve ids. {@link #mightContain(String)} = false means the id has never been
+ * put, so the id lookup can be skipped; true means the database has to be asked. The filter only grows:
+ * ids of handled reserves stay in it and raise the false positive rate, see {@link #getExpectedFpp()}.
+ */
+public class ReserveIdFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    private final LongAdder insertions = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder possibleHits = new LongAdder();
+    private final LongAdder confirmedHits = new LongAdder();
+
+    private ReserveIdFilter(long bitCount, int hashCount) {
+        var words = (bitCount + Long.SIZE - 1) / Long.SIZE;
+        this.bits = new AtomicLongArray(Math.toIntExact(words));
+        this.bitCount = words * Long.SIZE;
+        this.hashCount = hashCount;
+    }
+
+    public static ReserveIdFilter create(long expectedInsertions, double fpp) {
+        if (expectedInsertions < 1 || fpp <= 0 || fpp >= 1) {
+            var msg = String.format("illegal reserve id filter. expected insertions = %d, fpp = %f",
+                    expectedInsertions, fpp);
+            throw new IllegalArgumentException(msg);
+        }
+        var bitCount = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (LN2 * LN2));
+        var hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * LN2));
+        return new ReserveIdFilter(bitCount, hashCount);
+    }
+
+    public static ReserveIdFilter disabled() { // every id might be taken
+        return new ReserveIdFilter(0, 0);
+    }
+
+    public boolean isEnabled() {
+        return bitCount > 0;
+    }
+
+    public void put(@NonNull String id) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        var hash1 = hash(id);
+        var hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        var changed = false;
+        for (int i = 0; i < hashCount; ++i) {
+            changed |= set(index(hash1 + i * hash2));
+        }
+
+        if (changed) {
+            insertions.increment();
+        }
+    }
+
+    public boolean mightContain(@NonNull String id) {
+        if (!isEnabled()) {
+            return true;
+        }
+
+        lookups.increment();
+        var hash1 = hash(id);
+        var hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; ++i) {
+            var index = index(hash1 + i * hash2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+
+        possibleHits.increment();
+        return true;
+    }
+
+    public void recordConfirmedHit() { // the database has confirmed that a possibly taken id is taken
+        confirmedHits.increment();
+    }
+
+    public long getMemoryBytes() {
+        return bitCount / Byte.SIZE;
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    public double getExpectedFpp() { // for the current number of insertions
+        if (!isEnabled()) {
+            return 1;
+        }
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions.sum() / bitCount), hashCount);
+    }
+
+    public double getObservedFpp() { // possible hits that the database hasn't confirmed, per lookup
+        var lookupCount = lookups.sum();
+        return lookupCount == 0 ? 0 : (double) (possibleHits.sum() - confirmedHits.sum()) / lookupCount;
+    }
+
+    private long index(long combinedHash) {
+        return (combinedHash & Long.MAX_VALUE) % bitCount;
+    }
+
+    private boolean set(long index) {
+        var word = (int) (index >>> 6);
+        var mask = 1L << index;
+        long old;
+        do {
+            old = bits.get(word);
+            if ((old & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, old, old | mask));
+        return true;
+    }
+
+    private static long hash(String id) { // 64-bit FNV-1a over the chars
+        var hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); ++i) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) { // murmur3 finalizer
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
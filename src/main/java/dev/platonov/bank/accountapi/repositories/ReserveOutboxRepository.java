@@ -0,0 +1,22 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.DeniedReserveEvent;
+import dev.platonov.bank.accountapi.models.ReserveOutboxEvent;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The prepared events are written by the reserve repositories in the transactions of their reserves.
+ */
+public interface ReserveOutboxRepository {
+    void addDenied(@NonNull List<DeniedReserveEvent> events);
+    // claims up to limit unsent events in id order for the lease, skipping the ones claimed by others.
+    // the events not marked sent within the lease are claimed again
+    @NonNull List<ReserveOutboxEvent> claimUnsent(int limit, @NonNull Duration lease);
+    int markSent(@NonNull Collection<Long> ids); // returns how many are marked
+    int purgeSent(@NonNull LocalDateTime sentBefore, int limit); // returns how many are purged
+}
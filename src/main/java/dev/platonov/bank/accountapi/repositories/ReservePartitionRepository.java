@@ -0,0 +1,13 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.ReservePartition;
+import lombok.NonNull;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ReservePartitionRepository {
+    int createPartitions(@NonNull LocalDate from, int days); // the missing daily partitions, returns how many
+    @NonNull List<ReservePartition> getPartitions(); // the daily ones, oldest first
+    int drop(@NonNull ReservePartition partition); // returns how many open reserves are moved to reserves_overdue
+}
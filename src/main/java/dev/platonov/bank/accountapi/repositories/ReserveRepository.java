@@ -2,13 +2,28 @@ package dev.platonov.bank.accountapi.repositories;
 
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
 import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
+import dev.platonov.bank.accountapi.models.ReserveResult;
 import lombok.NonNull;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ReserveRepository {
     void saveIfAllowed(@NonNull Reserve reserve) throws DeniedReserveException;
+    // publish = true also writes the prepared event to reserve_outbox in the transaction of the reserve
+    void saveIfAllowed(@NonNull Reserve reserve, boolean publish) throws DeniedReserveException;
+    @NonNull List<ReserveResult> saveAllIfAllowed(@NonNull List<Reserve> reserves); // a result per reserve, in order
+    @NonNull List<ReserveResult> saveAllIfAllowed(@NonNull List<Reserve> reserves, boolean publish);
     boolean delete(@NonNull Reserve reserve);
+    @NonNull List<ReserveHandleResult> deleteAll(@NonNull Collection<String> ids); // a result per id, in order
+    // handles up to limit overdue reserves and releases their holds, a null default ttl keeps the reserves without one
+    @NonNull List<Reserve> expireOverdue(@NonNull LocalDateTime now, Duration defaultTtl, int limit);
     @NonNull Optional<Reserve> get(@NonNull String id);
+    @NonNull List<Reserve> getAll(); // the open reserves
     boolean exists(@NonNull String id);
+    @NonNull List<Long> getInconsistentReservedWithdrawAccountIds(); // accounts whose reserved_withdraw differs from their reserves
 }
@@ -0,0 +1,39 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.models.Money;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the reserve columns by index, without reflection.
+ */
+public class ReserveRowMapper implements RowMapper<Reserve> {
+    private static final String[] COLUMNS = {"id", "account_id", "amount", "type", "created_at", "expires_at"};
+
+    @Override
+    public Reserve map(ResultSet rs, StatementContext ctx) throws SQLException {
+        return map(rs, ResultSets.indexes(rs, COLUMNS));
+    }
+
+    @Override
+    public RowMapper<Reserve> specialize(ResultSet rs, StatementContext ctx) throws SQLException {
+        var indexes = ResultSets.indexes(rs, COLUMNS);
+        return (row, rowCtx) -> map(row, indexes);
+    }
+
+    private static Reserve map(ResultSet rs, int[] indexes) throws SQLException {
+        return new Reserve(
+                rs.getString(indexes[0]),
+                rs.getLong(indexes[1]),
+                Money.toBigDecimal(rs.getLong(indexes[2])),
+                ReserveType.valueOf(rs.getString(indexes[3])),
+                ResultSets.localDateTime(rs, indexes[4]),
+                ResultSets.localDateTime(rs, indexes[5])
+        );
+    }
+}
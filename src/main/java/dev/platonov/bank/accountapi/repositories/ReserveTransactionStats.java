@@ -0,0 +1,55 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ReserveTransactionStats {
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhaustedRetries = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+
+    void recordTransaction() {
+        transactions.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordExhaustedRetries() {
+        exhaustedRetries.increment();
+    }
+
+    void recordLockWait(long nanos) {
+        lockWaits.increment();
+        lockWaitNanos.add(nanos);
+    }
+
+    public long getTransactions() {
+        return transactions.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getExhaustedRetries() {
+        return exhaustedRetries.sum();
+    }
+
+    public long getLockWaits() {
+        return lockWaits.sum();
+    }
+
+    public long getLockWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lockWaitNanos.sum());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("transactions = %d, retries = %d, exhausted retries = %d, lock waits = %d (%d ms)",
+                getTransactions(), getRetries(), getExhaustedRetries(), getLockWaits(), getLockWaitMillis());
+    }
+}
@@ -0,0 +1,15 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import lombok.NonNull;
+import org.jdbi.v3.core.HandleCallback;
+
+/**
+ * Runs the part of a reserve that reads and changes the account's funds, so concurrent reserves
+ * on the same account don't break the funds check.
+ */
+public interface ReserveTransactionStrategy {
+
+    <R, X extends Exception> R inTransaction(long accountId, @NonNull HandleCallback<R, X> callback) throws X;
+
+    @NonNull ReserveTransactionStats getStats();
+}
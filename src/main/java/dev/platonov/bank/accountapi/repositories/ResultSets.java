@@ -0,0 +1,33 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+final class ResultSets {
+
+    private ResultSets() {
+    }
+
+    /**
+     * 1-based indexes of the columns, resolved once per result set instead of by label on every row.
+     */
+    static int[] indexes(ResultSet rs, String... labels) throws SQLException {
+        var indexes = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            indexes[i] = rs.findColumn(labels[i]);
+        }
+        return indexes;
+    }
+
+    /**
+     * A timestamptz as the local date time of the JVM zone, the same value {@code Timestamp.toLocalDateTime()}
+     * gives, without going through {@code java.sql.Timestamp}.
+     */
+    static LocalDateTime localDateTime(ResultSet rs, int index) throws SQLException {
+        var value = rs.getObject(index, OffsetDateTime.class);
+        return value == null ? null : value.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+}
@@ -0,0 +1,22 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import org.jdbi.v3.core.statement.SqlLogger;
+import org.jdbi.v3.core.statement.StatementContext;
+
+/**
+ * Counts the statements each thread sends to the database. A batch is one statement.
+ * The difference of two {@link #get()} calls is the number of round trips in between;
+ * begin and commit of a transaction aren't counted.
+ */
+public class RoundTripCounter implements SqlLogger {
+    private final ThreadLocal<long[]> statements = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public void logBeforeExecution(StatementContext context) {
+        ++statements.get()[0];
+    }
+
+    public long get() {
+        return statements.get()[0];
+    }
+}
@@ -0,0 +1,65 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import lombok.NonNull;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+
+import java.sql.Types;
+
+/**
+ * Read committed transaction that starts with {@code select ... for update} on the account row,
+ * so reserves on the same account queue up on the row lock instead of failing.
+ */
+public class RowLockTransactionStrategy implements ReserveTransactionStrategy {
+    private static final String ID = "id";
+
+    private static final String TRY_LOCK_ACCOUNT = "select id from accounts where id = :id for update skip locked ";
+
+    private static final String LOCK_ACCOUNT = "select id from accounts where id = :id for update ";
+
+    private final Jdbi jdbi;
+    private final ReserveTransactionStats stats = new ReserveTransactionStats();
+
+    public RowLockTransactionStrategy(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    @Override
+    public <R, X extends Exception> R inTransaction(long accountId, @NonNull HandleCallback<R, X> callback) throws X {
+        stats.recordTransaction();
+
+        HandleCallback<R, X> locked = handle -> {
+            lock(handle, accountId);
+            return callback.withHandle(handle);
+        };
+
+        return jdbi.inTransaction(TransactionIsolationLevel.READ_COMMITTED, locked);
+    }
+
+    @Override
+    public @NonNull ReserveTransactionStats getStats() {
+        return stats;
+    }
+
+    private void lock(Handle handle, long accountId) {
+        if (selectAccountId(handle, TRY_LOCK_ACCOUNT, accountId)) {
+            return;
+        }
+
+        var started = System.nanoTime();
+        if (selectAccountId(handle, LOCK_ACCOUNT, accountId)) { // nothing to wait for if there is no such account
+            stats.recordLockWait(System.nanoTime() - started);
+        }
+    }
+
+    private boolean selectAccountId(Handle handle, String query, long accountId) {
+        try (var lockQuery = handle.createQuery(query)
+                .bindBySqlType(ID, accountId, Types.BIGINT)) {
+            return lockQuery.mapTo(Long.class)
+                    .findOne()
+                    .isPresent();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.exceptions.ReserveConflictException;
+import lombok.NonNull;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.JdbiException;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+import org.postgresql.util.PSQLException;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Serializable transaction, retried on serialization failures with an exponential backoff and full jitter.
+ * Throws {@link ReserveConflictException} when the attempts are over.
+ */
+public class SerializableRetryTransactionStrategy implements ReserveTransactionStrategy {
+    private static final String RETRY_HINT = "The transaction might succeed if retried.";
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    private final Jdbi jdbi;
+    private final int maxAttempts;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    private final ReserveTransactionStats stats = new ReserveTransactionStats();
+
+    public SerializableRetryTransactionStrategy(Jdbi jdbi, int maxAttempts,
+                                                @NonNull Duration backoffBase, @NonNull Duration backoffMax) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException(String.format("max attempts must be positive. got %d", maxAttempts));
+        }
+        this.jdbi = jdbi;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseMillis = backoffBase.toMillis();
+        this.backoffMaxMillis = backoffMax.toMillis();
+    }
+
+    @Override
+    public <R, X extends Exception> R inTransaction(long accountId, @NonNull HandleCallback<R, X> callback) throws X {
+        for (int attempt = 1; ; ++attempt) {
+            stats.recordTransaction();
+            try {
+                return jdbi.inTransaction(TransactionIsolationLevel.SERIALIZABLE, callback);
+            } catch (JdbiException e) {
+
+                if (!containsRetryReason(e)) {
+                    throw e;
+                }
+
+                if (attempt >= maxAttempts) {
+                    stats.recordExhaustedRetries();
+                    var msg = String.format("cannot serialize a reserve on account with id = %d after %d attempts",
+                            accountId, attempt);
+                    throw new ReserveConflictException(msg, e);
+                }
+
+                stats.recordRetry();
+                pause(accountId, attempt, e);
+            }
+        }
+    }
+
+    @Override
+    public @NonNull ReserveTransactionStats getStats() {
+        return stats;
+    }
+
+    private void pause(long accountId, int attempt, JdbiException cause) {
+        var ceiling = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            var msg = String.format("interrupted while retrying a reserve on account with id = %d", accountId);
+            throw new ReserveConflictException(msg, cause);
+        }
+    }
+
+    private boolean containsRetryReason(JdbiException e) {
+        var cause = e.getCause();
+        if (cause instanceof PSQLException) {
+
+            var psqlException = (PSQLException) cause;
+            var error = psqlException.getServerErrorMessage();
+
+            return SERIALIZATION_FAILURE.equals(psqlException.getSQLState())
+                    || error != null && RETRY_HINT.equals(error.getHint());
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,30 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import lombok.NonNull;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * No explicit transaction: the callback has to be a single statement that takes the locks it needs,
+ * like {@code reserve_if_allowed} does with its conditional update of the account. Saves the round trips
+ * spent on the isolation level, begin and commit.
+ */
+public class SingleStatementTransactionStrategy implements ReserveTransactionStrategy {
+    private final Jdbi jdbi;
+    private final ReserveTransactionStats stats = new ReserveTransactionStats();
+
+    public SingleStatementTransactionStrategy(Jdbi jdbi) {
+        this.jdbi = jdbi;
+    }
+
+    @Override
+    public <R, X extends Exception> R inTransaction(long accountId, @NonNull HandleCallback<R, X> callback) throws X {
+        stats.recordTransaction();
+        return jdbi.withHandle(callback);
+    }
+
+    @Override
+    public @NonNull ReserveTransactionStats getStats() {
+        return stats;
+    }
+}
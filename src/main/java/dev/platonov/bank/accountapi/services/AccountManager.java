@@ -4,15 +4,23 @@ import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
 import dev.platonov.bank.accountapi.models.Account;
 import dev.platonov.bank.accountapi.models.ReserveOption;
 import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
+import dev.platonov.bank.accountapi.models.ReserveResult;
 import lombok.NonNull;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AccountManager {
     @NonNull Optional<Account> getActiveAccount(long id);
     @NonNull Optional<Reserve> getReserve(@NonNull String id);
     @NonNull Reserve reserve(@NonNull ReserveOption reserveOption) throws DeniedReserveException;
+    @NonNull List<ReserveResult> reserveAll(@NonNull List<ReserveOption> reserveOptions); // a result per option, in order
+    // the same, also queues the prepared events of the saved reserves for ReserveOutboxRelay
+    @NonNull Reserve reserveAndPublish(@NonNull ReserveOption reserveOption) throws DeniedReserveException;
+    @NonNull List<ReserveResult> reserveAllAndPublish(@NonNull List<ReserveOption> reserveOptions);
     @NonNull Reserve reserveDeposit(@NonNull String id, long accountId,
                                     @NonNull BigDecimal amount) throws DeniedReserveException;
 
@@ -22,4 +30,8 @@ public interface AccountManager {
     @NonNull Account commit(@NonNull Reserve reserve); // throws IllegalArgument if account with reserve.getAccountId() doesn't exist
 
     void rollback(@NonNull Reserve reserve);
+
+    @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds); // a result per id, in order
+
+    @NonNull List<ReserveHandleResult> rollbackAll(@NonNull Collection<String> reserveIds); // a result per id, in order
 }
@@ -1,9 +1,13 @@
 package dev.platonov.bank.accountapi.services;
 
 import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
 import lombok.NonNull;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AccountService { // TODO: 28.05.2022 add throws
@@ -13,10 +17,15 @@ public interface AccountService { // TODO: 28.05.2022 add throws
 
     @NonNull Account decr(long id, @NonNull BigDecimal amount);
 
+    @NonNull Account commit(@NonNull Reserve reserve); // throws AlreadyHandledReserveException, AccountNotFoundException
+
+    @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds);
+
     void close(@NonNull Account account);
 
     @NonNull Account getActiveUnsafe(long id); // throws IllegalArgumentException if account with id doesn't exist
     @NonNull Optional<Account> getActive(long id);
+    @NonNull Optional<Account> getActiveSnapshot(long id); // may be stale, only for reads that don't feed a decision
 
     boolean existsActive(long id);
 
@@ -0,0 +1,33 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AccountManager} operations as futures. The futures complete exceptionally with the exceptions
+ * the {@link AccountManager} methods throw, e.g. {@link dev.platonov.bank.accountapi.exceptions.DeniedReserveException}.
+ */
+public interface AsyncAccountManager {
+    @NonNull CompletableFuture<Optional<Account>> getActiveAccount(long id);
+
+    @NonNull CompletableFuture<Reserve> reserve(@NonNull ReserveOption reserveOption);
+
+    @NonNull CompletableFuture<Reserve> reserveAndPublish(@NonNull ReserveOption reserveOption);
+
+    @NonNull CompletableFuture<Reserve> reserveDeposit(@NonNull String id, long accountId, @NonNull BigDecimal amount);
+
+    @NonNull CompletableFuture<Reserve> reserveWithdraw(@NonNull String id, long accountId, @NonNull BigDecimal amount);
+
+    @NonNull CompletableFuture<Account> commit(@NonNull Reserve reserve);
+
+    @NonNull CompletableFuture<Void> rollback(@NonNull Reserve reserve);
+
+    @NonNull List<Integer> getQueueDepths(); // per lane, empty if operations run on the caller's thread
+}
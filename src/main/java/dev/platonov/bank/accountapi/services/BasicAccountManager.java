@@ -2,27 +2,33 @@ package dev.platonov.bank.accountapi.services;
 
 import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
-import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
 import dev.platonov.bank.accountapi.models.*;
 import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
+@ConditionalOnProperty(name = "account-api.manager", havingValue = "basic", matchIfMissing = true)
 public class BasicAccountManager implements AccountManager {
     private final AccountService accountService;
     private final ReserveService reserveService;
+    private final OpenReserveRegistry openReserves;
 
     public BasicAccountManager(
             AccountService accountService,
-            ReserveService reserveService
+            ReserveService reserveService,
+            OpenReserveRegistry openReserves
     ) {
         this.accountService = accountService;
         this.reserveService = reserveService;
+        this.openReserves = openReserves;
     }
 
     @Override
@@ -32,29 +38,55 @@ public class BasicAccountManager implements AccountManager {
 
     @Override
     public @NonNull Optional<Reserve> getReserve(@NonNull String id) {
-        return reserveService.get(id);
+        return openReserves.get(id)
+                .or(() -> reserveService.get(id));
     }
 
     @Transactional
     @Override
     public @NonNull Reserve reserve(@NonNull ReserveOption reserveOption) throws DeniedReserveException {
-        accountService.throwIfNotExists(reserveOption.getAccountId());
-
-        var reserve = Reserve.builder()
-                .id(reserveOption.getId())
-                .accountId(reserveOption.getAccountId())
-                .amount(reserveOption.getAmount())
-                .createdAt(LocalDateTime.now())
-                .type(reserveOption.getReserveType())
-                .build();
+        return reserve(reserveOption, false);
+    }
+
+    @Override
+    public @NonNull List<ReserveResult> reserveAll(@NonNull List<ReserveOption> reserveOptions) {
+        return reserveAll(reserveOptions, false);
+    }
+
+    @Transactional
+    @Override
+    public @NonNull Reserve reserveAndPublish(@NonNull ReserveOption reserveOption) throws DeniedReserveException {
+        return reserve(reserveOption, true);
+    }
 
-        throwIfInvalid(reserve);
+    @Override
+    public @NonNull List<ReserveResult> reserveAllAndPublish(@NonNull List<ReserveOption> reserveOptions) {
+        return reserveAll(reserveOptions, true);
+    }
 
-        reserveService.saveIfAllowed(reserve);
+    private Reserve reserve(ReserveOption reserveOption, boolean publish) throws DeniedReserveException {
+        var reserve = Reserve.from(reserveOption);
+
+        reserveService.saveIfAllowed(reserve, publish);
+        openReserves.put(reserve);
 
         return reserve;
     }
 
+    private List<ReserveResult> reserveAll(List<ReserveOption> reserveOptions, boolean publish) {
+        var reserves = reserveOptions.stream()
+                .map(Reserve::from)
+                .collect(Collectors.toList());
+
+        var results = reserveService.saveAllIfAllowed(reserves, publish);
+        for (var result : results) {
+            if (result.isReserved()) {
+                openReserves.put(result.getReserve());
+            }
+        }
+        return results;
+    }
+
     @Transactional
     @Override
     public @NonNull Reserve reserveDeposit(@NonNull String id, long accountId,
@@ -81,44 +113,43 @@ public class BasicAccountManager implements AccountManager {
         return reserve(option);
     }
 
-    private void throwIfInvalid(@NonNull Reserve reserve) {
-        if (reserveService.exists(reserve.getId())) {
-            throw NotUniqueIdException.builder()
-                    .model("reserve")
-                    .id(reserve.getId())
-                    .build();
-        }
-    }
-
     @Transactional
     @Override
     public @NonNull Account commit(@NonNull Reserve reserve) {
-        var account = accountService.getActiveUnsafe(reserve.getAccountId());
-        return commit(reserve, account);
+        try {
+            return accountService.commit(reserve);
+        } finally {
+            openReserves.remove(reserve.getId()); // handled or unknown to the database
+        }
     }
 
     @Transactional
-    public @NonNull Account commit(@NonNull Reserve reserve, @NonNull Account account) {
-        var reserveType = reserve.getType();
-        if (!reserveService.delete(reserve)) {
-            throw new AlreadyHandledReserveException(reserve);
+    @Override
+    public void rollback(@NonNull Reserve reserve) {
+        try {
+            if (!reserveService.delete(reserve)) {
+                throw new AlreadyHandledReserveException(reserve);
+            }
+        } finally {
+            openReserves.remove(reserve.getId());
         }
-        switch (reserveType) {
-            case DEPOSIT:
-                return accountService.incr(account.getId(), reserve.getAmount());
-            case WITHDRAW:
-                return accountService.decr(account.getId(), reserve.getAmount());
-            default:
-                var msg = String.format("unknown reserve type. %s", reserve.getType());
-                throw new IllegalArgumentException(msg);
+    }
+
+    @Override
+    public @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds) {
+        try {
+            return accountService.commitAll(reserveIds);
+        } finally {
+            openReserves.removeAll(reserveIds);
         }
     }
 
-    @Transactional
     @Override
-    public void rollback(@NonNull Reserve reserve) {
-        if (!reserveService.delete(reserve)) {
-            throw new AlreadyHandledReserveException(reserve);
+    public @NonNull List<ReserveHandleResult> rollbackAll(@NonNull Collection<String> reserveIds) {
+        try {
+            return reserveService.deleteAll(reserveIds);
+        } finally {
+            openReserves.removeAll(reserveIds);
         }
     }
 }
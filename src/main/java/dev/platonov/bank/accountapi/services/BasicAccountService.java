@@ -1,11 +1,15 @@
 package dev.platonov.bank.accountapi.services;
 
 import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
 import dev.platonov.bank.accountapi.repositories.AccountRepository;
 import lombok.NonNull;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -38,6 +42,16 @@ public class BasicAccountService implements AccountService {
         return repository.decr(id, amount);
     }
 
+    @Override
+    public @NonNull Account commit(@NonNull Reserve reserve) {
+        return repository.commit(reserve);
+    }
+
+    @Override
+    public @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds) {
+        return repository.commitAll(reserveIds);
+    }
+
     @Override
     public void close(@NonNull Account account) {
         repository.close(account);
@@ -48,6 +62,11 @@ public class BasicAccountService implements AccountService {
         return repository.getActive(id);
     }
 
+    @Override
+    public @NonNull Optional<Account> getActiveSnapshot(long id) {
+        return repository.getActiveSnapshot(id);
+    }
+
     @Override
     public @NonNull Account getActiveUnsafe(long id) {
         return getActive(id)
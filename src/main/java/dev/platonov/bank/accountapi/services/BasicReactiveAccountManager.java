@@ -0,0 +1,163 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
+import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
+import dev.platonov.bank.accountapi.models.*;
+import dev.platonov.bank.accountapi.repositories.ReactiveAccountRepository;
+import dev.platonov.bank.accountapi.repositories.ReactiveReserveRepository;
+import lombok.NonNull;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * {@link BasicAccountManager} on the reactive repositories. Shares the open reserve registry with it.
+ */
+@Service
+@Profile("reactive")
+public class BasicReactiveAccountManager implements ReactiveAccountManager {
+    private final ReactiveAccountRepository accountRepository;
+    private final ReactiveReserveRepository reserveRepository;
+    private final OpenReserveRegistry openReserves;
+
+    public BasicReactiveAccountManager(
+            ReactiveAccountRepository accountRepository,
+            ReactiveReserveRepository reserveRepository,
+            OpenReserveRegistry openReserves
+    ) {
+        this.accountRepository = accountRepository;
+        this.reserveRepository = reserveRepository;
+        this.openReserves = openReserves;
+    }
+
+    @Override
+    public @NonNull Mono<Account> createAccount() {
+        return Mono.defer(() -> accountRepository.save(
+                Account.builder()
+                        .amount(BigDecimal.ZERO)
+                        .build()
+        ));
+    }
+
+    @Override
+    public @NonNull Mono<Account> getActiveAccount(long id) {
+        return accountRepository.getActive(id);
+    }
+
+    @Override
+    public @NonNull Mono<Account> closeAccount(@NonNull Account account) {
+        return accountRepository.close(account)
+                .then(Mono.fromCallable(() -> {
+                    account.setActive(false);
+                    return account;
+                }));
+    }
+
+    @Override
+    public @NonNull Mono<Reserve> getReserve(@NonNull String id) {
+        return Mono.defer(() -> Mono.justOrEmpty(openReserves.get(id)))
+                .switchIfEmpty(reserveRepository.get(id));
+    }
+
+    @Override
+    public @NonNull Mono<Reserve> reserve(@NonNull ReserveOption reserveOption) {
+        return Mono.defer(() -> {
+            var reserve = Reserve.from(reserveOption);
+
+            var denyReason = check(reserve);
+            if (denyReason != null) {
+                var msg = String.format("reserve is denied due to %s. reserve's id = %s",
+                        denyReason.name(), reserve.getId());
+                return Mono.error(new DeniedReserveException(msg, denyReason));
+            }
+
+            return reserveRepository.saveIfAllowed(reserve)
+                    .then(Mono.fromCallable(() -> {
+                        openReserves.put(reserve);
+                        return reserve;
+                    }));
+        });
+    }
+
+    /**
+     * Reserves one by one, a statement per option, unlike the single batch of {@link BasicAccountManager}.
+     */
+    @Override
+    public @NonNull Mono<List<ReserveResult>> reserveAll(@NonNull List<ReserveOption> reserveOptions) {
+        return Flux.fromIterable(reserveOptions)
+                .concatMap(option -> reserve(option)
+                        .map(ReserveResult::reserved)
+                        .onErrorResume(e -> denied(option, e)))
+                .collectList();
+    }
+
+    @Override
+    public @NonNull Mono<Reserve> reserveDeposit(@NonNull String id, long accountId, @NonNull BigDecimal amount) {
+        var option = ReserveOption.builder()
+                .reserveType(ReserveType.DEPOSIT)
+                .accountId(accountId)
+                .id(id)
+                .amount(amount)
+                .build();
+        return reserve(option);
+    }
+
+    @Override
+    public @NonNull Mono<Reserve> reserveWithdraw(@NonNull String id, long accountId, @NonNull BigDecimal amount) {
+        var option = ReserveOption.builder()
+                .reserveType(ReserveType.WITHDRAW)
+                .accountId(accountId)
+                .id(id)
+                .amount(amount)
+                .build();
+        return reserve(option);
+    }
+
+    @Override
+    public @NonNull Mono<Account> commit(@NonNull Reserve reserve) {
+        return accountRepository.commit(reserve)
+                .doFinally(signal -> openReserves.remove(reserve.getId())); // handled or unknown to the database
+    }
+
+    @Override
+    public @NonNull Mono<Void> rollback(@NonNull Reserve reserve) {
+        return reserveRepository.delete(reserve)
+                .flatMap(deleted -> deleted
+                        ? Mono.<Void>empty()
+                        : Mono.<Void>error(new AlreadyHandledReserveException(reserve)))
+                .doFinally(signal -> openReserves.remove(reserve.getId()));
+    }
+
+    // the checks of BasicReserveService, null if the reserve may go to the database
+    private static DenyReason check(Reserve reserve) {
+        if (BigDecimal.ZERO.compareTo(reserve.getAmount()) == 0) {
+            return DenyReason.EMPTY_RESERVE;
+        }
+        if (!Money.isRepresentable(reserve.getAmount())) {
+            return DenyReason.INVALID_AMOUNT;
+        }
+        if (!reserve.hasValidTtl()) {
+            return DenyReason.INVALID_TTL;
+        }
+        return null;
+    }
+
+    private static Mono<ReserveResult> denied(ReserveOption option, Throwable e) {
+        if (e instanceof DeniedReserveException) {
+            return Mono.just(ReserveResult.denied(option.getId(), ((DeniedReserveException) e).getDenyReason()));
+        }
+        if (e instanceof NotUniqueIdException) {
+            return Mono.just(ReserveResult.denied(option.getId(), DenyReason.NOT_UNIQUE_ID));
+        }
+        if (e instanceof AccountNotFoundException) {
+            return Mono.just(ReserveResult.denied(option.getId(), DenyReason.ACCOUNT_NOT_FOUND));
+        }
+        return Mono.error(e);
+    }
+}
@@ -2,12 +2,21 @@ package dev.platonov.bank.accountapi.services;
 
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
 import dev.platonov.bank.accountapi.models.DenyReason;
+import dev.platonov.bank.accountapi.models.Money;
 import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
+import dev.platonov.bank.accountapi.models.ReserveResult;
 import dev.platonov.bank.accountapi.repositories.ReserveRepository;
 import lombok.NonNull;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -21,11 +30,64 @@ public class BasicReserveService implements ReserveService {
 
     @Override
     public void saveIfAllowed(@NonNull Reserve reserve) throws DeniedReserveException {
-        if (BigDecimal.ZERO.compareTo(reserve.getAmount()) == 0) {
+        saveIfAllowed(reserve, false);
+    }
+
+    @Override
+    public void saveIfAllowed(@NonNull Reserve reserve, boolean publish) throws DeniedReserveException {
+        if (isEmpty(reserve)) {
             var msg = String.format("it's not allowed to make a reserve with amount = 0. id = %s", reserve.getId());
             throw new DeniedReserveException(msg, DenyReason.EMPTY_RESERVE);
         }
-        repository.saveIfAllowed(reserve);
+        if (!Money.isRepresentable(reserve.getAmount())) {
+            var msg = String.format("amount %s is not representable in minor units. id = %s",
+                    reserve.getAmount(), reserve.getId());
+            throw new DeniedReserveException(msg, DenyReason.INVALID_AMOUNT);
+        }
+        if (!reserve.hasValidTtl()) {
+            var msg = String.format("ttl must be positive and at most %s. id = %s", Reserve.MAX_TTL, reserve.getId());
+            throw new DeniedReserveException(msg, DenyReason.INVALID_TTL);
+        }
+        repository.saveIfAllowed(reserve, publish);
+    }
+
+    @Override
+    public @NonNull List<ReserveResult> saveAllIfAllowed(@NonNull List<Reserve> reserves) {
+        return saveAllIfAllowed(reserves, false);
+    }
+
+    @Override
+    public @NonNull List<ReserveResult> saveAllIfAllowed(@NonNull List<Reserve> reserves, boolean publish) {
+        var results = new ReserveResult[reserves.size()];
+        var allowed = new ArrayList<Reserve>(reserves.size());
+        var allowedIndexes = new ArrayList<Integer>(reserves.size());
+
+        for (int i = 0; i < reserves.size(); ++i) {
+            var reserve = reserves.get(i);
+            if (isEmpty(reserve)) {
+                results[i] = ReserveResult.denied(reserve.getId(), DenyReason.EMPTY_RESERVE);
+            } else if (!Money.isRepresentable(reserve.getAmount())) {
+                results[i] = ReserveResult.denied(reserve.getId(), DenyReason.INVALID_AMOUNT);
+            } else if (!reserve.hasValidTtl()) {
+                results[i] = ReserveResult.denied(reserve.getId(), DenyReason.INVALID_TTL);
+            } else {
+                allowed.add(reserve);
+                allowedIndexes.add(i);
+            }
+        }
+
+        if (!allowed.isEmpty()) {
+            var saved = repository.saveAllIfAllowed(allowed, publish);
+            for (int i = 0; i < saved.size(); ++i) {
+                results[allowedIndexes.get(i)] = saved.get(i);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private boolean isEmpty(Reserve reserve) {
+        return BigDecimal.ZERO.compareTo(reserve.getAmount()) == 0;
     }
 
     @Override
@@ -42,6 +104,16 @@ public class BasicReserveService implements ReserveService {
         return repository.delete(reserve);
     }
 
+    @Override
+    public @NonNull List<ReserveHandleResult> deleteAll(@NonNull Collection<String> ids) {
+        return repository.deleteAll(ids);
+    }
+
+    @Override
+    public @NonNull List<Reserve> expireOverdue(@NonNull LocalDateTime now, Duration defaultTtl, int limit) {
+        return repository.expireOverdue(now, defaultTtl, limit);
+    }
+
     @Override
     public @NonNull Reserve getExisting(@NonNull String id) {
         return get(id)
@@ -56,8 +128,18 @@ public class BasicReserveService implements ReserveService {
         return repository.get(id);
     }
 
+    @Override
+    public @NonNull List<Reserve> getAll() {
+        return repository.getAll();
+    }
+
     @Override
     public boolean exists(@NonNull String id) {
         return repository.exists(id);
     }
+
+    @Override
+    public @NonNull List<Long> getInconsistentReservedWithdrawAccountIds() {
+        return repository.getInconsistentReservedWithdrawAccountIds();
+    }
 }
@@ -0,0 +1,129 @@
+package dev.platonov.bank.accountapi.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.AccountChange;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves {@link #getActiveSnapshot(long)} from a bounded cache of active accounts. The accounts returned
+ * by the writes replace older versions in place, a closed account is evicted. Changes made by other instances
+ * are evicted through {@link #invalidateAll(Collection)}. Every other read goes to the delegate.
+ */
+public class CachingAccountService implements AccountService {
+    private final AccountService delegate;
+    private final Cache<Long, Account> cache;
+
+    public CachingAccountService(AccountService delegate, long maximumSize, @NonNull Duration expireAfterWrite) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public @NonNull Account create() {
+        return delegate.create();
+    }
+
+    @Override
+    public @NonNull Account incr(long id, @NonNull BigDecimal amount) {
+        return update(delegate.incr(id, amount));
+    }
+
+    @Override
+    public @NonNull Account decr(long id, @NonNull BigDecimal amount) {
+        return update(delegate.decr(id, amount));
+    }
+
+    @Override
+    public @NonNull Account commit(@NonNull Reserve reserve) {
+        return update(delegate.commit(reserve));
+    }
+
+    @Override
+    public @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds) {
+        var results = delegate.commitAll(reserveIds);
+        for (var result : results) {
+            if (result.isHandled()) {
+                invalidate(result.getReserve().getAccountId()); // no rows are returned for the batch
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void close(@NonNull Account account) {
+        try {
+            delegate.close(account);
+        } finally {
+            invalidate(account.getId());
+        }
+    }
+
+    @Override
+    public @NonNull Account getActiveUnsafe(long id) {
+        return delegate.getActiveUnsafe(id);
+    }
+
+    @Override
+    public @NonNull Optional<Account> getActive(long id) {
+        return delegate.getActive(id);
+    }
+
+    @Override
+    public @NonNull Optional<Account> getActiveSnapshot(long id) {
+        return Optional.ofNullable(cache.get(id, key -> delegate.getActiveSnapshot(key).orElse(null)));
+    }
+
+    @Override
+    public boolean existsActive(long id) {
+        return delegate.existsActive(id);
+    }
+
+    @Override
+    public void throwIfNotExists(long id) {
+        delegate.throwIfNotExists(id);
+    }
+
+    public void invalidate(long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll(@NonNull Collection<AccountChange> changes) { // keeps entries as new as the changes
+        for (var change : changes) {
+            cache.asMap().computeIfPresent(change.getAccountId(), (id, cached) ->
+                    cached.getVersion() < change.getVersion() ? null : cached);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public @NonNull CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    private Account update(Account account) {
+        cache.asMap().compute(account.getId(), (id, cached) ->
+                cached == null || cached.getVersion() < account.getVersion() ? account : cached);
+        return account;
+    }
+}
@@ -0,0 +1,139 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the operations of an account one by one on a lane chosen by the account id. A lane is a bounded queue
+ * with a single thread, so operations on the same account don't conflict in the database while different
+ * accounts are handled in parallel. A full lane rejects the operation with {@link RejectedExecutionException}.
+ * With no lanes the operations run on the caller's thread.
+ */
+public class LaneAccountManager implements AsyncAccountManager, AutoCloseable {
+    private final AccountManager manager;
+    private final ThreadPoolExecutor[] lanes;
+
+    public LaneAccountManager(AccountManager manager, int laneCount, int queueCapacity) {
+        if (laneCount < 0 || queueCapacity < 1) {
+            var msg = String.format("illegal lanes. count = %d, queue capacity = %d", laneCount, queueCapacity);
+            throw new IllegalArgumentException(msg);
+        }
+        this.manager = manager;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; ++i) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new LaneThreadFactory(i));
+        }
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Optional<Account>> getActiveAccount(long id) {
+        return submit(id, () -> manager.getActiveAccount(id));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Reserve> reserve(@NonNull ReserveOption reserveOption) {
+        return submit(reserveOption.getAccountId(), () -> manager.reserve(reserveOption));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Reserve> reserveAndPublish(@NonNull ReserveOption reserveOption) {
+        return submit(reserveOption.getAccountId(), () -> manager.reserveAndPublish(reserveOption));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Reserve> reserveDeposit(@NonNull String id, long accountId,
+                                                             @NonNull BigDecimal amount) {
+        return submit(accountId, () -> manager.reserveDeposit(id, accountId, amount));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Reserve> reserveWithdraw(@NonNull String id, long accountId,
+                                                              @NonNull BigDecimal amount) {
+        return submit(accountId, () -> manager.reserveWithdraw(id, accountId, amount));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Account> commit(@NonNull Reserve reserve) {
+        return submit(reserve.getAccountId(), () -> manager.commit(reserve));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Void> rollback(@NonNull Reserve reserve) {
+        return submit(reserve.getAccountId(), () -> {
+            manager.rollback(reserve);
+            return null;
+        });
+    }
+
+    @Override
+    public @NonNull List<Integer> getQueueDepths() {
+        var depths = new ArrayList<Integer>(lanes.length);
+        for (var lane : lanes) {
+            depths.add(lane.getQueue().size());
+        }
+        return depths;
+    }
+
+    @Override
+    public void close() {
+        for (var lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(long accountId, Callable<T> operation) {
+        var future = new CompletableFuture<T>();
+
+        if (lanes.length == 0) {
+            run(operation, future);
+            return future;
+        }
+
+        try {
+            lanes[laneOf(accountId)].execute(() -> run(operation, future));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private int laneOf(long accountId) {
+        var hash = Long.hashCode(accountId) * 0x9E3779B9; // spreads sequential ids
+        return Math.floorMod(hash, lanes.length);
+    }
+
+    private static <T> void run(Callable<T> operation, CompletableFuture<T> future) {
+        try {
+            future.complete(operation.call());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static class LaneThreadFactory implements ThreadFactory {
+        private static final AtomicInteger GENERATION = new AtomicInteger();
+        private final String name;
+
+        LaneThreadFactory(int lane) {
+            this.name = String.format("account-lane-%d-%d", lane, GENERATION.incrementAndGet());
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            var thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
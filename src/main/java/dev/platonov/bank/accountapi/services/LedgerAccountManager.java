@@ -0,0 +1,688 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
+import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
+import dev.platonov.bank.accountapi.models.*;
+import dev.platonov.bank.accountapi.repositories.LedgerRepository;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.ConnectionException;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps the accounts and the open reserves in memory and decides on them there, under a lock per account.
+ * Every state change is appended to a journal, and the operation returns only once a background writer has
+ * persisted the change to the accounts and reserves tables: the writer commits all the changes appended while
+ * it was writing the previous ones in one transaction, up to batchSize of them. An operation that isn't persisted
+ * within commitTimeout throws, its change may still be persisted later.
+ * <p>
+ * The writer retries a batch while the database is unreachable. A batch the database rejects is split in halves
+ * down to the single changes it rejects, which are quarantined: their changes are reverted in memory and their
+ * operations fail, a batch of reserves reports them {@link DenyReason#NOT_PERSISTED}. The accounts' amounts
+ * are persisted as deltas, so a reverted change doesn't leak into the database with a later one. A reserve is
+ * committed or rolled back only once its save is persisted, so a reverted save has no handling to revert.
+ * <p>
+ * The ledger checks the ids of its open reserves, the database rejects the ids still taken in reserve_ids
+ * by the handled ones, like it does for the basic manager: such a reserve is reverted and denied as not unique.
+ * <p>
+ * The ledger must be the only writer of its accounts, so accounts are closed through {@link #closeAccount(long)}:
+ * changes made to the tables by others aren't seen until {@link #reload()}.
+ */
+@Slf4j
+public class LedgerAccountManager implements AccountManager, AutoCloseable {
+    private final LedgerRepository repository;
+    private final int batchSize;
+    private final Duration commitTimeout;
+    private final Duration retryInterval;
+
+    // swapped by reload under the write lock of intake, the changes are made under its read lock.
+    // reload flushes before the swap, so the writer reverts rejected entries in the maps they were made in
+    private final ReadWriteLock intake = new ReentrantReadWriteLock();
+    private volatile ConcurrentMap<Long, LedgerAccount> accounts = new ConcurrentHashMap<>();
+    private volatile ConcurrentMap<String, Reserve> reserves = new ConcurrentHashMap<>(); // open reserves by id
+    private final ConcurrentMap<String, CompletableFuture<Void>> saving = new ConcurrentHashMap<>(); // by reserve id
+    private final BlockingQueue<Journaled> journal = new LinkedBlockingQueue<>();
+    private final AtomicInteger unpersisted = new AtomicInteger();
+    private final Queue<LedgerEntry> quarantined = new ConcurrentLinkedQueue<>(); // rejected by the database
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "ledger-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LedgerAccountManager(LedgerRepository repository, int batchSize,
+                                @NonNull Duration commitTimeout, @NonNull Duration retryInterval) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(String.format("illegal batch size = %d", batchSize));
+        }
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.commitTimeout = commitTimeout;
+        this.retryInterval = retryInterval;
+    }
+
+    public void start() {
+        load();
+        writer.execute(this::write);
+    }
+
+    /**
+     * Stops the changes, persists the journal and swaps in the state rebuilt from the database.
+     */
+    public void reload() {
+        intake.writeLock().lock();
+        try {
+            flush(); // nothing is appended meanwhile, so the database has every change of the current state
+            load();
+        } finally {
+            intake.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        var loadedReserves = new ConcurrentHashMap<String, Reserve>();
+        var loadedAccounts = new ConcurrentHashMap<Long, LedgerAccount>();
+
+        repository.getReserves().forEach(reserve -> loadedReserves.put(reserve.getId(), reserve));
+        repository.getAccounts().forEach(account -> loadedAccounts.put(account.getId(), new LedgerAccount(account)));
+        loadedReserves.values().forEach(reserve -> {
+            var account = loadedAccounts.get(reserve.getAccountId());
+            if (account != null) {
+                account.hold(reserve);
+            }
+        });
+
+        accounts = loadedAccounts;
+        reserves = loadedReserves;
+    }
+
+    /**
+     * Waits until the writer has handled all the journal entries appended before the call.
+     */
+    public void flush() {
+        if (writer.isShutdown()) {
+            return;
+        }
+        var marker = new Journaled(null, null); // handled after the entries ahead of it
+        journal.add(marker);
+        marker.persisted.join();
+    }
+
+    public int getUnpersistedCount() {
+        return unpersisted.get();
+    }
+
+    public @NonNull List<LedgerEntry> getQuarantined() {
+        return List.copyOf(quarantined);
+    }
+
+    @Override
+    public void close() {
+        flush();
+        writer.shutdownNow();
+    }
+
+    @Override
+    public @NonNull Optional<Account> getActiveAccount(long id) {
+        return findAccount(id)
+                .map(account -> {
+                    synchronized (account) {
+                        return account.isActive() ? account.snapshot() : null;
+                    }
+                });
+    }
+
+    /**
+     * Closes the account for the reserves and the commits, rollbacks are still allowed.
+     * Returns the closed account, empty if there is no active account with the id.
+     */
+    public @NonNull Optional<Account> closeAccount(long id) {
+        Account snapshot;
+        CompletableFuture<Void> persisted;
+        intake.readLock().lock();
+        try {
+            var account = findAccount(id);
+            if (account.isEmpty()) {
+                return Optional.empty();
+            }
+
+            synchronized (account.get()) {
+                if (!account.get().isActive()) {
+                    return Optional.empty();
+                }
+
+                var closed = account.get();
+                closed.close();
+                snapshot = closed.snapshot();
+                persisted = append(LedgerEntry.closed(snapshot), () -> {
+                    synchronized (closed) {
+                        closed.reopen();
+                    }
+                });
+            }
+        } finally {
+            intake.readLock().unlock();
+        }
+
+        awaitPersisted(persisted);
+        return Optional.of(snapshot);
+    }
+
+    @Override
+    public @NonNull Optional<Reserve> getReserve(@NonNull String id) {
+        return Optional.ofNullable(reserves.get(id));
+    }
+
+    @Override
+    public @NonNull Reserve reserve(@NonNull ReserveOption reserveOption) throws DeniedReserveException {
+        return reserve(reserveOption, false);
+    }
+
+    @Override
+    public @NonNull List<ReserveResult> reserveAll(@NonNull List<ReserveOption> reserveOptions) {
+        return reserveAll(reserveOptions, false);
+    }
+
+    /**
+     * The prepared event is written to reserve_outbox with the reserve when the journal is persisted.
+     */
+    @Override
+    public @NonNull Reserve reserveAndPublish(@NonNull ReserveOption reserveOption) throws DeniedReserveException {
+        return reserve(reserveOption, true);
+    }
+
+    @Override
+    public @NonNull List<ReserveResult> reserveAllAndPublish(@NonNull List<ReserveOption> reserveOptions) {
+        return reserveAll(reserveOptions, true);
+    }
+
+    private Reserve reserve(ReserveOption reserveOption, boolean publish) throws DeniedReserveException {
+        var persisted = new ArrayList<CompletableFuture<Void>>(1);
+        var reserve = hold(reserveOption, publish, persisted);
+        awaitPersisted(persisted.get(0));
+        return reserve;
+    }
+
+    // adds the future of the saved reserve's entry to persisted
+    private Reserve hold(ReserveOption reserveOption, boolean publish,
+                         List<CompletableFuture<Void>> persisted) throws DeniedReserveException {
+        var reserve = Reserve.from(reserveOption);
+
+        if (BigDecimal.ZERO.compareTo(reserve.getAmount()) == 0) {
+            var msg = String.format("it's not allowed to make a reserve with amount = 0. id = %s", reserve.getId());
+            throw new DeniedReserveException(msg, DenyReason.EMPTY_RESERVE);
+        }
+        if (!Money.isRepresentable(reserve.getAmount())) {
+            var msg = String.format("amount %s is not representable in minor units. id = %s",
+                    reserve.getAmount(), reserve.getId());
+            throw new DeniedReserveException(msg, DenyReason.INVALID_AMOUNT);
+        }
+        if (!reserve.hasValidTtl()) {
+            var msg = String.format("ttl must be positive and at most %s. id = %s", Reserve.MAX_TTL, reserve.getId());
+            throw new DeniedReserveException(msg, DenyReason.INVALID_TTL);
+        }
+
+        intake.readLock().lock();
+        try {
+            var account = findAccount(reserve.getAccountId())
+                    .orElseThrow(() -> new AccountNotFoundException(reserve.getAccountId()));
+
+            synchronized (account) {
+                if (!account.isActive()) {
+                    throw new AccountNotFoundException(reserve.getAccountId());
+                }
+
+                if (reserves.containsKey(reserve.getId())) {
+                    throw notUnique(reserve);
+                }
+
+                if (!account.canHold(reserve)) {
+                    throw new DeniedReserveException(
+                            String.format("reserve is denied due to %s. reserve's id = %s, account's id = %d",
+                                    DenyReason.NOT_ENOUGH_MONEY.name(), reserve.getId(), reserve.getAccountId()),
+                            DenyReason.NOT_ENOUGH_MONEY);
+                }
+
+                if (reserves.putIfAbsent(reserve.getId(), reserve) != null) { // the same id on another account
+                    throw notUnique(reserve);
+                }
+                account.hold(reserve);
+                var saved = append(LedgerEntry.saved(reserve, publish), () -> {
+                    synchronized (account) {
+                        if (reserves.remove(reserve.getId(), reserve)) {
+                            account.release(reserve);
+                        }
+                    }
+                });
+                saving.put(reserve.getId(), saved);
+                saved.whenComplete((ignored, e) -> saving.remove(reserve.getId(), saved));
+                persisted.add(saved);
+            }
+
+            return reserve;
+        } finally {
+            intake.readLock().unlock();
+        }
+    }
+
+    private List<ReserveResult> reserveAll(List<ReserveOption> reserveOptions, boolean publish) {
+        var results = new ArrayList<ReserveResult>(reserveOptions.size());
+        var persisted = new ArrayList<CompletableFuture<Void>>(reserveOptions.size()); // null for the denied
+        for (var option : reserveOptions) {
+            try {
+                results.add(ReserveResult.reserved(hold(option, publish, persisted)));
+                continue;
+            } catch (DeniedReserveException e) {
+                results.add(ReserveResult.denied(option.getId(), e.getDenyReason()));
+            } catch (NotUniqueIdException e) {
+                results.add(ReserveResult.denied(option.getId(), DenyReason.NOT_UNIQUE_ID));
+            } catch (AccountNotFoundException e) {
+                results.add(ReserveResult.denied(option.getId(), DenyReason.ACCOUNT_NOT_FOUND));
+            }
+            persisted.add(null);
+        }
+
+        awaitDone(CompletableFuture.allOf(persisted.stream() // one group commit
+                .filter(Objects::nonNull)
+                .toArray(CompletableFuture[]::new)));
+        for (int i = 0; i < results.size(); ++i) {
+            if (persisted.get(i) != null && persisted.get(i).isCompletedExceptionally()) { // reverted
+                var reason = persisted.get(i).handle((ignored, e) -> e).join() instanceof NotUniqueIdException
+                        ? DenyReason.NOT_UNIQUE_ID
+                        : DenyReason.NOT_PERSISTED;
+                results.set(i, ReserveResult.denied(results.get(i).getId(), reason));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public @NonNull Reserve reserveDeposit(@NonNull String id, long accountId,
+                                           @NonNull BigDecimal amount) throws DeniedReserveException {
+        return reserve(option(id, accountId, amount, ReserveType.DEPOSIT));
+    }
+
+    @Override
+    public @NonNull Reserve reserveWithdraw(@NonNull String id, long accountId,
+                                            @NonNull BigDecimal amount) throws DeniedReserveException {
+        return reserve(option(id, accountId, amount, ReserveType.WITHDRAW));
+    }
+
+    @Override
+    public @NonNull Account commit(@NonNull Reserve reserve) {
+        var persisted = new ArrayList<CompletableFuture<Void>>(1);
+        var snapshot = commit(reserve, persisted);
+        awaitPersisted(persisted.get(0));
+        return snapshot;
+    }
+
+    @Override
+    public void rollback(@NonNull Reserve reserve) {
+        var persisted = new ArrayList<CompletableFuture<Void>>(1);
+        rollback(reserve, persisted);
+        awaitPersisted(persisted.get(0));
+    }
+
+    // adds the future of the committed reserve's entry to persisted
+    private Account commit(Reserve reserve, List<CompletableFuture<Void>> persisted) {
+        awaitSaved(reserve);
+        intake.readLock().lock();
+        try {
+            var account = findAccount(reserve.getAccountId())
+                    .orElseThrow(() -> new AccountNotFoundException(reserve.getAccountId()));
+
+            synchronized (account) {
+                if (!account.isActive()) {
+                    throw new AccountNotFoundException(reserve.getAccountId());
+                }
+
+                var open = takeOpen(reserve, account);
+                account.apply(open);
+                var snapshot = account.snapshot();
+                persisted.add(append(LedgerEntry.committed(open, snapshot), () -> {
+                    synchronized (account) {
+                        account.unapply(open);
+                        reserves.put(open.getId(), open);
+                    }
+                }));
+                reserves.remove(open.getId());
+
+                return snapshot;
+            }
+        } finally {
+            intake.readLock().unlock();
+        }
+    }
+
+    // adds the future of the rolled back reserve's entry to persisted
+    private void rollback(Reserve reserve, List<CompletableFuture<Void>> persisted) {
+        awaitSaved(reserve);
+        intake.readLock().lock();
+        try {
+            var account = findAccount(reserve.getAccountId())
+                    .orElseThrow(() -> new AlreadyHandledReserveException(reserve));
+
+            synchronized (account) {
+                var open = takeOpen(reserve, account);
+                account.release(open);
+                persisted.add(append(LedgerEntry.rolledBack(open), () -> {
+                    synchronized (account) {
+                        account.hold(open);
+                        reserves.put(open.getId(), open);
+                    }
+                }));
+                reserves.remove(open.getId());
+            }
+        } finally {
+            intake.readLock().unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds) {
+        return handleAll(reserveIds, this::commit);
+    }
+
+    @Override
+    public @NonNull List<ReserveHandleResult> rollbackAll(@NonNull Collection<String> reserveIds) {
+        return handleAll(reserveIds, this::rollback);
+    }
+
+    private List<ReserveHandleResult> handleAll(Collection<String> reserveIds,
+                                                BiConsumer<Reserve, List<CompletableFuture<Void>>> handler) {
+        var results = new ArrayList<ReserveHandleResult>(reserveIds.size());
+        var handled = new HashMap<String, Reserve>();
+        var persisted = new ArrayList<CompletableFuture<Void>>(reserveIds.size());
+
+        for (var id : reserveIds) {
+            if (handled.containsKey(id)) {
+                results.add(new ReserveHandleResult(id, ReserveHandleStatus.ALREADY_HANDLED, handled.get(id)));
+                continue;
+            }
+
+            var reserve = reserves.get(id);
+            if (reserve == null) {
+                results.add(new ReserveHandleResult(id, ReserveHandleStatus.NOT_FOUND, null));
+                continue;
+            }
+
+            try {
+                handler.accept(reserve, persisted);
+                handled.put(id, reserve);
+                results.add(new ReserveHandleResult(id, ReserveHandleStatus.HANDLED, reserve));
+            } catch (AccountNotFoundException e) {
+                results.add(new ReserveHandleResult(id, ReserveHandleStatus.ACCOUNT_NOT_FOUND, reserve));
+            } catch (AlreadyHandledReserveException e) {
+                results.add(new ReserveHandleResult(id, ReserveHandleStatus.NOT_FOUND, null));
+            }
+        }
+
+        awaitPersisted(CompletableFuture.allOf(persisted.toArray(CompletableFuture[]::new))); // one group commit
+        return results;
+    }
+
+    private Optional<LedgerAccount> findAccount(long id) {
+        var account = accounts.get(id);
+        if (account != null) {
+            return Optional.of(account);
+        }
+
+        // created after the last reload, so there are no reserves of it yet
+        return repository.getAccount(id)
+                .map(loaded -> accounts.computeIfAbsent(id, ignored -> new LedgerAccount(loaded)));
+    }
+
+    private Reserve takeOpen(Reserve reserve, LedgerAccount account) {
+        var open = reserves.get(reserve.getId());
+        if (open == null || open.getAccountId() != account.getId()) {
+            throw new AlreadyHandledReserveException(reserve);
+        }
+        return open;
+    }
+
+    private CompletableFuture<Void> append(LedgerEntry entry, Runnable revert) {
+        var journaled = new Journaled(entry, revert);
+        unpersisted.incrementAndGet();
+        journal.add(journaled);
+        return journaled.persisted;
+    }
+
+    // outside of the account's lock, so the changes of the account made meanwhile join the same group commit
+    private void awaitPersisted(CompletableFuture<Void> persisted) {
+        awaitDone(persisted);
+        try {
+            persisted.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NotUniqueIdException) {
+                throw (NotUniqueIdException) e.getCause();
+            }
+            throw new IllegalStateException("the ledger entry is rejected by the database", e.getCause());
+        }
+    }
+
+    private void awaitSaved(Reserve reserve) { // a rejected save is reverted, so the reserve isn't found then
+        var saved = saving.get(reserve.getId());
+        if (saved != null) {
+            awaitDone(saved);
+        }
+    }
+
+    private void awaitDone(CompletableFuture<Void> persisted) { // whether persisted or rejected
+        try {
+            persisted.handle((ignored, e) -> null).get(commitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while the ledger entry is being persisted", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException(
+                    String.format("the ledger entry isn't persisted within %s", commitTimeout), e);
+        }
+    }
+
+    private void write() {
+        var batch = new ArrayList<Journaled>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(journal.take());
+            } catch (InterruptedException e) {
+                return; // closed
+            }
+            journal.drainTo(batch, batchSize - 1); // appended while the previous batch was being written
+
+            try {
+                persist(batch);
+            } catch (InterruptedException e) {
+                batch.forEach(journaled -> journaled.persisted.completeExceptionally(e));
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private void persist(List<Journaled> batch) throws InterruptedException {
+        var entries = new ArrayList<LedgerEntry>(batch.size());
+        for (var journaled : batch) {
+            if (journaled.entry != null) {
+                entries.add(journaled.entry);
+            }
+        }
+
+        Set<String> taken = Set.of();
+        while (!entries.isEmpty()) {
+            try {
+                taken = repository.append(entries);
+                break;
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    log.error("cannot persist {} ledger entries, retrying in {}", entries.size(), retryInterval, e);
+                    TimeUnit.NANOSECONDS.sleep(retryInterval.toNanos());
+                    continue;
+                }
+                if (batch.size() > 1) { // the halves find the rejected entries without holding back the others
+                    persist(batch.subList(0, batch.size() / 2));
+                    persist(batch.subList(batch.size() / 2, batch.size()));
+                    return;
+                }
+                quarantine(batch.get(0), e);
+                return;
+            }
+        }
+
+        unpersisted.addAndGet(-entries.size());
+        for (var journaled : batch) {
+            var saved = journaled.entry != null ? journaled.entry.getSavedReserve() : null;
+            if (saved != null && taken.contains(saved.getId())) { // by a reserve handled before
+                journaled.revert.run();
+                journaled.persisted.completeExceptionally(notUnique(saved));
+            } else {
+                journaled.persisted.complete(null);
+            }
+        }
+    }
+
+    private void quarantine(Journaled journaled, RuntimeException e) {
+        log.error("ledger entry {} is rejected by the database, quarantined and reverted", journaled.entry, e);
+        journaled.revert.run();
+        quarantined.add(journaled.entry);
+        unpersisted.decrementAndGet();
+        journaled.persisted.completeExceptionally(e);
+    }
+
+    private static boolean isTransient(Throwable e) { // the database is unreachable rather than rejects the entries
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectionException || cause instanceof SQLTransientException) {
+                return true;
+            }
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                    && ((SQLException) cause).getSQLState().startsWith("08")) { // connection exception class
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static NotUniqueIdException notUnique(Reserve reserve) {
+        return NotUniqueIdException.builder()
+                .id(reserve.getId())
+                .model("reserve")
+                .build();
+    }
+
+    private static ReserveOption option(String id, long accountId, BigDecimal amount, ReserveType type) {
+        return ReserveOption.builder()
+                .reserveType(type)
+                .accountId(accountId)
+                .id(id)
+                .amount(amount)
+                .build();
+    }
+
+    private static class Journaled {
+        private final LedgerEntry entry; // null for the marker of a flush
+        private final Runnable revert; // undoes the entry's change in memory, under the account's lock
+        private final CompletableFuture<Void> persisted = new CompletableFuture<>();
+
+        Journaled(LedgerEntry entry, Runnable revert) {
+            this.entry = entry;
+            this.revert = revert;
+        }
+    }
+
+    private static class LedgerAccount { // guarded by itself
+        private final long id;
+        private final LocalDateTime createdAt;
+        private boolean active;
+        private long amount; // minor units
+        private long reservedWithdraw; // minor units
+        private LocalDateTime updatedAt;
+        private long version;
+
+        LedgerAccount(Account account) {
+            this.id = account.getId();
+            this.createdAt = account.getCreatedAt();
+            this.active = account.isActive();
+            this.amount = Money.minorUnits(account.getAmount());
+            this.updatedAt = account.getUpdatedAt();
+            this.version = account.getVersion();
+        }
+
+        long getId() {
+            return id;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+
+        boolean canHold(Reserve reserve) {
+            return !ReserveType.WITHDRAW.equals(reserve.getType())
+                    || Money.hasEnoughMoney(Money.subtract(amount, reservedWithdraw),
+                    Money.minorUnits(reserve.getAmount()));
+        }
+
+        void hold(Reserve reserve) {
+            if (ReserveType.WITHDRAW.equals(reserve.getType())) {
+                reservedWithdraw = Money.add(reservedWithdraw, Money.minorUnits(reserve.getAmount()));
+            }
+        }
+
+        void release(Reserve reserve) {
+            if (ReserveType.WITHDRAW.equals(reserve.getType())) {
+                reservedWithdraw = Money.subtract(reservedWithdraw, Money.minorUnits(reserve.getAmount()));
+            }
+        }
+
+        void close() {
+            active = false;
+            updatedAt = LocalDateTime.now();
+            ++version;
+        }
+
+        void reopen() { // the version stays ahead, it only has to grow
+            active = true;
+        }
+
+        void apply(Reserve reserve) {
+            var minorUnits = Money.minorUnits(reserve.getAmount());
+            var applied = ReserveType.DEPOSIT.equals(reserve.getType()) // throws on overflow before any change
+                    ? Money.add(amount, minorUnits)
+                    : Money.subtract(amount, minorUnits);
+            release(reserve);
+            amount = applied;
+            updatedAt = LocalDateTime.now();
+            ++version;
+        }
+
+        void unapply(Reserve reserve) { // the version stays ahead, it only has to grow
+            var minorUnits = Money.minorUnits(reserve.getAmount());
+            amount = ReserveType.DEPOSIT.equals(reserve.getType())
+                    ? Money.subtract(amount, minorUnits)
+                    : Money.add(amount, minorUnits);
+            hold(reserve);
+        }
+
+        Account snapshot() {
+            return Account.builder()
+                    .id(id)
+                    .amount(Money.toBigDecimal(amount))
+                    .active(active)
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .version(version)
+                    .build();
+        }
+    }
+}
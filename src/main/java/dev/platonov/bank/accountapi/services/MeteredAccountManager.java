@@ -0,0 +1,203 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
+import dev.platonov.bank.accountapi.models.*;
+import dev.platonov.bank.accountapi.repositories.RoundTripCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency and the database round trips of every call, the denials by reason
+ * and the already handled reserves. A not unique id is a NOT_UNIQUE_ID denial on both the single
+ * and the batch paths. The meters are registered once, so a call costs two clock reads and a few increments.
+ */
+public class MeteredAccountManager implements AccountManager {
+    private static final String CALLS = "account.manager.calls";
+    private static final String ROUND_TRIPS = "account.manager.db.round.trips";
+    private static final String DENIALS = "account.manager.denials";
+    private static final String ERRORS = "account.manager.errors";
+
+    private final AccountManager delegate;
+    private final RoundTripCounter roundTrips;
+
+    private final Metered getActiveAccount;
+    private final Metered getReserve;
+    private final Metered reserve;
+    private final Metered reserveAll;
+    private final Metered reserveDeposit;
+    private final Metered reserveWithdraw;
+    private final Metered commit;
+    private final Metered rollback;
+    private final Metered commitAll;
+    private final Metered rollbackAll;
+
+    private final Map<DenyReason, Counter> denials = new EnumMap<>(DenyReason.class);
+    private final Counter alreadyHandled;
+
+    public MeteredAccountManager(AccountManager delegate, RoundTripCounter roundTrips, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.roundTrips = roundTrips;
+
+        getActiveAccount = new Metered("getActiveAccount", registry);
+        getReserve = new Metered("getReserve", registry);
+        reserve = new Metered("reserve", registry);
+        reserveAll = new Metered("reserveAll", registry);
+        reserveDeposit = new Metered("reserveDeposit", registry);
+        reserveWithdraw = new Metered("reserveWithdraw", registry);
+        commit = new Metered("commit", registry);
+        rollback = new Metered("rollback", registry);
+        commitAll = new Metered("commitAll", registry);
+        rollbackAll = new Metered("rollbackAll", registry);
+
+        for (var reason : DenyReason.values()) {
+            denials.put(reason, Counter.builder(DENIALS)
+                    .tag("reason", reason.name())
+                    .register(registry));
+        }
+        alreadyHandled = Counter.builder(ERRORS)
+                .tag("exception", AlreadyHandledReserveException.class.getSimpleName())
+                .register(registry);
+    }
+
+    @Override
+    public @NonNull Optional<Account> getActiveAccount(long id) {
+        return record(getActiveAccount, () -> delegate.getActiveAccount(id));
+    }
+
+    @Override
+    public @NonNull Optional<Reserve> getReserve(@NonNull String id) {
+        return record(getReserve, () -> delegate.getReserve(id));
+    }
+
+    @Override
+    public @NonNull Reserve reserve(@NonNull ReserveOption reserveOption) throws DeniedReserveException {
+        return record(reserve, () -> delegate.reserve(reserveOption));
+    }
+
+    @Override
+    public @NonNull List<ReserveResult> reserveAll(@NonNull List<ReserveOption> reserveOptions) {
+        return countDenials(record(reserveAll, () -> delegate.reserveAll(reserveOptions)));
+    }
+
+    @Override
+    public @NonNull Reserve reserveAndPublish(@NonNull ReserveOption reserveOption) throws DeniedReserveException {
+        return record(reserve, () -> delegate.reserveAndPublish(reserveOption));
+    }
+
+    @Override
+    public @NonNull List<ReserveResult> reserveAllAndPublish(@NonNull List<ReserveOption> reserveOptions) {
+        return countDenials(record(reserveAll, () -> delegate.reserveAllAndPublish(reserveOptions)));
+    }
+
+    @Override
+    public @NonNull Reserve reserveDeposit(@NonNull String id, long accountId,
+                                           @NonNull BigDecimal amount) throws DeniedReserveException {
+        return record(reserveDeposit, () -> delegate.reserveDeposit(id, accountId, amount));
+    }
+
+    @Override
+    public @NonNull Reserve reserveWithdraw(@NonNull String id, long accountId,
+                                            @NonNull BigDecimal amount) throws DeniedReserveException {
+        return record(reserveWithdraw, () -> delegate.reserveWithdraw(id, accountId, amount));
+    }
+
+    @Override
+    public @NonNull Account commit(@NonNull Reserve reserve) {
+        return record(commit, () -> delegate.commit(reserve));
+    }
+
+    @Override
+    public void rollback(@NonNull Reserve reserve) {
+        record(rollback, () -> {
+            delegate.rollback(reserve);
+            return null;
+        });
+    }
+
+    @Override
+    public @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds) {
+        return countAlreadyHandled(record(commitAll, () -> delegate.commitAll(reserveIds)));
+    }
+
+    @Override
+    public @NonNull List<ReserveHandleResult> rollbackAll(@NonNull Collection<String> reserveIds) {
+        return countAlreadyHandled(record(rollbackAll, () -> delegate.rollbackAll(reserveIds)));
+    }
+
+    private <R, X extends Exception> R record(Metered metered, Call<R, X> call) throws X {
+        var started = System.nanoTime();
+        var roundTripsBefore = roundTrips.get();
+        try {
+            return call.call();
+        } catch (Exception e) {
+            count(e);
+            throw e;
+        } finally {
+            metered.calls.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            metered.roundTrips.record(roundTrips.get() - roundTripsBefore);
+        }
+    }
+
+    private void count(Exception e) {
+        if (e instanceof DeniedReserveException) {
+            denials.get(((DeniedReserveException) e).getDenyReason()).increment();
+        } else if (e instanceof AlreadyHandledReserveException) {
+            alreadyHandled.increment();
+        } else if (e instanceof NotUniqueIdException) { // the batch reports it as a denial
+            denials.get(DenyReason.NOT_UNIQUE_ID).increment();
+        }
+    }
+
+    private List<ReserveResult> countDenials(List<ReserveResult> results) {
+        for (var result : results) {
+            if (!result.isReserved()) {
+                denials.get(result.getDenyReason()).increment();
+            }
+        }
+        return results;
+    }
+
+    private List<ReserveHandleResult> countAlreadyHandled(List<ReserveHandleResult> results) {
+        for (var result : results) {
+            if (result.getStatus() == ReserveHandleStatus.ALREADY_HANDLED) {
+                alreadyHandled.increment();
+            }
+        }
+        return results;
+    }
+
+    private interface Call<R, X extends Exception> {
+        R call() throws X;
+    }
+
+    private static class Metered {
+        final Timer calls;
+        final DistributionSummary roundTrips;
+
+        Metered(String method, MeterRegistry registry) {
+            calls = Timer.builder(CALLS)
+                    .tag("method", method)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100_000)) // the ledger answers in microseconds
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry);
+            roundTrips = DistributionSummary.builder(ROUND_TRIPS)
+                    .tag("method", method)
+                    .register(registry);
+        }
+    }
+}
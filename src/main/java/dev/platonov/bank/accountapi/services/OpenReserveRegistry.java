@@ -0,0 +1,133 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Open reserves by id, so handling a reserve doesn't need to read it from the database first.
+ * The registry is a hint: a reserve handled by another instance stays here until it expires,
+ * and the database decides whether the reserve is still open.
+ */
+public class OpenReserveRegistry implements AutoCloseable {
+    private static final ReserveType[] TYPES = ReserveType.values();
+    private static final long NANOS_PER_SECOND = 1_000_000_000;
+
+    private final Supplier<List<Reserve>> loader;
+    private final long ttlNanos;
+    private final Duration sweepInterval;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "open-reserve-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OpenReserveRegistry(Supplier<List<Reserve>> loader, @NonNull Duration ttl,
+                               @NonNull Duration sweepInterval) {
+        this.loader = loader;
+        this.ttlNanos = ttl.toNanos();
+        this.sweepInterval = sweepInterval;
+    }
+
+    public void start() {
+        reload();
+        sweeper.scheduleWithFixedDelay(this::evictExpired,
+                sweepInterval.toNanos(), sweepInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public void reload() {
+        entries.clear();
+        loader.get().forEach(this::put);
+    }
+
+    public void put(@NonNull Reserve reserve) {
+        entries.put(reserve.getId(), new Entry(reserve));
+    }
+
+    public @NonNull Optional<Reserve> get(@NonNull String id) {
+        var now = toNanos(LocalDateTime.now());
+        return Optional.ofNullable(entries.get(id))
+                .filter(entry -> entry.expiresAtNanos > now) // past its expires_at, the sweeper may have deleted it
+                .map(entry -> entry.toReserve(id));
+    }
+
+    public void remove(@NonNull String id) {
+        entries.remove(id);
+    }
+
+    public void removeAll(@NonNull Collection<String> ids) {
+        ids.forEach(entries::remove);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void evictExpired() {
+        var now = toNanos(LocalDateTime.now());
+        var expiredBefore = now - ttlNanos;
+        entries.values().removeIf(entry -> entry.createdAtNanos < expiredBefore || entry.expiresAtNanos <= now);
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdown();
+    }
+
+    private static long toNanos(LocalDateTime dateTime) { // fits a long until 2262
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + dateTime.getNano();
+    }
+
+    private static LocalDateTime fromNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(nanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
+    private static final class Entry { // about 48 bytes without the id
+        final long accountId;
+        final long unscaledAmount;
+        final BigDecimal largeAmount; // null if the amount fits unscaledAmount and scale
+        final long createdAtNanos;
+        final long expiresAtNanos; // Long.MAX_VALUE if the reserve has no expires_at
+        final int scale;
+        final byte type;
+
+        Entry(Reserve reserve) {
+            var amount = reserve.getAmount();
+            var compact = amount.unscaledValue().bitLength() < Long.SIZE;
+            this.accountId = reserve.getAccountId();
+            this.unscaledAmount = compact ? amount.unscaledValue().longValue() : 0;
+            this.largeAmount = compact ? null : amount;
+            this.createdAtNanos = toNanos(reserve.getCreatedAt());
+            this.expiresAtNanos = reserve.getExpiresAt() != null ? toNanos(reserve.getExpiresAt()) : Long.MAX_VALUE;
+            this.scale = amount.scale();
+            this.type = (byte) reserve.getType().ordinal();
+        }
+
+        Reserve toReserve(String id) {
+            return Reserve.builder()
+                    .id(id)
+                    .accountId(accountId)
+                    .amount(largeAmount != null ? largeAmount : BigDecimal.valueOf(unscaledAmount, scale))
+                    .type(TYPES[type])
+                    .createdAt(fromNanos(createdAtNanos))
+                    .expiresAt(expiresAtNanos != Long.MAX_VALUE ? fromNanos(expiresAtNanos) : null)
+                    .build();
+        }
+    }
+}
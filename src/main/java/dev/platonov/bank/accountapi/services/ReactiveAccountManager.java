@@ -0,0 +1,24 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.models.*;
+import lombok.NonNull;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The non-blocking counterpart of {@link AccountManager}, the errors are the exceptions it throws.
+ */
+public interface ReactiveAccountManager {
+    @NonNull Mono<Account> createAccount();
+    @NonNull Mono<Account> getActiveAccount(long id);
+    @NonNull Mono<Account> closeAccount(@NonNull Account account); // the account, closed
+    @NonNull Mono<Reserve> getReserve(@NonNull String id);
+    @NonNull Mono<Reserve> reserve(@NonNull ReserveOption reserveOption);
+    @NonNull Mono<List<ReserveResult>> reserveAll(@NonNull List<ReserveOption> reserveOptions); // a result per option, in order
+    @NonNull Mono<Reserve> reserveDeposit(@NonNull String id, long accountId, @NonNull BigDecimal amount);
+    @NonNull Mono<Reserve> reserveWithdraw(@NonNull String id, long accountId, @NonNull BigDecimal amount);
+    @NonNull Mono<Account> commit(@NonNull Reserve reserve);
+    @NonNull Mono<Void> rollback(@NonNull Reserve reserve);
+}
@@ -0,0 +1,142 @@
+package dev.platonov.bank.accountapi.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends the reserve events to the destinations of their bindings as JSON without waiting for the broker.
+ * The producer batches the records by its linger and batch size and compresses the batches, the futures complete
+ * when the broker acknowledges them.
+ * <p>
+ * At most maxInFlight events wait for their acks, a send waits up to permitTimeout for a permit and fails after it,
+ * so a slow broker slows the callers down instead of filling the producer's buffer.
+ */
+@Slf4j
+public class ReserveEventPublisher implements AutoCloseable {
+    private static final String SENDS = "reserve.events.sends";
+    private static final String FAILURES = "reserve.events.send.failures";
+    private static final String IN_FLIGHT = "reserve.events.in.flight";
+
+    private final ProducerFactory<String, byte[]> producerFactory;
+    private final KafkaTemplate<String, byte[]> template;
+    private final ObjectMapper objectMapper;
+    private final Function<String, String> destinations; // of the bindings
+    private final Map<String, String> destinationsByBinding = new ConcurrentHashMap<>();
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Duration permitTimeout;
+    private final MeterRegistry registry;
+    private final Map<String, Timer> sends = new ConcurrentHashMap<>();
+    private final Counter failures;
+
+    public ReserveEventPublisher(ProducerFactory<String, byte[]> producerFactory,
+                                 ObjectMapper objectMapper, Function<String, String> destinations,
+                                 int maxInFlight, @NonNull Duration permitTimeout, MeterRegistry registry) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException(String.format("illegal max in flight = %d", maxInFlight));
+        }
+        this.producerFactory = producerFactory;
+        this.template = new KafkaTemplate<>(producerFactory);
+        this.objectMapper = objectMapper;
+        this.destinations = destinations;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.permitTimeout = permitTimeout;
+        this.registry = registry;
+
+        failures = Counter.builder(FAILURES)
+                .register(registry);
+        Gauge.builder(IN_FLIGHT, this, ReserveEventPublisher::getInFlight)
+                .register(registry);
+    }
+
+    /**
+     * Completes when the broker acknowledges the event, exceptionally if it can't be sent.
+     * Waits only for a permit.
+     */
+    public @NonNull CompletableFuture<Void> send(@NonNull String binding, @NonNull Object event) {
+        var sent = new CompletableFuture<Void>();
+
+        byte[] value;
+        try {
+            value = objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            return fail(sent, binding, e);
+        }
+
+        try {
+            if (!permits.tryAcquire(permitTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                var msg = String.format("%d events are waiting for acks for %s", maxInFlight, permitTimeout);
+                return fail(sent, binding, new RejectedExecutionException(msg));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fail(sent, binding, e);
+        }
+
+        var timer = sends.computeIfAbsent(binding, this::sendTimer);
+        var started = System.nanoTime();
+        try {
+            template.send(destination(binding), value)
+                    .completable()
+                    .whenComplete((result, e) -> {
+                        permits.release();
+                        timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                        if (e == null) {
+                            sent.complete(null);
+                        } else {
+                            fail(sent, binding, e);
+                        }
+                    });
+        } catch (RuntimeException e) { // e.g. the producer is closed
+            permits.release();
+            fail(sent, binding, e);
+        }
+        return sent;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        template.flush();
+        producerFactory.reset(); // closes the producer
+    }
+
+    private String destination(String binding) {
+        return destinationsByBinding.computeIfAbsent(binding, destinations);
+    }
+
+    private Timer sendTimer(String binding) { // from the send to the ack, the producer's queue time included
+        return Timer.builder(SENDS)
+                .tag("binding", binding)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private CompletableFuture<Void> fail(CompletableFuture<Void> sent, String binding, Throwable e) {
+        failures.increment();
+        log.warn("cannot send a reserve event to {}", binding, e);
+        sent.completeExceptionally(e);
+        return sent;
+    }
+}
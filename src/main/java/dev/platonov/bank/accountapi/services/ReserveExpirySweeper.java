@@ -0,0 +1,106 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.models.Reserve;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Rolls back the reserves nobody committed or rolled back in time, so their withdraw holds don't lock the money
+ * forever. A reserve expires at its expires_at, or defaultTtl after its creation if it has none.
+ * <p>
+ * Every sweep handles up to maxBatches batches of batchSize reserves, a short transaction per batch,
+ * and skips the accounts and reserves that are being handled right now.
+ */
+@Slf4j
+public class ReserveExpirySweeper implements AutoCloseable {
+    private final ReserveService reserveService;
+    private final OpenReserveRegistry openReserves;
+    private final Consumer<Reserve> onExpired; // called after the reserve is handled
+    private final Duration defaultTtl; // null keeps the reserves without expires_at
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration sweepInterval;
+    private final AtomicLong expired = new AtomicLong();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "reserve-expiry-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReserveExpirySweeper(ReserveService reserveService, OpenReserveRegistry openReserves,
+                                Consumer<Reserve> onExpired, Duration defaultTtl,
+                                int batchSize, int maxBatches, @NonNull Duration sweepInterval) {
+        if (batchSize < 1 || maxBatches < 1) {
+            var msg = String.format("illegal batch size = %d or max batches = %d", batchSize, maxBatches);
+            throw new IllegalArgumentException(msg);
+        }
+        this.reserveService = reserveService;
+        this.openReserves = openReserves;
+        this.onExpired = onExpired;
+        this.defaultTtl = defaultTtl;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.sweepInterval = sweepInterval;
+    }
+
+    public void start() {
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly,
+                sweepInterval.toNanos(), sweepInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Expires the reserves overdue at the call, returns how many of them.
+     */
+    public int sweep() {
+        var now = LocalDateTime.now();
+        var total = 0;
+        for (int i = 0; i < maxBatches; ++i) {
+            var batch = reserveService.expireOverdue(now, defaultTtl, batchSize);
+            openReserves.removeAll(batch.stream()
+                    .map(Reserve::getId)
+                    .collect(Collectors.toList()));
+            expired.addAndGet(batch.size());
+            total += batch.size();
+            batch.forEach(this::publishQuietly);
+
+            if (batch.size() < batchSize) { // the rest is locked by others or not overdue
+                break;
+            }
+        }
+        return total;
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdown();
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            log.error("cannot expire overdue reserves, retrying in {}", sweepInterval, e);
+        }
+    }
+
+    private void publishQuietly(Reserve reserve) {
+        try {
+            onExpired.accept(reserve);
+        } catch (RuntimeException e) { // the reserve is gone anyway, don't stop the batch
+            log.error("cannot publish expired reserve {}", reserve.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.models.ReserveOutboxEvent;
+import dev.platonov.bank.accountapi.repositories.ReserveOutboxRepository;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes the events of reserve_outbox, so the functions creating reserves don't wait for the broker.
+ * Every batch of up to batchSize unsent events is claimed for the lease, skipping the ones other instances
+ * are publishing, published with no transaction open and marked sent. A batch that isn't acked within
+ * sendTimeout stays unsent and is claimed again when its lease is over, so a stalled broker holds
+ * no locks in the database. An event is published at least once: again if its batch fails or the instance
+ * stops before marking it sent.
+ * <p>
+ * The sent events are purged after sentRetention.
+ */
+@Slf4j
+public class ReserveOutboxRelay implements AutoCloseable {
+    private final ReserveOutboxRepository repository;
+    private final Function<List<ReserveOutboxEvent>, CompletableFuture<?>> publisher; // completes on all acks
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration sendTimeout;
+    private final Duration lease; // longer than sendTimeout, so an instance doesn't take a batch being sent
+    private final Duration pollInterval;
+    private final Duration sentRetention;
+    private final Duration purgeInterval;
+    private final AtomicLong published = new AtomicLong();
+    private final ScheduledExecutorService relay = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "reserve-outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReserveOutboxRelay(ReserveOutboxRepository repository,
+                              Function<List<ReserveOutboxEvent>, CompletableFuture<?>> publisher,
+                              int batchSize, int maxBatches, @NonNull Duration sendTimeout, @NonNull Duration lease,
+                              @NonNull Duration pollInterval, @NonNull Duration sentRetention,
+                              @NonNull Duration purgeInterval) {
+        if (batchSize < 1 || maxBatches < 1) {
+            var msg = String.format("illegal batch size = %d or max batches = %d", batchSize, maxBatches);
+            throw new IllegalArgumentException(msg);
+        }
+        if (lease.compareTo(sendTimeout) <= 0) {
+            var msg = String.format("lease = %s must be longer than send timeout = %s", lease, sendTimeout);
+            throw new IllegalArgumentException(msg);
+        }
+        this.repository = repository;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.sendTimeout = sendTimeout;
+        this.lease = lease;
+        this.pollInterval = pollInterval;
+        this.sentRetention = sentRetention;
+        this.purgeInterval = purgeInterval;
+    }
+
+    public void start() {
+        relay.scheduleWithFixedDelay(this::publishQuietly,
+                pollInterval.toNanos(), pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+        relay.scheduleWithFixedDelay(this::purgeQuietly,
+                purgeInterval.toNanos(), purgeInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Publishes the events unsent at the call, returns how many of them.
+     */
+    public int publish() {
+        var total = 0;
+        for (int i = 0; i < maxBatches; ++i) {
+            var events = repository.claimUnsent(batchSize, lease);
+            if (events.isEmpty()) {
+                break;
+            }
+
+            awaitAcks(publisher.apply(events), events.size());
+            var sent = repository.markSent(events.stream()
+                    .map(ReserveOutboxEvent::getId)
+                    .collect(Collectors.toList()));
+            published.addAndGet(sent);
+            total += sent;
+
+            if (events.size() < batchSize) { // the rest is claimed by others or there is none
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Purges the events sent sentRetention ago, returns how many of them.
+     */
+    public int purge() {
+        var sentBefore = LocalDateTime.now().minus(sentRetention);
+        var total = 0;
+        for (int i = 0; i < maxBatches; ++i) {
+            var purged = repository.purgeSent(sentBefore, batchSize);
+            total += purged;
+
+            if (purged < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    @Override
+    public void close() {
+        relay.shutdown();
+    }
+
+    private void awaitAcks(CompletableFuture<?> acks, int count) {
+        try {
+            acks.get(sendTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while publishing reserve events", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(String.format("cannot publish %d reserve events", count), e.getCause());
+        } catch (TimeoutException e) {
+            var msg = String.format("%d reserve events aren't acked in %s, retrying after the lease of %s",
+                    count, sendTimeout, lease);
+            throw new IllegalStateException(msg, e);
+        }
+    }
+
+    private void publishQuietly() {
+        try {
+            publish();
+        } catch (RuntimeException e) {
+            log.error("cannot publish reserve events, retrying in {}", pollInterval, e);
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            log.error("cannot purge sent reserve events, retrying in {}", purgeInterval, e);
+        }
+    }
+}
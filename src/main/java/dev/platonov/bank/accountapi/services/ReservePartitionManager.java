@@ -0,0 +1,98 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.repositories.ReservePartitionRepository;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the daily partitions of reserves premakeDays ahead of today and drops the partitions older than retention,
+ * oldest first, so the ids freed with a partition never belong to a younger one. The reserves still open
+ * in a dropped partition move to the default partition, reserves_overdue, so abandoned reserves don't keep
+ * the handled ones forever, whether or not the expiry sweeper runs.
+ */
+@Slf4j
+public class ReservePartitionManager implements AutoCloseable {
+    private final ReservePartitionRepository repository;
+    private final int premakeDays;
+    private final Duration retention;
+    private final Duration maintenanceInterval;
+    private final AtomicLong dropped = new AtomicLong();
+    private final ScheduledExecutorService maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "reserve-partition-manager");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReservePartitionManager(ReservePartitionRepository repository, int premakeDays,
+                                   @NonNull Duration retention, @NonNull Duration maintenanceInterval) {
+        if (premakeDays < 1) {
+            throw new IllegalArgumentException(String.format("illegal premake days = %d", premakeDays));
+        }
+        this.repository = repository;
+        this.premakeDays = premakeDays;
+        this.retention = retention;
+        this.maintenanceInterval = maintenanceInterval;
+    }
+
+    public void start() {
+        createPartitions(); // the reserves of today need their partition before the first request
+        try {
+            dropPartitions();
+        } catch (RuntimeException e) { // e.g. the lock timeout of a detach, the next maintenance drops them
+            log.error("cannot drop reserve partitions, retrying in {}", maintenanceInterval, e);
+        }
+        maintainer.scheduleWithFixedDelay(this::maintainQuietly,
+                maintenanceInterval.toNanos(), maintenanceInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public void maintain() {
+        createPartitions();
+        dropPartitions();
+    }
+
+    private void createPartitions() {
+        var created = repository.createPartitions(LocalDate.now(ZoneOffset.UTC), premakeDays + 1);
+        if (created > 0) {
+            log.info("{} reserve partitions are created", created);
+        }
+    }
+
+    private void dropPartitions() {
+        var droppableBefore = LocalDateTime.now().minus(retention);
+        for (var partition : repository.getPartitions()) {
+            if (partition.getUpperBound().isAfter(droppableBefore)) {
+                break;
+            }
+            var moved = repository.drop(partition);
+            dropped.incrementAndGet();
+            log.info("reserve partition {} is dropped, {} open reserves are moved to reserves_overdue",
+                    partition.getName(), moved);
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        maintainer.shutdown();
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.error("cannot maintain reserve partitions, retrying in {}", maintenanceInterval, e);
+        }
+    }
+}
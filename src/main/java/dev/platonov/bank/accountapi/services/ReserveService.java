@@ -2,20 +2,40 @@ package dev.platonov.bank.accountapi.services;
 
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
 import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
+import dev.platonov.bank.accountapi.models.ReserveResult;
 import lombok.NonNull;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ReserveService {
     void saveIfAllowed(@NonNull Reserve reserve) throws DeniedReserveException;
 
+    void saveIfAllowed(@NonNull Reserve reserve, boolean publish) throws DeniedReserveException; // see ReserveRepository
+
+    @NonNull List<ReserveResult> saveAllIfAllowed(@NonNull List<Reserve> reserves); // a result per reserve, in order
+
+    @NonNull List<ReserveResult> saveAllIfAllowed(@NonNull List<Reserve> reserves, boolean publish);
+
     @NonNull Optional<Reserve> delete(@NonNull String id);
 
     boolean delete(@NonNull Reserve reserve);
 
+    @NonNull List<ReserveHandleResult> deleteAll(@NonNull Collection<String> ids);
+
+    @NonNull List<Reserve> expireOverdue(@NonNull LocalDateTime now, Duration defaultTtl, int limit); // the expired reserves
+
     @NonNull Reserve getExisting(@NonNull String id); // throws IllegalArgumentException if reserve with id doesn't exist
 
     @NonNull Optional<Reserve> get(@NonNull String id);
 
+    @NonNull List<Reserve> getAll(); // the open reserves
+
     boolean exists(@NonNull String id);
+
+    @NonNull List<Long> getInconsistentReservedWithdrawAccountIds(); // empty if every hold matches its open withdraws
 }
@@ -1,26 +1,338 @@
 create table IF NOT EXISTS accounts
 (
-    id         bigserial,
-    amount     numeric,
-    active     boolean,
-    created_at timestamp with time zone,
-    updated_at timestamp with time zone,
+    id                bigserial,
+    amount            bigint, -- minor units, see Money.SCALE
+    active            boolean,
+    created_at        timestamp with time zone,
+    updated_at        timestamp with time zone,
+    reserved_withdraw bigint  not null default 0, -- sum of open withdraw reserves
+    version           bigint  not null default 0, -- bumped on every change of amount or active
     primary key (id)
 );
 
+-- partitioned by the UTC day of created_at, see create_reserve_partitions. commits, rollbacks and the expiry
+-- mark reserves handled instead of deleting them, the old partitions are dropped whole by drop_reserve_partition
 create table IF NOT EXISTS reserves
 (
     id         text,
     account_id bigint,
-    amount     numeric,
+    amount     bigint, -- minor units
     type       text,
-    created_at timestamp with time zone,
-    primary key (id),
+    created_at timestamp with time zone not null,
+    expires_at timestamp with time zone, -- null expires after account-api.reserve.expiry.default-ttl
+    handled_at timestamp with time zone, -- null while the reserve is open
+    primary key (id, created_at),
     CONSTRAINT fk_customer
       FOREIGN KEY (account_id)
         REFERENCES accounts (id)
+) PARTITION BY RANGE (created_at);
+
+-- the primary key of a partitioned table has to include created_at, so the ids are kept unique here.
+-- the ids of handled reserves stay taken until their partition is dropped, those of the open ones until they are handled
+create table IF NOT EXISTS reserve_ids
+(
+    id         text,
+    created_at timestamp with time zone not null,
+    primary key (id)
 );
 
+CREATE INDEX IF NOT EXISTS reserve_ids_created_at ON reserve_ids (created_at);
+
+-- reserve events for ReserveOutboxRelay. a prepared event is written in the transaction of its reserve,
+-- so it is published at least once if and only if the reserve is saved. sent rows are purged after
+-- account-api.reserve.outbox.sent-retention
+create table IF NOT EXISTS reserve_outbox
+(
+    id          bigserial,
+    event       text    not null, -- PREPARED or DENIED
+    reserve_id  text    not null,
+    account_id  bigint  not null,
+    amount      numeric not null, -- as requested, a denied amount may be not representable in minor units
+    type        text    not null,
+    created_at  timestamp with time zone, -- of the prepared reserve
+    expires_at  timestamp with time zone, -- of the prepared reserve
+    ttl         interval, -- of the denied option
+    deny_reason text, -- of the denied option
+    sent_at     timestamp with time zone, -- null until the relay has published the event
+    primary key (id)
+);
+
+-- a relay claims the unsent events for a lease and publishes them outside of any transaction
+ALTER TABLE reserve_outbox
+    ADD COLUMN IF NOT EXISTS claimed_until timestamp with time zone;
+
+CREATE INDEX IF NOT EXISTS reserve_outbox_unsent ON reserve_outbox (id) WHERE sent_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS reserve_outbox_sent_at ON reserve_outbox (sent_at) WHERE sent_at IS NOT NULL;
+
+ALTER TABLE accounts
+    ADD COLUMN IF NOT EXISTS version bigint not null default 0;
+
+-- migration: reserves created before expires_at was introduced expire after the default ttl
+
+ALTER TABLE reserves
+    ADD COLUMN IF NOT EXISTS expires_at timestamp with time zone;
+
+-- migration: reserves created before handled_at was introduced are open, the handled ones were deleted
+
 ALTER TABLE reserves
-    SET (autovacuum_enabled = true);
+    ADD COLUMN IF NOT EXISTS handled_at timestamp with time zone;
+
+-- migration: accounts created before reserved_withdraw was introduced get the sum of their open withdraws, once.
+-- adding the column locks accounts until the end of the block, so no hold can be made while the sums are taken
+DO
+'
+BEGIN
+    IF NOT EXISTS(SELECT 1
+                  FROM information_schema.columns
+                  WHERE table_schema = current_schema()
+                    AND table_name = ''accounts''
+                    AND column_name = ''reserved_withdraw'') THEN
+        ALTER TABLE accounts
+            ADD COLUMN reserved_withdraw numeric not null default 0;
+
+        UPDATE accounts a
+        SET reserved_withdraw = r.reserved
+        FROM (SELECT account_id, sum(amount) AS reserved
+              FROM reserves
+              WHERE type = ''WITHDRAW''
+                AND handled_at IS NULL
+              GROUP BY account_id) r
+        WHERE a.id = r.account_id;
+    END IF;
+END;
+';
+
+-- migration: numeric amounts to bigint minor units, once. fails rather than rounds amounts with more fraction digits
+DO
+'
+BEGIN
+    IF (SELECT data_type
+        FROM information_schema.columns
+        WHERE table_schema = current_schema()
+          AND table_name = ''accounts''
+          AND column_name = ''amount'') = ''numeric'' THEN
+        IF EXISTS(SELECT 1 FROM accounts WHERE amount * 100 <> trunc(amount * 100)
+                                            OR reserved_withdraw * 100 <> trunc(reserved_withdraw * 100))
+            OR EXISTS(SELECT 1 FROM reserves WHERE amount * 100 <> trunc(amount * 100)) THEN
+            RAISE EXCEPTION ''amounts with more than 2 fraction digits can not be migrated to minor units'';
+        END IF;
+
+        ALTER TABLE accounts
+            ALTER COLUMN amount TYPE bigint USING (amount * 100)::bigint,
+            ALTER COLUMN reserved_withdraw TYPE bigint USING (reserved_withdraw * 100)::bigint;
+
+        ALTER TABLE reserves
+            ALTER COLUMN amount TYPE bigint USING (amount * 100)::bigint;
+    END IF;
+END;
+';
+
+-- creates the missing daily partitions of reserves for p_days days from p_from, returns how many.
+-- the nodes starting or maintaining the partitions at once take turns, so a partition is created once
+CREATE OR REPLACE FUNCTION create_reserve_partitions(p_from date, p_days integer)
+    RETURNS integer
+    LANGUAGE plpgsql
+AS
+'
+DECLARE
+    v_day     date;
+    v_name    text;
+    v_created integer := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext(''reserve_partitions''));
+
+    FOR i IN 0 .. p_days - 1
+        LOOP
+            v_day := p_from + i;
+            v_name := ''reserves_p'' || to_char(v_day, ''YYYYMMDD'');
+            IF to_regclass(v_name) IS NULL THEN
+                EXECUTE format(''CREATE TABLE %I PARTITION OF reserves FOR VALUES FROM (%L) TO (%L)'', v_name,
+                               v_day::timestamp AT TIME ZONE ''UTC'', (v_day + 1)::timestamp AT TIME ZONE ''UTC'');
+                v_created := v_created + 1;
+            END IF;
+        END LOOP;
+    RETURN v_created;
+END;
+';
+
+-- detaches and drops the partition, its open reserves move to reserves_overdue, and frees the ids created before
+-- p_upper_bound but those of reserves_overdue. the callers drop the partitions oldest first, so the freed ids
+-- belong to the dropped partitions only. the handled reserves of reserves_overdue are deleted on the way.
+-- returns how many open reserves are moved
+DROP FUNCTION IF EXISTS drop_reserve_partition(text, timestamp with time zone);
+
+CREATE OR REPLACE FUNCTION drop_reserve_partition(p_name text, p_upper_bound timestamp with time zone)
+    RETURNS integer
+    LANGUAGE plpgsql
+AS
+'
+DECLARE
+    v_moved integer;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext(''reserve_partitions''));
+    PERFORM set_config(''lock_timeout'', ''1s'', true); -- rather than queue the reserves behind the detach
+
+    DELETE FROM reserves_overdue WHERE handled_at IS NOT NULL;
+
+    EXECUTE format(''ALTER TABLE reserves DETACH PARTITION %I'', p_name);
+    EXECUTE format(''INSERT INTO reserves (id, account_id, amount, type, created_at, expires_at) ''
+                       || ''SELECT id, account_id, amount, type, created_at, expires_at FROM %I ''
+                       || ''WHERE handled_at IS NULL'', p_name);
+    GET DIAGNOSTICS v_moved = ROW_COUNT;
+    EXECUTE format(''DROP TABLE %I'', p_name);
+
+    DELETE FROM reserve_ids i
+    WHERE i.created_at < p_upper_bound
+      AND NOT EXISTS(SELECT 1 FROM reserves_overdue o WHERE o.id = i.id);
+    RETURN v_moved;
+END;
+';
+
+-- migration: unpartitioned reserves to the partitioned table, once. the reserves of the previous days go to
+-- reserves_legacy, which is dropped like a daily partition
+DO
+'
+DECLARE
+    v_today timestamp with time zone := date_trunc(''day'', now() AT TIME ZONE ''UTC'') AT TIME ZONE ''UTC'';
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = ''reserves''::regclass) = ''r'' THEN
+        CREATE TABLE reserves_partitioned
+        (
+            id         text,
+            account_id bigint,
+            amount     bigint,
+            type       text,
+            created_at timestamp with time zone not null,
+            expires_at timestamp with time zone,
+            handled_at timestamp with time zone,
+            primary key (id, created_at),
+            FOREIGN KEY (account_id) REFERENCES accounts (id)
+        ) PARTITION BY RANGE (created_at);
+
+        EXECUTE format(''CREATE TABLE reserves_legacy PARTITION OF reserves_partitioned ''
+                           || ''FOR VALUES FROM (MINVALUE) TO (%L)'', v_today);
+
+        ALTER TABLE reserves RENAME TO reserves_unpartitioned;
+        ALTER TABLE reserves_partitioned RENAME TO reserves;
+        PERFORM create_reserve_partitions((now() AT TIME ZONE ''UTC'')::date, 1);
+
+        INSERT INTO reserve_ids (id, created_at)
+        SELECT id, coalesce(created_at, ''-infinity'') FROM reserves_unpartitioned
+        ON CONFLICT (id) DO NOTHING;
+
+        INSERT INTO reserves (id, account_id, amount, type, created_at, expires_at)
+        SELECT id, account_id, amount, type, coalesce(created_at, ''-infinity''), expires_at
+        FROM reserves_unpartitioned;
+
+        DROP TABLE reserves_unpartitioned;
+    END IF;
+END;
+';
+
+-- today and the next days, ReservePartitionManager keeps creating them ahead
+SELECT create_reserve_partitions((now() AT TIME ZONE 'UTC')::date, 3);
+
+-- the default partition keeps the reserves still open when their daily partition is dropped, so an abandoned
+-- reserve doesn't hold the partitions back, until they are handled
+CREATE TABLE IF NOT EXISTS reserves_overdue PARTITION OF reserves DEFAULT;
+
+-- the open withdraws of an account are summed from the index alone
+CREATE INDEX IF NOT EXISTS reserves_open_account_type ON reserves (account_id, type) INCLUDE (amount)
+    WHERE handled_at IS NULL;
+
+-- the expiry sweeper's two kinds of overdue reserves
+CREATE INDEX IF NOT EXISTS reserves_open_expires_at ON reserves (expires_at)
+    WHERE expires_at IS NOT NULL AND handled_at IS NULL;
+CREATE INDEX IF NOT EXISTS reserves_open_created_at_default_expiry ON reserves (created_at)
+    WHERE expires_at IS NULL AND handled_at IS NULL;
+
+-- checks id uniqueness, the account and its funds and saves the reserve in one call.
+-- returns 0 if the reserve is saved, 1 if the id is not unique, 2 if there is no such active account,
+-- otherwise the code of a DenyReason.
+-- p_check_id = false skips the id lookup for ids known to be new, the primary key of reserve_ids still rejects
+-- duplicates. p_publish = true writes the prepared event of a saved reserve to reserve_outbox
+DROP FUNCTION IF EXISTS reserve_if_allowed(text, bigint, numeric, text, timestamp with time zone);
+DROP FUNCTION IF EXISTS reserve_if_allowed(text, bigint, numeric, text, timestamp with time zone, boolean);
+DROP FUNCTION IF EXISTS reserve_if_allowed(text, bigint, bigint, text, timestamp with time zone, boolean);
+DROP FUNCTION IF EXISTS reserve_if_allowed(text, bigint, bigint, text, timestamp with time zone, boolean,
+                                           timestamp with time zone);
+
+CREATE OR REPLACE FUNCTION reserve_if_allowed(p_id text, p_account_id bigint, p_amount bigint, p_type text,
+                                              p_created_at timestamp with time zone, p_check_id boolean,
+                                              p_expires_at timestamp with time zone, p_publish boolean)
+    RETURNS integer
+    LANGUAGE plpgsql
+AS
+'
+DECLARE
+    v_rows integer;
+BEGIN
+    IF p_check_id AND EXISTS(SELECT 1 FROM reserve_ids WHERE id = p_id) THEN
+        RETURN 1;
+    END IF;
+
+    IF p_type = ''WITHDRAW'' THEN
+        UPDATE accounts
+        SET reserved_withdraw = reserved_withdraw + p_amount
+        WHERE id = p_account_id
+          AND active = true
+          AND amount - reserved_withdraw - p_amount >= 0;
+
+        GET DIAGNOSTICS v_rows = ROW_COUNT;
+        IF v_rows = 0 THEN
+            IF EXISTS(SELECT 1 FROM accounts WHERE id = p_account_id AND active = true) THEN
+                RETURN 1001;
+            END IF;
+            RETURN 2;
+        END IF;
+    ELSIF NOT EXISTS(SELECT 1 FROM accounts WHERE id = p_account_id AND active = true) THEN
+        RETURN 2;
+    END IF;
+
+    INSERT INTO reserve_ids (id, created_at)
+    VALUES (p_id, p_created_at)
+    ON CONFLICT (id) DO NOTHING;
+
+    GET DIAGNOSTICS v_rows = ROW_COUNT;
+    IF v_rows = 0 THEN
+        IF p_type = ''WITHDRAW'' THEN
+            UPDATE accounts SET reserved_withdraw = reserved_withdraw - p_amount WHERE id = p_account_id;
+        END IF;
+        RETURN 1;
+    END IF;
+
+    INSERT INTO reserves (id, account_id, amount, type, created_at, expires_at)
+    VALUES (p_id, p_account_id, p_amount, p_type, p_created_at, p_expires_at);
+
+    IF p_publish THEN
+        INSERT INTO reserve_outbox (event, reserve_id, account_id, amount, type, created_at, expires_at)
+        VALUES (''PREPARED'', p_id, p_account_id, round(p_amount::numeric / 100, 2), p_type, p_created_at,
+                p_expires_at);
+    END IF;
+
+    RETURN 0;
+END;
+';
+
+-- tells the other instances which account has changed, so they can invalidate their caches.
+-- payload: account id:version:epoch millis of the change
+CREATE OR REPLACE FUNCTION notify_account_change()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+'
+BEGIN
+    PERFORM pg_notify(''account_changes'',
+                      NEW.id || '':'' || NEW.version || '':'' ||
+                      (extract(epoch from clock_timestamp()) * 1000)::bigint);
+    RETURN NULL;
+END;
+';
 
+CREATE OR REPLACE TRIGGER account_changes
+    AFTER UPDATE
+    ON accounts
+    FOR EACH ROW
+    WHEN (OLD.version IS DISTINCT FROM NEW.version)
+EXECUTE FUNCTION notify_account_change();
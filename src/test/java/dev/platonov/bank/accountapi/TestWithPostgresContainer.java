@@ -26,7 +26,12 @@ public abstract class TestWithPostgresContainer {
             TestPropertyValues.of(
                     "spring.datasource.url=" + postgresqlContainer.getJdbcUrl(),
                     "spring.datasource.username=" + postgresqlContainer.getUsername(),
-                    "spring.datasource.password=" + postgresqlContainer.getPassword()
+                    "spring.datasource.password=" + postgresqlContainer.getPassword(),
+                    "account-api.reactive.url=r2dbc:postgresql://" + postgresqlContainer.getHost() + ":"
+                            + postgresqlContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/"
+                            + postgresqlContainer.getDatabaseName(),
+                    "account-api.reactive.username=" + postgresqlContainer.getUsername(),
+                    "account-api.reactive.password=" + postgresqlContainer.getPassword()
             ).applyTo(configurableApplicationContext.getEnvironment());
         }
     }
@@ -0,0 +1,280 @@
+package dev.platonov.bank.accountapi.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives AccountController over HTTP: {@code mvn test -Dload=true -Dtest=AccountControllerLoadTest}.
+ * {@code -Dtest='*AccountControllerLoadTest'} also runs {@link ReactiveAccountControllerLoadTest}, the same plan
+ * against the reactive profile, so the two stacks are compared side by side.
+ * <p>
+ * The requests are planned up front from {@code load.seed}, so every run sends the same operations to the same
+ * accounts with the same concurrency. Latencies go to {@code load.output}: an HdrHistogram percentile distribution
+ * per operation ({@code <stack>/<operation>.hgrm}, milliseconds) and {@code <stack>/summary.txt}.
+ * Set {@code load.max-p99-millis} to fail the run when the overall p99 is above it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "load", matches = "true")
+class AccountControllerLoadTest extends TestWithPostgresContainer {
+    private static final long SEED = Long.getLong("load.seed", 42);
+    private static final int ACCOUNTS = Integer.getInteger("load.accounts", 100);
+    private static final double SKEW = Double.parseDouble(System.getProperty("load.skew", "1.0")); // zipf exponent, 0 is uniform
+    private static final String MIX = System.getProperty("load.mix", "get:70,deposit:15,withdraw:10,create:5");
+    private static final int THREADS = Integer.getInteger("load.threads", 16);
+    private static final int WARMUP_REQUESTS = Integer.getInteger("load.warmup-requests", 5_000);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 50_000);
+    private static final Path OUTPUT = Path.of(System.getProperty("load.output", "target/load-test"));
+    private static final String MAX_P99_MILLIS = System.getProperty("load.max-p99-millis");
+
+    private static final String AMOUNT = "1.00";
+    private static final String INITIAL_AMOUNT = "1000000.00"; // enough for every withdraw of the run
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(THREADS))
+            .build();
+
+    private long[] accountIds;
+
+    @BeforeEach
+    void createAccounts() throws Exception {
+        accountIds = new long[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            var created = send(Operation.CREATE, 0);
+            assertEquals(200, created.statusCode());
+            accountIds[i] = objectMapper.readTree(created.body()).get("id").asLong();
+            assertEquals(200, send(Operation.DEPOSIT, accountIds[i], INITIAL_AMOUNT).statusCode());
+        }
+    }
+
+    @Test
+    void load() throws Exception {
+        var plan = new Plan(new Random(SEED), parseMix(MIX), accountIds, WARMUP_REQUESTS + REQUESTS);
+
+        run(plan, 0, WARMUP_REQUESTS, null);
+
+        var histograms = new EnumMap<Operation, Histogram>(Operation.class);
+        for (var operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+        }
+        var start = System.nanoTime();
+        var errors = run(plan, WARMUP_REQUESTS, WARMUP_REQUESTS + REQUESTS, histograms);
+        var elapsedNanos = System.nanoTime() - start;
+
+        var all = report(histograms, errors, elapsedNanos);
+
+        assertEquals(0, Arrays.stream(Operation.values()).mapToLong(o -> errors.get(o.ordinal())).sum());
+        if (MAX_P99_MILLIS != null) {
+            var p99Millis = all.getValueAtPercentile(99) / 1000.0;
+            assertTrue(p99Millis <= Double.parseDouble(MAX_P99_MILLIS),
+                    String.format("p99 %.3f ms is above load.max-p99-millis %s", p99Millis, MAX_P99_MILLIS));
+        }
+    }
+
+    // sends plan[from, to) from THREADS workers, returns the number of errors per operation
+    private AtomicLongArray run(Plan plan, int from, int to, Map<Operation, Histogram> histograms)
+            throws InterruptedException, ExecutionException {
+        var errors = new AtomicLongArray(Operation.values().length);
+        var next = new AtomicInteger(from);
+        var executors = Executors.newFixedThreadPool(THREADS);
+        var futures = new ArrayList<Future<?>>(THREADS);
+
+        for (int i = 0; i < THREADS; ++i) {
+            futures.add(executors.submit((Callable<Void>) () -> {
+                for (int j = next.getAndIncrement(); j < to; j = next.getAndIncrement()) {
+                    var operation = plan.operations[j];
+                    var started = System.nanoTime();
+                    var status = send(operation, plan.accountIds[j]).statusCode();
+                    var micros = (System.nanoTime() - started) / 1000;
+
+                    if (!operation.isExpected(status)) {
+                        errors.incrementAndGet(operation.ordinal());
+                    }
+                    if (histograms != null) {
+                        histograms.get(operation).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (var future : futures) {
+            future.get();
+        }
+        executors.shutdown();
+
+        return errors;
+    }
+
+    private Histogram report(Map<Operation, Histogram> histograms, AtomicLongArray errors, long elapsedNanos)
+            throws IOException {
+        Files.createDirectories(output());
+        var all = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        var summary = new StringBuilder()
+                .append(String.format("stack=%s seed=%d accounts=%d skew=%s mix=%s threads=%d requests=%d%n",
+                        stack(), SEED, ACCOUNTS, SKEW, MIX, THREADS, REQUESTS))
+                .append(String.format("%-8s %10s %8s %12s %10s %10s %10s%n",
+                        "op", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p999 ms"));
+
+        for (var entry : histograms.entrySet()) {
+            var histogram = entry.getValue();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            all.add(histogram);
+            write(entry.getKey().name().toLowerCase(), histogram);
+            summary.append(line(entry.getKey().name().toLowerCase(), histogram,
+                    errors.get(entry.getKey().ordinal()), elapsedNanos));
+        }
+        write("all", all);
+        summary.append(line("all", all, Arrays.stream(Operation.values())
+                .mapToLong(o -> errors.get(o.ordinal())).sum(), elapsedNanos));
+
+        Files.writeString(output().resolve("summary.txt"), summary);
+        System.out.print(summary);
+        return all;
+    }
+
+    private void write(String name, Histogram histogram) throws IOException {
+        try (var out = new PrintStream(Files.newOutputStream(output().resolve(name + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, 1000.0); // micros to millis
+        }
+    }
+
+    String stack() {
+        return "blocking";
+    }
+
+    private Path output() {
+        return OUTPUT.resolve(stack());
+    }
+
+    private static String line(String name, Histogram histogram, long errors, long elapsedNanos) {
+        return String.format("%-8s %10d %8d %12.0f %10.3f %10.3f %10.3f%n",
+                name,
+                histogram.getTotalCount(),
+                errors,
+                histogram.getTotalCount() * 1e9 / elapsedNanos,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0);
+    }
+
+    private HttpResponse<String> send(Operation operation, long accountId) throws IOException, InterruptedException {
+        return send(operation, accountId, AMOUNT);
+    }
+
+    private HttpResponse<String> send(Operation operation, long accountId, String amount)
+            throws IOException, InterruptedException {
+        var base = "http://localhost:" + port + "/accounts";
+        HttpRequest request;
+        switch (operation) {
+            case GET:
+                request = HttpRequest.newBuilder(URI.create(base + "/" + accountId)).GET().build();
+                break;
+            case DEPOSIT:
+            case WITHDRAW:
+                var path = operation == Operation.DEPOSIT ? "/deposit" : "/withdraw";
+                request = HttpRequest.newBuilder(URI.create(base + "/" + accountId + path + "?amount=" + amount))
+                        .PUT(HttpRequest.BodyPublishers.noBody())
+                        .build();
+                break;
+            default:
+                request = HttpRequest.newBuilder(URI.create(base)).POST(HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        var weights = new EnumMap<Operation, Integer>(Operation.class);
+        for (var part : mix.split(",")) {
+            var weight = part.trim().split(":");
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+
+    enum Operation {
+        GET, DEPOSIT, WITHDRAW, CREATE;
+
+        boolean isExpected(int status) {
+            return status == 200 || this == WITHDRAW && status == 409; // a denied withdraw is an answer too
+        }
+    }
+
+    /**
+     * The operations and their accounts, drawn from one seeded random, so a run is repeatable.
+     */
+    static class Plan {
+        final Operation[] operations;
+        final long[] accountIds;
+
+        Plan(Random random, Map<Operation, Integer> mix, long[] ids, int size) {
+            operations = new Operation[size];
+            accountIds = new long[size];
+
+            var mixOperations = mix.keySet().toArray(new Operation[0]);
+            var mixCdf = cdf(mix.values().stream().mapToDouble(Integer::doubleValue).toArray());
+            var weights = new double[ids.length];
+            for (int i = 0; i < ids.length; ++i) {
+                weights[i] = 1 / Math.pow(i + 1, SKEW); // the first accounts are the hot ones
+            }
+            var accountCdf = cdf(weights);
+
+            for (int i = 0; i < size; ++i) {
+                operations[i] = mixOperations[pick(mixCdf, random.nextDouble())];
+                accountIds[i] = ids[pick(accountCdf, random.nextDouble())];
+            }
+        }
+
+        private static double[] cdf(double[] weights) {
+            var total = Arrays.stream(weights).sum();
+            var cdf = new double[weights.length];
+            var sum = 0.0;
+            for (int i = 0; i < weights.length; ++i) {
+                sum += weights[i];
+                cdf[i] = sum / total;
+            }
+            return cdf;
+        }
+
+        private static int pick(double[] cdf, double value) {
+            var index = Arrays.binarySearch(cdf, value);
+            return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package dev.platonov.bank.accountapi.controllers;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * {@link AccountControllerLoadTest} against ReactiveAccountController:
+ * {@code mvn test -Dload=true -Dtest=ReactiveAccountControllerLoadTest}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+@EnabledIfSystemProperty(named = "load", matches = "true")
+class ReactiveAccountControllerLoadTest extends AccountControllerLoadTest {
+
+    @Override
+    String stack() {
+        return "reactive";
+    }
+}
@@ -0,0 +1,59 @@
+package dev.platonov.bank.accountapi.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void minorUnits_RoundTrip() {
+        var amount = new BigDecimal("1000.25");
+
+        var minorUnits = Money.minorUnits(amount);
+
+        assertEquals(100025, minorUnits);
+        assertEquals(amount, Money.toBigDecimal(minorUnits));
+    }
+
+    @Test
+    void minorUnits_MoreFractionDigits_Throws() {
+        assertThrows(ArithmeticException.class, () -> Money.minorUnits(new BigDecimal("0.001")));
+        assertFalse(Money.isRepresentable(new BigDecimal("0.001")));
+    }
+
+    @Test
+    void minorUnits_OutOfRange_Throws() {
+        var tooBig = Money.MAX_AMOUNT.add(new BigDecimal("0.01"));
+
+        assertThrows(ArithmeticException.class, () -> Money.minorUnits(tooBig));
+        assertFalse(Money.isRepresentable(tooBig));
+        assertTrue(Money.isRepresentable(Money.MAX_AMOUNT));
+    }
+
+    @Test
+    void add_Overflow_Throws() {
+        var max = Money.minorUnits(Money.MAX_AMOUNT);
+
+        assertThrows(ArithmeticException.class, () -> Money.add(max, 1));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1));
+        assertEquals(Long.MAX_VALUE - 1, Money.subtract(max, 1));
+    }
+
+    @Test
+    void hasEnoughMoney_WithdrawingAllAvailable_True() {
+        assertTrue(Money.hasEnoughMoney(100, 100));
+        assertFalse(Money.hasEnoughMoney(100, 101));
+    }
+
+    @Test
+    void normalize_SameScaleAsReadFromDatabase() {
+        var saved = Reserve.deposit("id", 1, new BigDecimal(1000));
+        var read = Money.toBigDecimal(Money.minorUnits(saved.getAmount()));
+
+        assertEquals(read, saved.getAmount());
+        assertEquals(new BigDecimal("0.001"), Money.normalize(new BigDecimal("0.001")));
+    }
+}
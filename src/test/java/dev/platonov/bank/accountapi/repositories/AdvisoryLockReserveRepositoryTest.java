@@ -0,0 +1,20 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+@SpringBootTest(properties = "account-api.reserve.transaction.strategy=advisory-lock")
+@Sql({"/data.sql"})
+class AdvisoryLockReserveRepositoryTest extends TestWithPostgresContainer implements ThreadSafetyReserveRepositoryTest {
+
+    @Autowired
+    ReserveRepository repository;
+
+    @Override
+    public @NonNull ReserveRepository getRepository() {
+        return repository;
+    }
+}
@@ -0,0 +1,132 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.models.DeniedReserveEvent;
+import dev.platonov.bank.accountapi.models.DenyReason;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveOutboxEvent;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the relay is off, so the events stay unsent until the tests claim them
+@SpringBootTest(properties = "account-api.reserve.outbox.enabled=false")
+@Sql({"/data.sql"})
+class JdbiReserveOutboxRepositoryTest extends TestWithPostgresContainer {
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+    private static final int LIMIT = 100;
+    private static final Duration NO_LEASE = Duration.ZERO; // claimed again by the next call
+
+    @Autowired
+    ReserveOutboxRepository outboxRepository;
+
+    @Autowired
+    ReserveRepository reserveRepository;
+
+    @Test
+    void claimUnsent_PublishedReserve_ClaimedUntilMarkedSent() throws DeniedReserveException {
+        var reserve = Reserve.withdraw(getNewId(), ACCOUNT_ID, new BigDecimal("10.25"));
+        reserveRepository.saveIfAllowed(reserve, true);
+
+        var claimed = outboxRepository.claimUnsent(LIMIT, NO_LEASE);
+        assertEquals(1, claimed.size());
+        assertTrue(claimed.get(0).isPrepared());
+        assertEquals(reserve, claimed.get(0).getPrepared());
+
+        assertEquals(1, outboxRepository.markSent(ids(claimed)));
+        assertTrue(outboxRepository.claimUnsent(LIMIT, NO_LEASE).isEmpty());
+    }
+
+    @Test
+    void claimUnsent_Claimed_SkippedUntilLeaseIsOver() throws DeniedReserveException {
+        reserveRepository.saveIfAllowed(Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN), true);
+
+        assertEquals(1, outboxRepository.claimUnsent(LIMIT, Duration.ofHours(1)).size());
+        assertTrue(outboxRepository.claimUnsent(LIMIT, NO_LEASE).isEmpty());
+    }
+
+    @Test
+    void claimUnsent_NotMarkedSent_ClaimedAgainAfterLease() throws DeniedReserveException {
+        reserveRepository.saveIfAllowed(Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN), true);
+
+        var first = outboxRepository.claimUnsent(LIMIT, NO_LEASE); // the broker didn't ack them
+
+        assertEquals(ids(first), ids(outboxRepository.claimUnsent(LIMIT, NO_LEASE)));
+    }
+
+    @Test
+    void claimUnsent_BatchOfPublishedReserves_PreparedOnlyForSavedInIdOrder() {
+        var saved = List.of(Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN),
+                Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.ONE));
+        var denied = Reserve.withdraw(getNewId(), ACCOUNT_ID, new BigDecimal(1_000_000));
+        reserveRepository.saveAllIfAllowed(List.of(saved.get(0), denied, saved.get(1)), true);
+
+        var claimed = outboxRepository.claimUnsent(LIMIT, NO_LEASE);
+
+        assertEquals(saved, claimed.stream().map(ReserveOutboxEvent::getPrepared).collect(Collectors.toList()));
+        assertTrue(claimed.get(0).getId() < claimed.get(1).getId());
+    }
+
+    @Test
+    void claimUnsent_NotPublishedReserve_NoEvents() throws DeniedReserveException {
+        reserveRepository.saveIfAllowed(Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN));
+
+        assertTrue(outboxRepository.claimUnsent(LIMIT, NO_LEASE).isEmpty());
+    }
+
+    @Test
+    void claimUnsent_Denied_SameEvent() {
+        var option = ReserveOption.builder()
+                .id(getNewId())
+                .accountId(ACCOUNT_ID)
+                .reserveType(ReserveType.WITHDRAW)
+                .amount(new BigDecimal("0.001")) // not representable in minor units
+                .ttl(Duration.ofMinutes(5))
+                .build();
+        var event = DeniedReserveEvent.builder()
+                .reserveOption(option)
+                .reason(DenyReason.INVALID_AMOUNT)
+                .build();
+        outboxRepository.addDenied(List.of(event));
+
+        var claimed = outboxRepository.claimUnsent(LIMIT, NO_LEASE);
+
+        assertEquals(1, claimed.size());
+        assertFalse(claimed.get(0).isPrepared());
+        assertEquals(event, claimed.get(0).getDenied());
+    }
+
+    @Test
+    void purgeSent_SentBefore_PurgedOnlySent() throws DeniedReserveException {
+        reserveRepository.saveIfAllowed(Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN), true);
+        outboxRepository.markSent(ids(outboxRepository.claimUnsent(LIMIT, NO_LEASE)));
+        reserveRepository.saveIfAllowed(Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN), true);
+
+        assertEquals(0, outboxRepository.purgeSent(LocalDateTime.now().minusHours(1), LIMIT));
+        assertEquals(1, outboxRepository.purgeSent(LocalDateTime.now().plusSeconds(1), LIMIT));
+        assertEquals(1, outboxRepository.claimUnsent(LIMIT, NO_LEASE).size());
+    }
+
+    private static List<Long> ids(List<ReserveOutboxEvent> events) {
+        return events.stream()
+                .map(ReserveOutboxEvent::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,94 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReservePartition;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Sql({"/data.sql"})
+class JdbiReservePartitionRepositoryTest extends TestWithPostgresContainer {
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+    private static final LocalDate OLD_DAY = LocalDate.of(2000, 1, 1); // long before today's partitions
+
+    @Autowired
+    ReservePartitionRepository partitionRepository;
+
+    @Autowired
+    ReserveRepository reserveRepository;
+
+    @Test
+    void getPartitions_Today_Found() {
+        var now = LocalDateTime.now();
+
+        var partitions = partitionRepository.getPartitions();
+
+        assertTrue(partitions.stream().anyMatch(partition -> partition.getUpperBound().isAfter(now)));
+        for (int i = 1; i < partitions.size(); ++i) {
+            assertFalse(partitions.get(i).getUpperBound().isBefore(partitions.get(i - 1).getUpperBound()));
+        }
+    }
+
+    @Test
+    void createPartitions_Twice_CreatedOnce() {
+        var day = OLD_DAY.plusDays(7);
+
+        assertEquals(1, partitionRepository.createPartitions(day, 1));
+        assertEquals(0, partitionRepository.createPartitions(day, 1));
+
+        assertEquals(0, partitionRepository.drop(getPartition(day)));
+    }
+
+    @Test
+    void drop_OpenReserve_MovedToOverdue() throws DeniedReserveException {
+        partitionRepository.createPartitions(OLD_DAY, 1);
+        var reserve = Reserve.builder()
+                .id(getNewId())
+                .accountId(ACCOUNT_ID)
+                .amount(BigDecimal.TEN)
+                .type(ReserveType.WITHDRAW)
+                .createdAt(OLD_DAY.atStartOfDay(ZoneOffset.UTC).plusHours(12)
+                        .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime())
+                .expiresAt(LocalDateTime.now().plusDays(1)) // out of the background sweeper's reach
+                .build();
+        reserveRepository.saveIfAllowed(reserve);
+        var partition = getPartition(OLD_DAY);
+
+        assertEquals(1, partitionRepository.drop(partition));
+
+        assertTrue(partitionRepository.getPartitions().stream()
+                .noneMatch(p -> p.getName().equals(partition.getName())));
+        assertThrows(NotUniqueIdException.class, () -> reserveRepository.saveIfAllowed(
+                Reserve.withdraw(reserve.getId(), ACCOUNT_ID, BigDecimal.TEN))); // the id is still taken
+        assertTrue(reserveRepository.delete(reserve));
+    }
+
+    private ReservePartition getPartition(LocalDate day) {
+        var upperBound = day.plusDays(1).atStartOfDay(ZoneOffset.UTC)
+                .withZoneSameInstant(ZoneId.systemDefault())
+                .toLocalDateTime();
+        return partitionRepository.getPartitions().stream()
+                .filter(partition -> partition.getUpperBound().equals(upperBound))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+}
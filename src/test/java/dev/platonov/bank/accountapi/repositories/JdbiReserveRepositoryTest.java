@@ -4,10 +4,12 @@ import dev.platonov.bank.accountapi.TestWithPostgresContainer;
 import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
 import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
+import dev.platonov.bank.accountapi.models.DenyReason;
 import dev.platonov.bank.accountapi.models.Reserve;
 import dev.platonov.bank.accountapi.models.ReserveType;
 import lombok.NonNull;
 import lombok.SneakyThrows;
+import org.jdbi.v3.core.Jdbi;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -19,9 +21,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,6 +41,9 @@ class JdbiReserveRepositoryTest extends TestWithPostgresContainer implements Thr
     @Autowired
     ReserveRepository repository;
 
+    @Autowired
+    Jdbi jdbi;
+
     @ParameterizedTest
     @ValueSource(longs = {Long.MIN_VALUE, 1, Long.MAX_VALUE})
     void saveIfAllowed_RegularCase(long amountBasis) throws DeniedReserveException {
@@ -62,6 +70,16 @@ class JdbiReserveRepositoryTest extends TestWithPostgresContainer implements Thr
         assertThrows(NotUniqueIdException.class, () -> repository.saveIfAllowed(reserve));
     }
 
+    @Test
+    void saveIfAllowed_IdOfHandledReserve_Throws() throws DeniedReserveException {
+        var reserve = Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        repository.saveIfAllowed(reserve);
+        repository.delete(reserve);
+
+        assertThrows(NotUniqueIdException.class, () -> repository.saveIfAllowed(reserve));
+        assertFalse(repository.exists(reserve.getId()));
+    }
+
     @Test
     void saveIfAllowed_NoSuchAccountId_Throws() {
         var reserve = Reserve.deposit(getNewId(), NOT_EXISTING_ACCOUNT_ID, BigDecimal.TEN);
@@ -117,6 +135,46 @@ class JdbiReserveRepositoryTest extends TestWithPostgresContainer implements Thr
         assertThrows(DeniedReserveException.class, () -> repository.saveIfAllowed(extraReserve));
     }
 
+    @Test
+    void saveIfAllowed_WithdrawAfterDeletedWithdraw_HoldReleased() throws DeniedReserveException {
+        var reserve = Reserve.withdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT);
+        repository.saveIfAllowed(reserve);
+        assertTrue(repository.delete(reserve));
+
+        var nextReserve = Reserve.withdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT);
+        assertDoesNotThrow(() -> repository.saveIfAllowed(nextReserve));
+    }
+
+    @Test
+    void saveAllIfAllowed_IdTakenAtInsert_FundsGivenBackToLaterWithdraw() {
+        var takenId = getNewId(); // missed by the id filter, like an id taken by a concurrent insert
+        jdbi.useHandle(handle -> handle.createUpdate("insert into reserve_ids (id, created_at) values (:id, now())")
+                .bind("id", takenId)
+                .execute());
+        var lost = Reserve.withdraw(takenId, ACCOUNT_ID, ACCOUNT_AMOUNT);
+        var next = Reserve.withdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT);
+
+        var results = repository.saveAllIfAllowed(List.of(lost, next));
+
+        assertEquals(DenyReason.NOT_UNIQUE_ID, results.get(0).getDenyReason());
+        assertTrue(results.get(1).isReserved());
+        assertEquals(Optional.of(next), repository.get(next.getId()));
+        assertEquals(List.of(), repository.getInconsistentReservedWithdrawAccountIds());
+    }
+
+    @Test
+    void getInconsistentReservedWithdrawAccountIds_AfterSaveAndDelete_Empty() throws DeniedReserveException {
+        var halfAmount = ACCOUNT_AMOUNT.divide(new BigDecimal(2), RoundingMode.UP);
+
+        var first = Reserve.withdraw(getNewId(), ACCOUNT_ID, halfAmount);
+        repository.saveIfAllowed(first);
+        repository.saveIfAllowed(Reserve.withdraw(getNewId(), ACCOUNT_ID, halfAmount));
+        repository.saveIfAllowed(Reserve.deposit(getNewId(), ACCOUNT_ID, halfAmount));
+        repository.delete(first);
+
+        assertEquals(List.of(), repository.getInconsistentReservedWithdrawAccountIds());
+    }
+
     @Test
     void delete_NoReserve_False() {
         var reserve = Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
@@ -154,6 +212,103 @@ class JdbiReserveRepositoryTest extends TestWithPostgresContainer implements Thr
         assertTrue(repository.exists(reserve.getId()));
     }
 
+    // the times are ahead of the clock, so the background sweeper doesn't take the reserves first
+    @Test
+    void expireOverdue_OverdueWithdraw_DeletedAndHoldReleased() throws DeniedReserveException {
+        var now = LocalDateTime.now();
+        var withdraw = Reserve.builder()
+                .id(getNewId())
+                .accountId(ACCOUNT_ID)
+                .amount(ACCOUNT_AMOUNT)
+                .type(ReserveType.WITHDRAW)
+                .createdAt(now)
+                .expiresAt(now.plusHours(1))
+                .build();
+        repository.saveIfAllowed(withdraw);
+
+        var expired = repository.expireOverdue(now.plusHours(2), null, 10);
+
+        assertEquals(List.of(withdraw.getId()), expired.stream().map(Reserve::getId).collect(Collectors.toList()));
+        assertFalse(repository.exists(withdraw.getId()));
+        assertTrue(repository.getInconsistentReservedWithdrawAccountIds().isEmpty());
+        assertDoesNotThrow(() -> repository.saveIfAllowed(Reserve.withdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT)));
+    }
+
+    @Test
+    void expireOverdue_NotDue_Kept() throws DeniedReserveException {
+        var now = LocalDateTime.now();
+        var withdraw = Reserve.builder()
+                .id(getNewId())
+                .accountId(ACCOUNT_ID)
+                .amount(BigDecimal.TEN)
+                .type(ReserveType.WITHDRAW)
+                .createdAt(now)
+                .expiresAt(now.plusHours(1))
+                .build();
+        repository.saveIfAllowed(withdraw);
+
+        assertTrue(repository.expireOverdue(now.plusMinutes(30), Duration.ofMinutes(10), 10).isEmpty());
+        assertTrue(repository.exists(withdraw.getId()));
+    }
+
+    @Test
+    void expireOverdue_NoExpiresAt_ExpiresAfterDefaultTtl() throws DeniedReserveException {
+        var now = LocalDateTime.now();
+        var deposit = Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        repository.saveIfAllowed(deposit);
+
+        assertTrue(repository.expireOverdue(now.plusDays(365), null, 10).isEmpty());
+        assertTrue(repository.expireOverdue(now.plusMinutes(30), Duration.ofHours(1), 10).isEmpty());
+
+        var expired = repository.expireOverdue(now.plusHours(2), Duration.ofHours(1), 10);
+
+        assertEquals(List.of(deposit.getId()), expired.stream().map(Reserve::getId).collect(Collectors.toList()));
+        assertFalse(repository.exists(deposit.getId()));
+    }
+
+    @Test
+    void expireOverdue_MoreThanLimit_DeletesUpToLimit() throws DeniedReserveException {
+        var now = LocalDateTime.now();
+        for (int i = 0; i < 3; ++i) {
+            repository.saveIfAllowed(Reserve.withdraw(getNewId(), ACCOUNT_ID, BigDecimal.ONE));
+        }
+
+        assertEquals(2, repository.expireOverdue(now.plusHours(2), Duration.ofHours(1), 2).size());
+        assertEquals(1, repository.expireOverdue(now.plusHours(2), Duration.ofHours(1), 2).size());
+        assertTrue(repository.getInconsistentReservedWithdrawAccountIds().isEmpty());
+    }
+
+    @Test
+    void expireOverdue_AccountLockedByAnotherTransaction_SkippedWithoutBlocking() throws DeniedReserveException {
+        var now = LocalDateTime.now();
+        var withdraw = Reserve.builder()
+                .id(getNewId())
+                .accountId(ACCOUNT_ID)
+                .amount(BigDecimal.TEN)
+                .type(ReserveType.WITHDRAW)
+                .createdAt(now)
+                .expiresAt(now.plusHours(1))
+                .build();
+        repository.saveIfAllowed(withdraw);
+
+        try (var handle = jdbi.open()) { // as a reserve or another node's sweep in progress
+            handle.begin();
+            handle.createQuery("select id from accounts where id = :id for update")
+                    .bind("id", ACCOUNT_ID)
+                    .mapTo(Long.class)
+                    .one();
+
+            var skipped = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> repository.expireOverdue(now.plusHours(2), null, 10));
+            assertTrue(skipped.isEmpty());
+
+            handle.rollback();
+        }
+
+        var expired = repository.expireOverdue(now.plusHours(2), null, 10);
+        assertEquals(List.of(withdraw.getId()), expired.stream().map(Reserve::getId).collect(Collectors.toList()));
+    }
+
     private String getNewId() {
         return UUID.randomUUID().toString();
     }
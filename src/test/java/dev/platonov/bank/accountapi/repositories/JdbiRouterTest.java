@@ -0,0 +1,105 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.models.Account;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testcontainers.containers.JdbcDatabaseContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the replica is a standalone database, so the rows written to it directly show where the reads go
+@SpringBootTest(properties = {"account-api.replica.enabled=true", "account-api.replica.check-interval=1h"})
+@ContextConfiguration(initializers = {JdbiRouterTest.ReplicaInitializer.class})
+class JdbiRouterTest extends TestWithPostgresContainer {
+    private static final long REPLICA_ONLY_ACCOUNT_ID = 42;
+    protected static JdbcDatabaseContainer replicaContainer;
+
+    static {
+        replicaContainer = new PostgreSQLContainer("postgres:14.3-alpine3.16")
+                .withDatabaseName("accounts-api-replica")
+                .withUsername("my-name")
+                .withPassword("my-pass")
+                .withInitScript("schema.sql");
+        replicaContainer.start();
+    }
+
+    @Autowired
+    AccountRepository repository;
+
+    @Autowired
+    JdbiRouter router;
+
+    @Autowired
+    Jdbi jdbi;
+
+    @BeforeEach
+    void insertReplicaOnlyAccount() throws SQLException {
+        try (var connection = replicaContainer.createConnection("");
+             var statement = connection.createStatement()) {
+            statement.execute("insert into accounts values (" + REPLICA_ONLY_ACCOUNT_ID + ", 700, true, now(), now()) " +
+                    "on conflict do nothing");
+        }
+        router.checkReplica();
+    }
+
+    @Test
+    void getActiveSnapshot_HealthyReplica_ReadsReplica() {
+        assertTrue(router.isReplicaUsable());
+        assertEquals(0, router.getReplicaLagMillis());
+
+        var amount = repository.getActiveSnapshot(REPLICA_ONLY_ACCOUNT_ID).map(Account::getAmount);
+
+        assertEquals(Optional.of(new BigDecimal("7.00")), amount);
+    }
+
+    @Test
+    void getActive_HealthyReplica_ReadsPrimary() { // closing a just created account mustn't miss it
+        assertTrue(router.isReplicaUsable());
+
+        assertTrue(repository.getActive(REPLICA_ONLY_ACCOUNT_ID).isEmpty());
+    }
+
+    @Test
+    void incr_HealthyReplica_WritesPrimary() {
+        var saved = repository.save(new Account(BigDecimal.ONE));
+
+        var increased = repository.incr(saved.getId(), BigDecimal.ONE);
+
+        assertEquals(0, new BigDecimal(2).compareTo(increased.getAmount()));
+    }
+
+    @Test
+    void forReads_UnreachableReplica_Primary() throws Exception {
+        var unreachable = Jdbi.create("jdbc:postgresql://localhost:1/none", "none", "none");
+        try (var unhealthy = new JdbiRouter(jdbi, unreachable, null, Duration.ofSeconds(1), Duration.ofHours(1))) {
+            unhealthy.checkReplica();
+
+            assertFalse(unhealthy.isReplicaUsable());
+            assertSame(jdbi, unhealthy.forReads());
+        }
+    }
+
+    static class ReplicaInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+        public void initialize(ConfigurableApplicationContext configurableApplicationContext) {
+            TestPropertyValues.of(
+                    "account-api.replica.url=" + replicaContainer.getJdbcUrl(),
+                    "account-api.replica.username=" + replicaContainer.getUsername(),
+                    "account-api.replica.password=" + replicaContainer.getPassword()
+            ).applyTo(configurableApplicationContext.getEnvironment());
+        }
+    }
+}
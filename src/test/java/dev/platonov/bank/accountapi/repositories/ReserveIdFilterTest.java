@@ -0,0 +1,56 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReserveIdFilterTest {
+    private static final int EXPECTED_INSERTIONS = 10_000;
+    private static final double FPP = 0.01;
+
+    @Test
+    void mightContain_PutIds_True() {
+        var filter = ReserveIdFilter.create(EXPECTED_INSERTIONS, FPP);
+        var ids = new ArrayList<String>(EXPECTED_INSERTIONS);
+        for (int i = 0; i < EXPECTED_INSERTIONS; ++i) {
+            var id = UUID.randomUUID().toString();
+            ids.add(id);
+            filter.put(id);
+        }
+
+        for (var id : ids) {
+            assertTrue(filter.mightContain(id));
+        }
+    }
+
+    @Test
+    void mightContain_NewIds_FalsePositivesNearFpp() {
+        var filter = ReserveIdFilter.create(EXPECTED_INSERTIONS, FPP);
+        for (int i = 0; i < EXPECTED_INSERTIONS; ++i) {
+            filter.put(UUID.randomUUID().toString());
+        }
+
+        var falsePositives = 0;
+        var lookups = 10 * EXPECTED_INSERTIONS;
+        for (int i = 0; i < lookups; ++i) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                ++falsePositives;
+            }
+        }
+
+        assertTrue(falsePositives < 2 * FPP * lookups);
+        assertEquals((double) falsePositives / lookups, filter.getObservedFpp(), 1e-9);
+        assertEquals(FPP, filter.getExpectedFpp(), FPP / 2);
+    }
+
+    @Test
+    void mightContain_Disabled_AlwaysTrue() {
+        var filter = ReserveIdFilter.disabled();
+
+        assertTrue(filter.mightContain(UUID.randomUUID().toString()));
+        assertEquals(0, filter.getMemoryBytes());
+    }
+}
@@ -0,0 +1,74 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.models.Reserve;
+import lombok.NonNull;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "account-api.reserve.transaction.strategy=row-lock")
+@Sql({"/data.sql"})
+class RowLockReserveRepositoryTest extends TestWithPostgresContainer implements ThreadSafetyReserveRepositoryTest {
+
+    @Autowired
+    ReserveRepository repository;
+
+    @Autowired
+    ReserveTransactionStrategy transactionStrategy;
+
+    @Autowired
+    Jdbi jdbi;
+
+    @Override
+    public @NonNull ReserveRepository getRepository() {
+        return repository;
+    }
+
+    @Test
+    void saveIfAllowed_AccountLocked_WaitsAndRecordsLockWait() throws Exception {
+        var stats = transactionStrategy.getStats();
+        var lockWaits = stats.getLockWaits();
+        var withdraw = Reserve.withdraw(UUID.randomUUID().toString(), ACCOUNT_ID, BigDecimal.TEN);
+        CompletableFuture<Void> saving;
+
+        try (var locking = jdbi.open()) {
+            locking.begin();
+            locking.createQuery("select id from accounts where id = :id for update")
+                    .bind("id", ACCOUNT_ID)
+                    .mapTo(Long.class)
+                    .one();
+            saving = CompletableFuture.runAsync(() -> {
+                try {
+                    repository.saveIfAllowed(withdraw);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (jdbi.withHandle(handle -> handle.createQuery("select count(*) from pg_locks where not granted")
+                    .mapTo(Long.class)
+                    .one()) == 0) {
+                assertTrue(System.nanoTime() < deadline, "the reserve never waited for the account");
+                Thread.sleep(10);
+            }
+            locking.commit();
+        }
+
+        saving.get(10, TimeUnit.SECONDS);
+        assertEquals(Optional.of(withdraw), repository.get(withdraw.getId()));
+        assertEquals(1, stats.getLockWaits() - lockWaits);
+    }
+}
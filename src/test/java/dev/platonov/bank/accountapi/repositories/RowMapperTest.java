@@ -0,0 +1,75 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.reflect.ConstructorMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+@Sql({"/data.sql"})
+class RowMapperTest extends TestWithPostgresContainer {
+    private static final long ACCOUNT_ID = 1;
+
+    @Autowired
+    Jdbi jdbi;
+
+    @Autowired
+    ReserveRepository reserveRepository;
+
+    @Test
+    void accountRowMapper_SameAsConstructorMapper() {
+        var query = "select id, amount, active, created_at, updated_at, version from accounts order by id";
+
+        var indexed = jdbi.withHandle(handle -> handle.createQuery(query).map(new AccountRowMapper()).list());
+        var reflective = jdbi.withHandle(handle -> handle.createQuery(query)
+                .map(ConstructorMapper.of(Account.class))
+                .list());
+
+        assertFalse(indexed.isEmpty());
+        assertEquals(reflective, indexed);
+    }
+
+    @Test
+    void reserveRowMapper_SameAsConstructorMapper() throws DeniedReserveException {
+        reserveRepository.saveIfAllowed(Reserve.withdraw(UUID.randomUUID().toString(), ACCOUNT_ID, BigDecimal.TEN));
+        reserveRepository.saveIfAllowed(Reserve.deposit(UUID.randomUUID().toString(), ACCOUNT_ID, BigDecimal.ONE));
+        var query = "select id, account_id, amount, type, created_at, expires_at from reserves order by id";
+
+        var indexed = jdbi.withHandle(handle -> handle.createQuery(query).map(new ReserveRowMapper()).list());
+        var reflective = jdbi.withHandle(handle -> handle.createQuery(query)
+                .map(ConstructorMapper.of(Reserve.class))
+                .list());
+
+        assertEquals(2, indexed.size());
+        assertEquals(reflective, indexed);
+    }
+
+    @Test
+    void accountRowMapper_ColumnsInAnyOrder() {
+        var ordered = "select id, amount, active, created_at, updated_at, version from accounts where id = :id";
+        var shuffled = "select version, updated_at, created_at, active, amount, id from accounts where id = :id";
+
+        var expected = jdbi.withHandle(handle -> handle.createQuery(ordered)
+                .bind("id", ACCOUNT_ID)
+                .map(new AccountRowMapper())
+                .one());
+        var actual = jdbi.withHandle(handle -> handle.createQuery(shuffled)
+                .bind("id", ACCOUNT_ID)
+                .map(new AccountRowMapper())
+                .one());
+
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,129 @@
+package dev.platonov.bank.accountapi.repositories;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.exceptions.ReserveConflictException;
+import dev.platonov.bank.accountapi.models.Reserve;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "account-api.reserve.transaction.strategy=serializable",
+        "account-api.reserve.transaction.max-attempts=" + SerializableRetryReserveRepositoryTest.MAX_ATTEMPTS,
+        "account-api.reserve.transaction.backoff-base=1ms",
+        "account-api.reserve.transaction.backoff-max=5ms"})
+@Sql({"/data.sql"})
+class SerializableRetryReserveRepositoryTest extends TestWithPostgresContainer {
+    static final int MAX_ATTEMPTS = 3;
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+
+    @Autowired
+    ReserveRepository repository;
+
+    @Autowired
+    ReserveTransactionStrategy transactionStrategy;
+
+    @Autowired
+    Jdbi jdbi;
+
+    @Test
+    void inTransaction_ConflictOnEveryAttempt_ConflictAfterMaxAttempts() {
+        var stats = transactionStrategy.getStats();
+        var transactions = stats.getTransactions();
+        var retries = stats.getRetries();
+        var exhaustedRetries = stats.getExhaustedRetries();
+        var attempts = new AtomicInteger();
+
+        assertThrows(ReserveConflictException.class, () -> transactionStrategy.inTransaction(ACCOUNT_ID, handle -> {
+            attempts.incrementAndGet();
+            return updateAfterConcurrentUpdate(handle);
+        }));
+
+        assertEquals(MAX_ATTEMPTS, attempts.get());
+        assertEquals(MAX_ATTEMPTS, stats.getTransactions() - transactions);
+        assertEquals(MAX_ATTEMPTS - 1, stats.getRetries() - retries);
+        assertEquals(1, stats.getExhaustedRetries() - exhaustedRetries);
+    }
+
+    @Test
+    void inTransaction_ConflictOnFirstAttempt_RetriedAndCommitted() {
+        var stats = transactionStrategy.getStats();
+        var retries = stats.getRetries();
+        var exhaustedRetries = stats.getExhaustedRetries();
+        var attempts = new AtomicInteger();
+
+        var updated = transactionStrategy.inTransaction(ACCOUNT_ID, handle -> attempts.incrementAndGet() == 1
+                ? updateAfterConcurrentUpdate(handle)
+                : update(handle));
+
+        assertEquals(1, updated);
+        assertEquals(2, attempts.get());
+        assertEquals(1, stats.getRetries() - retries);
+        assertEquals(0, stats.getExhaustedRetries() - exhaustedRetries);
+    }
+
+    @Test
+    void saveIfAllowed_AccountUpdatedConcurrently_RetriedAndSaved() throws Exception {
+        var retries = transactionStrategy.getStats().getRetries();
+        var withdraw = Reserve.withdraw(UUID.randomUUID().toString(), ACCOUNT_ID, BigDecimal.TEN);
+        CompletableFuture<Void> saving;
+
+        try (var locking = jdbi.open()) {
+            locking.begin();
+            update(locking); // holds the account, so the reserve's first attempt waits for it and then conflicts
+            saving = CompletableFuture.runAsync(() -> {
+                try {
+                    repository.saveIfAllowed(withdraw);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+            awaitLockWait();
+            locking.commit();
+        }
+
+        saving.get(10, TimeUnit.SECONDS);
+        assertEquals(Optional.of(withdraw), repository.get(withdraw.getId()));
+        assertEquals(1, transactionStrategy.getStats().getRetries() - retries);
+    }
+
+    // the snapshot is taken by the first select, the account is updated and committed after it by another handle,
+    // so the update of this serializable transaction fails with a serialization failure
+    private int updateAfterConcurrentUpdate(Handle handle) {
+        handle.createQuery("select amount from accounts where id = :id")
+                .bind("id", ACCOUNT_ID)
+                .mapTo(Long.class)
+                .one();
+        jdbi.useHandle(this::update);
+        return update(handle);
+    }
+
+    private int update(Handle handle) {
+        return handle.createUpdate("update accounts set updated_at = now() where id = :id")
+                .bind("id", ACCOUNT_ID)
+                .execute();
+    }
+
+    private void awaitLockWait() throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jdbi.withHandle(handle -> handle.createQuery("select count(*) from pg_locks where not granted")
+                .mapTo(Long.class)
+                .one()) == 0) {
+            assertTrue(System.nanoTime() < deadline, "the reserve never waited for the account");
+            Thread.sleep(10);
+        }
+    }
+}
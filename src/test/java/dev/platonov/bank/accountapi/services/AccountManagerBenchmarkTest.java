@@ -0,0 +1,89 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.repositories.LedgerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the throughput of the managers on one hot account: {@code mvn test -Dbenchmark=true}.
+ */
+@Slf4j
+@SpringBootTest
+@Sql({"/data.sql"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AccountManagerBenchmarkTest extends TestWithPostgresContainer {
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+    private static final int THREAD_NUMBER = 8;
+    private static final int SAMPLES_NUMBER = 2_000;
+
+    @Autowired
+    AccountManager accountManager;
+
+    @Autowired
+    LedgerRepository ledgerRepository;
+
+    @Test
+    void compareBasicAndLedger() throws Exception {
+        var basic = run(accountManager);
+
+        try (var ledger = new LedgerAccountManager(ledgerRepository, 1000,
+                Duration.ofSeconds(5), Duration.ofMillis(100))) {
+            ledger.start();
+            var grouped = run(ledger); // every operation returns once persisted
+
+            log.info("basic: {} ops/s, ledger: {} ops/s", Math.round(basic), Math.round(grouped));
+            assertEquals(0, ledger.getUnpersistedCount());
+            assertTrue(ledger.getQuarantined().isEmpty());
+        }
+    }
+
+    private double run(AccountManager manager) throws InterruptedException, ExecutionException {
+        var executors = Executors.newFixedThreadPool(THREAD_NUMBER);
+        var futures = new ArrayList<Future<?>>(THREAD_NUMBER);
+        var start = System.nanoTime();
+
+        for (int i = 0; i < THREAD_NUMBER; ++i) {
+            futures.add(executors.submit((Callable<Void>) () -> {
+                for (int j = 0; j < SAMPLES_NUMBER; ++j) {
+                    var deposit = manager.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.ONE);
+                    manager.commit(deposit);
+                    var withdraw = manager.reserveWithdraw(getNewId(), ACCOUNT_ID, BigDecimal.ONE);
+                    manager.rollback(withdraw);
+                }
+                return null;
+            }));
+        }
+
+        for (var future : futures) {
+            future.get();
+        }
+        executors.shutdown();
+
+        return opsPerSecond(System.nanoTime() - start);
+    }
+
+    private static double opsPerSecond(long nanos) {
+        return 4.0 * THREAD_NUMBER * SAMPLES_NUMBER * 1e9 / nanos; // 4 operations a sample
+    }
+
+    private static String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -2,30 +2,22 @@ package dev.platonov.bank.accountapi.services;
 
 import dev.platonov.bank.accountapi.TestWithPostgresContainer;
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
-import dev.platonov.bank.accountapi.models.Account;
-import dev.platonov.bank.accountapi.models.Reserve;
-import dev.platonov.bank.accountapi.repositories.ReserveRepository;
-import dev.platonov.bank.accountapi.repositories.ThreadSafetyReserveRepositoryTest;
-import lombok.NonNull;
+import dev.platonov.bank.accountapi.models.ReserveHandleStatus;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.jdbc.Sql;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Optional;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.*;
 
-import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @SpringBootTest
 @Sql({"/data.sql"})
-class BasicAccountManagerTest extends TestWithPostgresContainer implements ThreadSafetyAccountManagerTest { // TODO: 27.06.2022 add common tests
-    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
-    private static final BigDecimal ACCOUNT_AMOUNT = new BigDecimal(1000);
-    private static final long NOT_EXISTING_ACCOUNT_ID = 0;
+class BasicAccountManagerTest extends TestWithPostgresContainer
+        implements CommonAccountManagerTest, ThreadSafetyAccountManagerTest {
     @Autowired
     AccountManager accountManager;
 
@@ -33,4 +25,20 @@ class BasicAccountManagerTest extends TestWithPostgresContainer implements Threa
     public AccountManager getAccountManager() {
         return accountManager;
     }
+
+    @Test
+    void commitAllAndRollbackAll_HandledBefore_AlreadyHandled() throws DeniedReserveException {
+        var accountId = CommonAccountManagerTest.ACCOUNT_ID;
+        var committed = accountManager.reserveDeposit(UUID.randomUUID().toString(), accountId, BigDecimal.TEN);
+        var rolledBack = accountManager.reserveWithdraw(UUID.randomUUID().toString(), accountId, BigDecimal.ONE);
+        accountManager.commit(committed);
+        accountManager.rollback(rolledBack);
+        var ids = List.of(committed.getId(), rolledBack.getId());
+
+        for (var results : List.of(accountManager.commitAll(ids), accountManager.rollbackAll(ids))) {
+            assertEquals(ReserveHandleStatus.ALREADY_HANDLED, results.get(0).getStatus());
+            assertEquals(committed, results.get(0).getReserve());
+            assertEquals(ReserveHandleStatus.ALREADY_HANDLED, results.get(1).getStatus());
+        }
+    }
 }
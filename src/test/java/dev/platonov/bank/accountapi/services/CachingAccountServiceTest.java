@@ -0,0 +1,81 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.repositories.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the cached accounts outlive the tests, so only a notification can evict them
+@SpringBootTest(properties = "account-api.account-cache.expire-after-write=1h")
+@Sql({"/data.sql"})
+class CachingAccountServiceTest extends TestWithPostgresContainer {
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+    private static final BigDecimal ACCOUNT_AMOUNT = new BigDecimal(1000);
+
+    @Autowired
+    CachingAccountService service;
+
+    @Autowired
+    AccountRepository repository; // writes behind the cache like another instance
+
+    @BeforeEach
+    void invalidate() {
+        service.invalidate(ACCOUNT_ID); // test/resources/data.sql is applied behind the cache
+    }
+
+    @Test
+    void getActiveSnapshot_SecondRead_Hit() {
+        var before = service.getStats();
+
+        var first = service.getActiveSnapshot(ACCOUNT_ID);
+        var second = service.getActiveSnapshot(ACCOUNT_ID);
+
+        var stats = service.getStats().minus(before);
+        assertEquals(1, stats.missCount());
+        assertEquals(1, stats.hitCount());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void incr_CachedAccount_UpdatedInPlace() {
+        service.getActiveSnapshot(ACCOUNT_ID);
+
+        var increased = service.incr(ACCOUNT_ID, BigDecimal.TEN);
+
+        assertEquals(Optional.of(increased), service.getActiveSnapshot(ACCOUNT_ID));
+        assertEquals(0, ACCOUNT_AMOUNT.add(BigDecimal.TEN).compareTo(increased.getAmount()));
+    }
+
+    @Test
+    void close_CachedAccount_Evicted() {
+        var account = service.getActiveSnapshot(ACCOUNT_ID).orElseThrow();
+
+        service.close(account);
+
+        assertEquals(Optional.empty(), service.getActiveSnapshot(ACCOUNT_ID));
+        assertEquals(Optional.empty(), service.getActive(ACCOUNT_ID).map(Account::getId));
+    }
+
+    @Test
+    void incr_ByAnotherInstance_EvictedByNotification() throws InterruptedException {
+        service.getActiveSnapshot(ACCOUNT_ID);
+
+        var increased = Optional.of(repository.incr(ACCOUNT_ID, BigDecimal.TEN));
+
+        var deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (!increased.equals(service.getActiveSnapshot(ACCOUNT_ID)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(increased, service.getActiveSnapshot(ACCOUNT_ID));
+    }
+}
@@ -0,0 +1,169 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
+import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.DenyReason;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveHandleResult;
+import dev.platonov.bank.accountapi.models.ReserveHandleStatus;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public interface CommonAccountManagerTest {
+    long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+    BigDecimal ACCOUNT_AMOUNT = new BigDecimal(1000); // sync with test/resources/data.sql
+    long NOT_EXISTING_ACCOUNT_ID = 0;
+
+    AccountManager getAccountManager();
+
+    @Test
+    default void commit_Deposit_ReturnsIncreasedAccount() throws DeniedReserveException {
+        var reserve = getAccountManager().reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+
+        var account = getAccountManager().commit(reserve);
+
+        assertEquals(0, ACCOUNT_AMOUNT.add(BigDecimal.TEN).compareTo(account.getAmount()));
+        assertEquals(Optional.of(account), getAccountManager().getActiveAccount(ACCOUNT_ID));
+    }
+
+    @Test
+    default void commit_Withdraw_ReturnsDecreasedAccountAndReleasesHold() throws DeniedReserveException {
+        var reserve = getAccountManager().reserveWithdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT);
+
+        var account = getAccountManager().commit(reserve);
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(account.getAmount()));
+        assertThrows(DeniedReserveException.class,
+                () -> getAccountManager().reserveWithdraw(getNewId(), ACCOUNT_ID, BigDecimal.ONE));
+    }
+
+    @Test
+    default void commit_AlreadyCommitted_Throws() throws DeniedReserveException {
+        var reserve = getAccountManager().reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        getAccountManager().commit(reserve);
+
+        assertThrows(AlreadyHandledReserveException.class, () -> getAccountManager().commit(reserve));
+    }
+
+    @Test
+    default void commit_NoSuchAccount_Throws() {
+        var reserve = Reserve.deposit(getNewId(), NOT_EXISTING_ACCOUNT_ID, BigDecimal.TEN);
+
+        assertThrows(AccountNotFoundException.class, () -> getAccountManager().commit(reserve));
+    }
+
+    @Test
+    default void rollback_AlreadyRolledBack_Throws() throws DeniedReserveException {
+        var reserve = getAccountManager().reserveWithdraw(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        getAccountManager().rollback(reserve);
+
+        assertThrows(AlreadyHandledReserveException.class, () -> getAccountManager().rollback(reserve));
+        var amount = getAccountManager().getActiveAccount(ACCOUNT_ID)
+                .map(Account::getAmount)
+                .orElseThrow();
+        assertEquals(0, ACCOUNT_AMOUNT.compareTo(amount));
+    }
+
+    @Test
+    default void reserveAll_MixedBatch_ResultPerOption() {
+        var duplicateId = getNewId();
+        var options = List.of(
+                option(getNewId(), ACCOUNT_ID, ReserveType.DEPOSIT, BigDecimal.TEN),
+                option(getNewId(), ACCOUNT_ID, ReserveType.WITHDRAW, ACCOUNT_AMOUNT),
+                option(getNewId(), ACCOUNT_ID, ReserveType.WITHDRAW, BigDecimal.ONE),
+                option(getNewId(), ACCOUNT_ID, ReserveType.WITHDRAW, BigDecimal.ZERO),
+                option(duplicateId, ACCOUNT_ID, ReserveType.DEPOSIT, BigDecimal.ONE),
+                option(duplicateId, ACCOUNT_ID, ReserveType.DEPOSIT, BigDecimal.ONE),
+                option(getNewId(), NOT_EXISTING_ACCOUNT_ID, ReserveType.DEPOSIT, BigDecimal.ONE)
+        );
+
+        var results = getAccountManager().reserveAll(options);
+
+        assertEquals(options.size(), results.size());
+        assertTrue(results.get(0).isReserved());
+        assertTrue(results.get(1).isReserved());
+        assertEquals(DenyReason.NOT_ENOUGH_MONEY, results.get(2).getDenyReason());
+        assertEquals(DenyReason.EMPTY_RESERVE, results.get(3).getDenyReason());
+        assertTrue(results.get(4).isReserved());
+        assertEquals(DenyReason.NOT_UNIQUE_ID, results.get(5).getDenyReason());
+        assertEquals(DenyReason.ACCOUNT_NOT_FOUND, results.get(6).getDenyReason());
+
+        for (int i = 0; i < options.size(); ++i) {
+            assertEquals(options.get(i).getId(), results.get(i).getId());
+        }
+        assertEquals(Optional.of(results.get(1).getReserve()), getAccountManager().getReserve(options.get(1).getId()));
+    }
+
+    @Test
+    default void reserve_InvalidTtl_Denied() {
+        for (var ttl : List.of(Duration.ZERO, Duration.ofSeconds(-1), Duration.ofSeconds(Long.MAX_VALUE))) {
+            var option = ReserveOption.builder()
+                    .id(getNewId())
+                    .accountId(ACCOUNT_ID)
+                    .reserveType(ReserveType.DEPOSIT)
+                    .amount(BigDecimal.ONE)
+                    .ttl(ttl)
+                    .build();
+
+            var e = assertThrows(DeniedReserveException.class, () -> getAccountManager().reserve(option));
+            assertEquals(DenyReason.INVALID_TTL, e.getDenyReason());
+            assertEquals(DenyReason.INVALID_TTL, getAccountManager().reserveAll(List.of(option)).get(0).getDenyReason());
+        }
+    }
+
+    @Test
+    default void commitAll_MixedIds_StatusPerIdAndNetDeltaApplied() throws DeniedReserveException {
+        var deposit = getAccountManager().reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        var withdraw = getAccountManager().reserveWithdraw(getNewId(), ACCOUNT_ID, BigDecimal.ONE);
+        var missingId = getNewId();
+
+        var results = getAccountManager().commitAll(List.of(deposit.getId(), withdraw.getId(), deposit.getId(), missingId));
+
+        assertEquals(List.of(ReserveHandleStatus.HANDLED, ReserveHandleStatus.HANDLED,
+                        ReserveHandleStatus.ALREADY_HANDLED, ReserveHandleStatus.NOT_FOUND),
+                results.stream().map(ReserveHandleResult::getStatus).collect(Collectors.toList()));
+        assertEquals(deposit, results.get(0).getReserve());
+
+        var amount = getAccountManager().getActiveAccount(ACCOUNT_ID)
+                .map(Account::getAmount)
+                .orElseThrow();
+        assertEquals(0, ACCOUNT_AMOUNT.add(new BigDecimal(9)).compareTo(amount));
+    }
+
+    @Test
+    default void rollbackAll_Withdraws_HoldsReleased() throws DeniedReserveException {
+        var first = getAccountManager().reserveWithdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT);
+        var missingId = getNewId();
+
+        var results = getAccountManager().rollbackAll(List.of(first.getId(), missingId));
+
+        assertEquals(List.of(ReserveHandleStatus.HANDLED, ReserveHandleStatus.NOT_FOUND),
+                results.stream().map(ReserveHandleResult::getStatus).collect(Collectors.toList()));
+        assertDoesNotThrow(() -> getAccountManager().reserveWithdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT));
+    }
+
+    private static ReserveOption option(String id, long accountId, ReserveType type, BigDecimal amount) {
+        return ReserveOption.builder()
+                .id(id)
+                .accountId(accountId)
+                .reserveType(type)
+                .amount(amount)
+                .build();
+    }
+
+    private static String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,116 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives a slow database over HTTP with many clients at once when Tomcat has fewer threads than the JDBC pool
+ * has connections: {@code mvn test -Dbenchmark=true -Dtest='*ExecutionModeBenchmarkTest'} runs this class
+ * on platform threads and, on JDK 21+, {@link VirtualThreadExecutionModeBenchmarkTest} on virtual ones.
+ * Every request reads the account in a query held by pg_sleep, so the platform run is limited by the threads
+ * blocked on it and the virtual one by the pool.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=" + ExecutionModeBenchmarkTest.PLATFORM_THREADS,
+        "spring.datasource.hikari.maximum-pool-size=" + ExecutionModeBenchmarkTest.POOL_SIZE,
+        "account-api.account-cache.enabled=false"})
+@Import(ExecutionModeBenchmarkTest.SlowAccountController.class)
+@Sql({"/data.sql"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExecutionModeBenchmarkTest extends TestWithPostgresContainer {
+    static final int PLATFORM_THREADS = 8;
+    static final int POOL_SIZE = 64;
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+    private static final int CLIENTS = 256; // requests in flight
+    private static final int WARMUP_REQUESTS = 1_000;
+    private static final int REQUESTS = 10_000;
+    private static final double SLOW_QUERY_SECONDS = 0.01;
+
+    @LocalServerPort
+    int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void requestsPerSecond() throws InterruptedException {
+        run(WARMUP_REQUESTS);
+        var start = System.nanoTime();
+        var errors = run(REQUESTS);
+        var elapsedNanos = System.nanoTime() - start;
+
+        log.info("{} threads: {} requests, {} clients, {} Tomcat threads, {} JDBC connections, {} ms queries: {} req/s",
+                mode(), REQUESTS, CLIENTS, PLATFORM_THREADS, POOL_SIZE, SLOW_QUERY_SECONDS * 1000,
+                String.format("%.0f", REQUESTS * 1e9 / elapsedNanos));
+        assertEquals(0, errors);
+    }
+
+    String mode() {
+        return "platform";
+    }
+
+    // keeps CLIENTS requests in flight, returns the number of failed ones
+    private long run(int requests) throws InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/slow-accounts/" + ACCOUNT_ID))
+                .GET()
+                .build();
+        var inFlight = new Semaphore(CLIENTS);
+        var errors = new AtomicLong();
+        var responses = new ArrayList<CompletableFuture<?>>(requests);
+
+        for (int i = 0; i < requests; ++i) {
+            inFlight.acquire();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        inFlight.release();
+                        if (e != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    }));
+        }
+
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        return errors.get();
+    }
+
+    // only in this benchmark: the account amount in minor units from a database answering in SLOW_QUERY_SECONDS
+    @RestController
+    static class SlowAccountController {
+        private final Jdbi jdbi;
+
+        SlowAccountController(Jdbi jdbi) {
+            this.jdbi = jdbi;
+        }
+
+        @GetMapping("/slow-accounts/{id}")
+        long getAmount(@PathVariable("id") long id) {
+            return jdbi.withHandle(handle -> handle.createQuery("select a.amount from accounts a " +
+                            "cross join pg_sleep(:seconds) where a.id = :id and a.active")
+                    .bind("seconds", SLOW_QUERY_SECONDS)
+                    .bind("id", id)
+                    .mapTo(Long.class)
+                    .one());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.models.*;
+import lombok.NonNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"account-api.lanes.count=4", "account-api.lanes.queue-capacity=16"})
+@Sql({"/data.sql"})
+class LaneAccountManagerTest extends TestWithPostgresContainer implements ThreadSafetyAccountManagerTest {
+
+    @Autowired
+    AsyncAccountManager asyncAccountManager;
+
+    @Autowired
+    AccountManager accountManager;
+
+    @Test
+    void getQueueDepths_OneDepthPerLane() {
+        assertEquals(List.of(0, 0, 0, 0), asyncAccountManager.getQueueDepths());
+    }
+
+    @Test
+    void reserveDeposit_FullLane_Rejected() throws InterruptedException {
+        var blocked = new CountDownLatch(1);
+        var blocking = new BlockingAccountManager(accountManager, blocked);
+
+        try (var manager = new LaneAccountManager(blocking, 1, 1)) {
+            var running = manager.getActiveAccount(ACCOUNT_ID);
+            blocking.started.await();
+            var queued = manager.getActiveAccount(ACCOUNT_ID);
+
+            assertEquals(List.of(1), manager.getQueueDepths());
+            var rejected = manager.reserveDeposit(UUID.randomUUID().toString(), ACCOUNT_ID, BigDecimal.ONE);
+            var e = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+            blocked.countDown();
+            assertTrue(running.join().isPresent());
+            assertTrue(queued.join().isPresent());
+        }
+    }
+
+    @Test
+    void reserveWithdraw_NotEnoughMoney_CompletedWithDeniedReserve() {
+        var reserve = asyncAccountManager.reserveWithdraw(UUID.randomUUID().toString(), ACCOUNT_ID,
+                new BigDecimal(Long.MAX_VALUE));
+
+        var e = assertThrows(CompletionException.class, reserve::join);
+        assertInstanceOf(DeniedReserveException.class, e.getCause());
+    }
+
+    @Override
+    public AccountManager getAccountManager() {
+        return new JoiningAccountManager(asyncAccountManager, accountManager);
+    }
+
+    // runs the contract tests through the lanes
+    private static class JoiningAccountManager implements AccountManager {
+        private final AsyncAccountManager asyncManager;
+        private final AccountManager manager;
+
+        JoiningAccountManager(AsyncAccountManager asyncManager, AccountManager manager) {
+            this.asyncManager = asyncManager;
+            this.manager = manager;
+        }
+
+        @Override
+        public @NonNull Optional<Account> getActiveAccount(long id) {
+            return asyncManager.getActiveAccount(id).join();
+        }
+
+        @Override
+        public @NonNull Optional<Reserve> getReserve(@NonNull String id) {
+            return manager.getReserve(id);
+        }
+
+        @Override
+        public @NonNull Reserve reserve(@NonNull ReserveOption reserveOption) throws DeniedReserveException {
+            return joinReserve(asyncManager.reserve(reserveOption));
+        }
+
+        @Override
+        public @NonNull List<ReserveResult> reserveAll(@NonNull List<ReserveOption> reserveOptions) {
+            return manager.reserveAll(reserveOptions);
+        }
+
+        @Override
+        public @NonNull Reserve reserveAndPublish(@NonNull ReserveOption reserveOption) throws DeniedReserveException {
+            return joinReserve(asyncManager.reserveAndPublish(reserveOption));
+        }
+
+        @Override
+        public @NonNull List<ReserveResult> reserveAllAndPublish(@NonNull List<ReserveOption> reserveOptions) {
+            return manager.reserveAllAndPublish(reserveOptions);
+        }
+
+        @Override
+        public @NonNull Reserve reserveDeposit(@NonNull String id, long accountId,
+                                               @NonNull BigDecimal amount) throws DeniedReserveException {
+            return joinReserve(asyncManager.reserveDeposit(id, accountId, amount));
+        }
+
+        @Override
+        public @NonNull Reserve reserveWithdraw(@NonNull String id, long accountId,
+                                                @NonNull BigDecimal amount) throws DeniedReserveException {
+            return joinReserve(asyncManager.reserveWithdraw(id, accountId, amount));
+        }
+
+        @Override
+        public @NonNull Account commit(@NonNull Reserve reserve) {
+            return asyncManager.commit(reserve).join();
+        }
+
+        @Override
+        public void rollback(@NonNull Reserve reserve) {
+            asyncManager.rollback(reserve).join();
+        }
+
+        @Override
+        public @NonNull List<ReserveHandleResult> commitAll(@NonNull Collection<String> reserveIds) {
+            return manager.commitAll(reserveIds);
+        }
+
+        @Override
+        public @NonNull List<ReserveHandleResult> rollbackAll(@NonNull Collection<String> reserveIds) {
+            return manager.rollbackAll(reserveIds);
+        }
+
+        private static Reserve joinReserve(CompletableFuture<Reserve> reserve) throws DeniedReserveException {
+            try {
+                return reserve.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof DeniedReserveException) {
+                    throw (DeniedReserveException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    // holds the lane on getActiveAccount until released
+    private static class BlockingAccountManager extends JoiningAccountManager {
+        final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released;
+
+        BlockingAccountManager(AccountManager manager, CountDownLatch released) {
+            super(new LaneAccountManager(manager, 0, 1), manager);
+            this.released = released;
+        }
+
+        @Override
+        public @NonNull Optional<Account> getActiveAccount(long id) {
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getActiveAccount(id);
+        }
+    }
+}
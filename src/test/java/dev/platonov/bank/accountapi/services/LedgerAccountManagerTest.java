@@ -0,0 +1,106 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Reserve;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "account-api.manager=ledger")
+@Sql({"/data.sql"})
+class LedgerAccountManagerTest extends TestWithPostgresContainer
+        implements CommonAccountManagerTest, ThreadSafetyAccountManagerTest {
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+    private static final BigDecimal ACCOUNT_AMOUNT = new BigDecimal(1000);
+
+    @Autowired
+    LedgerAccountManager ledger;
+
+    @Autowired
+    AccountService accountService;
+
+    @Autowired
+    ReserveService reserveService;
+
+    @BeforeEach
+    void reload() {
+        ledger.reload(); // test/resources/data.sql is applied behind the ledger
+    }
+
+    @AfterEach
+    void flush() {
+        ledger.flush();
+    }
+
+    @Test
+    void flush_CommittedAndOpenReserves_Persisted() throws DeniedReserveException {
+        var committed = ledger.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        var account = ledger.commit(committed);
+        var open = ledger.reserveWithdraw(getNewId(), ACCOUNT_ID, BigDecimal.ONE);
+
+        ledger.flush();
+
+        assertEquals(0, ledger.getUnpersistedCount());
+        assertEquals(Optional.of(account.getAmount()), accountService.getActive(ACCOUNT_ID).map(Account::getAmount));
+        assertTrue(reserveService.get(committed.getId()).isEmpty());
+        assertEquals(Optional.of(open.getId()), reserveService.get(open.getId()).map(Reserve::getId));
+        assertTrue(reserveService.getInconsistentReservedWithdrawAccountIds().isEmpty());
+    }
+
+    @Test
+    void closeAccount_Active_ClosedInLedgerAndDatabase() {
+        var closed = ledger.closeAccount(ACCOUNT_ID);
+
+        assertTrue(closed.isPresent());
+        assertFalse(closed.get().isActive());
+        assertTrue(accountService.getActive(ACCOUNT_ID).isEmpty());
+        assertTrue(ledger.getActiveAccount(ACCOUNT_ID).isEmpty());
+        assertThrows(AccountNotFoundException.class,
+                () -> ledger.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.ONE));
+        assertTrue(ledger.closeAccount(ACCOUNT_ID).isEmpty());
+    }
+
+    @Test
+    void reserve_IdOfCommittedReserve_NotUniqueLikeBasic() throws DeniedReserveException {
+        var committed = ledger.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        ledger.commit(committed);
+
+        assertThrows(NotUniqueIdException.class,
+                () -> ledger.reserveDeposit(committed.getId(), ACCOUNT_ID, BigDecimal.ONE));
+        assertTrue(ledger.getReserve(committed.getId()).isEmpty());
+        assertTrue(reserveService.getInconsistentReservedWithdrawAccountIds().isEmpty());
+    }
+
+    @Test
+    void reload_OpenWithdraw_HoldRebuilt() throws DeniedReserveException {
+        var open = ledger.reserveWithdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT);
+
+        ledger.reload();
+
+        assertEquals(Optional.of(open.getId()), ledger.getReserve(open.getId()).map(Reserve::getId));
+        assertThrows(DeniedReserveException.class,
+                () -> ledger.reserveWithdraw(getNewId(), ACCOUNT_ID, BigDecimal.ONE));
+    }
+
+    @Override
+    public AccountManager getAccountManager() {
+        return ledger;
+    }
+
+    private String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,235 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.exceptions.AccountNotFoundException;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
+import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.DenyReason;
+import dev.platonov.bank.accountapi.models.LedgerEntry;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import dev.platonov.bank.accountapi.repositories.LedgerRepository;
+import lombok.NonNull;
+import org.jdbi.v3.core.ConnectionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerAccountManagerWriterTest {
+    private static final long ACCOUNT_ID = 1;
+    private static final BigDecimal ACCOUNT_AMOUNT = new BigDecimal(1000);
+    private static final String REJECTED_ID = "rejected";
+
+    private final FakeLedgerRepository repository = new FakeLedgerRepository();
+    private final LedgerAccountManager ledger = new LedgerAccountManager(repository, 100,
+            Duration.ofSeconds(5), Duration.ofMillis(10));
+
+    @AfterEach
+    void close() {
+        ledger.close();
+    }
+
+    @Test
+    void reserve_Returned_AlreadyPersisted() throws DeniedReserveException {
+        ledger.start();
+
+        var reserve = ledger.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+
+        assertEquals(Set.of(reserve.getId()), repository.getSavedIds());
+        assertEquals(0, ledger.getUnpersistedCount());
+    }
+
+    @Test
+    void reserveAll_RejectedEntry_OnlyItNotPersistedAndReverted() {
+        ledger.start();
+        var options = List.of(option(getNewId()), option(REJECTED_ID), option(getNewId()));
+
+        var results = ledger.reserveAll(options);
+
+        assertTrue(results.get(0).isReserved());
+        assertEquals(DenyReason.NOT_PERSISTED, results.get(1).getDenyReason());
+        assertTrue(results.get(2).isReserved());
+        assertTrue(ledger.getReserve(REJECTED_ID).isEmpty());
+        assertEquals(Set.of(options.get(0).getId(), options.get(2).getId()), repository.getSavedIds());
+        assertEquals(List.of(REJECTED_ID), ledger.getQuarantined().stream()
+                .map(entry -> entry.getSavedReserve().getId())
+                .collect(Collectors.toList()));
+        assertEquals(0, ledger.getUnpersistedCount());
+    }
+
+    @Test
+    void reserveWithdraw_Rejected_HoldReleased() throws DeniedReserveException {
+        ledger.start();
+
+        assertThrows(IllegalStateException.class,
+                () -> ledger.reserveWithdraw(REJECTED_ID, ACCOUNT_ID, ACCOUNT_AMOUNT));
+
+        assertDoesNotThrow(() -> ledger.reserveWithdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT));
+    }
+
+    @Test
+    void commit_Rejected_AmountRevertedAndReserveOpenAgain() throws DeniedReserveException {
+        ledger.start();
+        var reserve = ledger.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        repository.rejectedCommitId = reserve.getId();
+
+        assertThrows(IllegalStateException.class, () -> ledger.commit(reserve));
+
+        assertEquals(0, ACCOUNT_AMOUNT.compareTo(ledger.getActiveAccount(ACCOUNT_ID).orElseThrow().getAmount()));
+        assertTrue(ledger.getReserve(reserve.getId()).isPresent());
+    }
+
+    @Test
+    void reserve_IdOfCommittedReserve_NotUniqueAndReverted() throws DeniedReserveException {
+        ledger.start();
+        var committed = ledger.reserveWithdraw(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+        ledger.commit(committed);
+
+        assertThrows(NotUniqueIdException.class,
+                () -> ledger.reserveWithdraw(committed.getId(), ACCOUNT_ID, BigDecimal.TEN));
+        assertEquals(DenyReason.NOT_UNIQUE_ID, ledger.reserveAll(List.of(option(committed.getId())))
+                .get(0).getDenyReason());
+
+        assertTrue(ledger.getReserve(committed.getId()).isEmpty());
+        assertDoesNotThrow(() -> ledger.reserveWithdraw(getNewId(), ACCOUNT_ID, new BigDecimal(990)));
+    }
+
+    @Test
+    void reserve_DatabaseUnreachable_RetriedUntilPersisted() throws DeniedReserveException {
+        repository.unreachableTimes.set(3);
+        ledger.start();
+
+        var reserve = ledger.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN);
+
+        assertEquals(Set.of(reserve.getId()), repository.getSavedIds());
+        assertTrue(ledger.getQuarantined().isEmpty());
+    }
+
+    @Test
+    void reload_EntryBeingRetried_PersistedBeforeStateSwapped() throws Exception {
+        repository.unreachableTimes.set(10);
+        ledger.start();
+        var id = getNewId();
+        var reserving = CompletableFuture.runAsync(() -> {
+            try {
+                ledger.reserveDeposit(id, ACCOUNT_ID, BigDecimal.TEN);
+            } catch (DeniedReserveException e) {
+                throw new CompletionException(e);
+            }
+        });
+        while (ledger.getUnpersistedCount() == 0) {
+            Thread.onSpinWait();
+        }
+
+        ledger.reload();
+
+        assertEquals(Set.of(id), repository.getSavedIds());
+        assertEquals(0, ledger.getUnpersistedCount());
+        reserving.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void closeAccount_Active_PersistedInactiveAndDeniesReserves() {
+        ledger.start();
+
+        assertTrue(ledger.closeAccount(ACCOUNT_ID).isPresent());
+
+        assertFalse(repository.appended.get(0).getAccount().isActive());
+        assertThrows(AccountNotFoundException.class,
+                () -> ledger.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN));
+    }
+
+    private static ReserveOption option(String id) {
+        return ReserveOption.builder()
+                .id(id)
+                .accountId(ACCOUNT_ID)
+                .reserveType(ReserveType.DEPOSIT)
+                .amount(BigDecimal.ONE)
+                .build();
+    }
+
+    private static String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+
+    // rejects the batches saving the reserve REJECTED_ID or committing rejectedCommitId like a constraint would,
+    // appends the others but the reserves with ids saved before, like reserve_ids
+    private static class FakeLedgerRepository implements LedgerRepository {
+        private final List<LedgerEntry> appended = new CopyOnWriteArrayList<>();
+        private final Set<String> reserveIds = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger unreachableTimes = new AtomicInteger();
+        private volatile String rejectedCommitId;
+
+        @Override
+        public @NonNull List<Account> getAccounts() {
+            var now = LocalDateTime.now();
+            return List.of(Account.builder()
+                    .id(ACCOUNT_ID)
+                    .amount(ACCOUNT_AMOUNT)
+                    .active(true)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+
+        @Override
+        public @NonNull Optional<Account> getAccount(long id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public @NonNull List<Reserve> getReserves() {
+            return List.of();
+        }
+
+        @Override
+        public @NonNull Set<String> append(@NonNull List<LedgerEntry> entries) {
+            if (unreachableTimes.getAndUpdate(times -> Math.max(times - 1, 0)) > 0) {
+                throw new ConnectionException(new SQLTransientConnectionException("connection is not available"));
+            }
+            if (entries.stream().anyMatch(entry -> entry.getSavedReserve() != null
+                    && REJECTED_ID.equals(entry.getSavedReserve().getId())
+                    || entry.getDeletedReserve() != null
+                    && entry.getDeletedReserve().getId().equals(rejectedCommitId))) {
+                throw new IllegalStateException("rejected");
+            }
+            var taken = new HashSet<String>();
+            for (var entry : entries) {
+                if (entry.getSavedReserve() != null && !reserveIds.add(entry.getSavedReserve().getId())) {
+                    taken.add(entry.getSavedReserve().getId());
+                    continue;
+                }
+                appended.add(entry);
+            }
+            return taken;
+        }
+
+        Set<String> getSavedIds() {
+            return appended.stream()
+                    .map(LedgerEntry::getSavedReserve)
+                    .filter(Objects::nonNull)
+                    .map(Reserve::getId)
+                    .collect(Collectors.toSet());
+        }
+    }
+}
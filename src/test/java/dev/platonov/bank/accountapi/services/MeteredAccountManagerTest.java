@@ -0,0 +1,103 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.NotUniqueIdException;
+import dev.platonov.bank.accountapi.models.DenyReason;
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Sql({"/data.sql"})
+class MeteredAccountManagerTest extends TestWithPostgresContainer {
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+
+    @Autowired
+    AccountManager accountManager;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Test
+    void accountManager_IsMetered() {
+        assertInstanceOf(MeteredAccountManager.class, accountManager);
+    }
+
+    @Test
+    void commit_RecordsLatencyAndRoundTrips() throws DeniedReserveException {
+        var calls = registry.get("account.manager.calls").tag("method", "commit").timer();
+        var roundTrips = registry.get("account.manager.db.round.trips").tag("method", "commit").summary();
+        var callsBefore = calls.count();
+        var roundTripsBefore = roundTrips.totalAmount();
+
+        accountManager.commit(accountManager.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN));
+
+        assertEquals(callsBefore + 1, calls.count());
+        assertTrue(roundTrips.totalAmount() > roundTripsBefore);
+    }
+
+    @Test
+    void reserveWithdraw_NotEnoughMoney_CountsDenial() {
+        var denials = registry.get("account.manager.denials")
+                .tag("reason", DenyReason.NOT_ENOUGH_MONEY.name())
+                .counter();
+        var before = denials.count();
+
+        assertThrows(DeniedReserveException.class,
+                () -> accountManager.reserveWithdraw(getNewId(), ACCOUNT_ID, new BigDecimal(1_000_000)));
+
+        assertEquals(before + 1, denials.count());
+    }
+
+    @Test
+    void reserve_NotUniqueIdOnBothPaths_CountsSameDenial() throws DeniedReserveException {
+        var denials = registry.get("account.manager.denials")
+                .tag("reason", DenyReason.NOT_UNIQUE_ID.name())
+                .counter();
+        var before = denials.count();
+        var reserve = accountManager.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.ONE);
+        var option = ReserveOption.builder()
+                .id(reserve.getId())
+                .accountId(ACCOUNT_ID)
+                .reserveType(ReserveType.DEPOSIT)
+                .amount(BigDecimal.ONE)
+                .build();
+
+        assertThrows(NotUniqueIdException.class, () -> accountManager.reserve(option));
+        var results = accountManager.reserveAll(List.of(option));
+
+        assertEquals(DenyReason.NOT_UNIQUE_ID, results.get(0).getDenyReason());
+        assertEquals(before + 2, denials.count());
+    }
+
+    @Test
+    void rollback_Twice_CountsAlreadyHandled() throws DeniedReserveException {
+        var alreadyHandled = registry.get("account.manager.errors")
+                .tag("exception", AlreadyHandledReserveException.class.getSimpleName())
+                .counter();
+        var before = alreadyHandled.count();
+        var reserve = accountManager.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.ONE);
+
+        accountManager.rollback(reserve);
+        assertThrows(AlreadyHandledReserveException.class, () -> accountManager.rollback(reserve));
+
+        assertEquals(before + 1, alreadyHandled.count());
+    }
+
+    private static String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+}
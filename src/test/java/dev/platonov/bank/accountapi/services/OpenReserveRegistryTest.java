@@ -0,0 +1,98 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.models.Reserve;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenReserveRegistryTest {
+    private static final long ACCOUNT_ID = 1;
+
+    @Test
+    void get_PutReserve_SameReserve() {
+        var registry = new OpenReserveRegistry(List::of, Duration.ofHours(1), Duration.ofMinutes(1));
+        var compact = Reserve.withdraw(getNewId(), ACCOUNT_ID, new BigDecimal("10.25"));
+        var large = Reserve.deposit(getNewId(), ACCOUNT_ID, new BigDecimal(Long.MAX_VALUE).multiply(BigDecimal.TEN));
+
+        registry.put(compact);
+        registry.put(large);
+
+        assertEquals(Optional.of(compact), registry.get(compact.getId()));
+        assertEquals(Optional.of(large), registry.get(large.getId()));
+    }
+
+    @Test
+    void evictExpired_OldReserve_Removed() {
+        var registry = new OpenReserveRegistry(List::of, Duration.ofHours(1), Duration.ofMinutes(1));
+        var old = Reserve.builder()
+                .id(getNewId())
+                .accountId(ACCOUNT_ID)
+                .amount(BigDecimal.ONE)
+                .type(ReserveType.DEPOSIT)
+                .createdAt(LocalDateTime.now().minusHours(2))
+                .build();
+        var fresh = Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.ONE);
+        registry.put(old);
+        registry.put(fresh);
+
+        registry.evictExpired();
+
+        assertEquals(Optional.empty(), registry.get(old.getId()));
+        assertEquals(Optional.of(fresh), registry.get(fresh.getId()));
+    }
+
+    @Test
+    void get_PastExpiresAt_Empty() {
+        var registry = new OpenReserveRegistry(List::of, Duration.ofHours(1), Duration.ofMinutes(1));
+        var now = LocalDateTime.now();
+        var overdue = Reserve.builder()
+                .id(getNewId())
+                .accountId(ACCOUNT_ID)
+                .amount(BigDecimal.ONE)
+                .type(ReserveType.WITHDRAW)
+                .createdAt(now)
+                .expiresAt(now.minusSeconds(1))
+                .build();
+        var due = Reserve.builder()
+                .id(getNewId())
+                .accountId(ACCOUNT_ID)
+                .amount(BigDecimal.ONE)
+                .type(ReserveType.WITHDRAW)
+                .createdAt(now)
+                .expiresAt(now.plusMinutes(5))
+                .build();
+        registry.put(overdue);
+        registry.put(due);
+
+        assertEquals(Optional.empty(), registry.get(overdue.getId()));
+        assertEquals(Optional.of(due), registry.get(due.getId()));
+
+        registry.evictExpired();
+
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void reload_LoadedReserves_Registered() {
+        var loaded = Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.ONE);
+        var registry = new OpenReserveRegistry(() -> List.of(loaded), Duration.ofHours(1), Duration.ofMinutes(1));
+        registry.put(Reserve.deposit(getNewId(), ACCOUNT_ID, BigDecimal.ONE));
+
+        registry.reload();
+
+        assertEquals(1, registry.size());
+        assertEquals(Optional.of(loaded), registry.get(loaded.getId()));
+    }
+
+    private String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,129 @@
+package dev.platonov.bank.accountapi.services;
+
+import dev.platonov.bank.accountapi.TestWithPostgresContainer;
+import dev.platonov.bank.accountapi.exceptions.AlreadyHandledReserveException;
+import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
+import dev.platonov.bank.accountapi.exceptions.ReserveConflictException;
+import dev.platonov.bank.accountapi.models.DenyReason;
+import dev.platonov.bank.accountapi.models.ReserveOption;
+import dev.platonov.bank.accountapi.models.ReserveType;
+import dev.platonov.bank.accountapi.repositories.ReserveRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// serializable, so the retried transaction is the one under test
+@SpringBootTest(properties = {
+        "spring.main.web-application-type=reactive",
+        "account-api.reserve.transaction.strategy=serializable"
+})
+@ActiveProfiles("reactive")
+@Sql({"/data.sql"})
+class ReactiveAccountManagerTest extends TestWithPostgresContainer {
+    private static final long ACCOUNT_ID = 1; // sync with test/resources/data.sql
+    private static final BigDecimal ACCOUNT_AMOUNT = new BigDecimal(1000); // sync with test/resources/data.sql
+    private static final long NOT_EXISTING_ACCOUNT_ID = 0;
+
+    @Autowired
+    ReactiveAccountManager accountManager;
+
+    @Autowired
+    ReserveRepository reserveRepository;
+
+    @Test
+    void commit_Deposit_ReturnsIncreasedAccount() {
+        var account = accountManager.reserveDeposit(getNewId(), ACCOUNT_ID, BigDecimal.TEN)
+                .flatMap(accountManager::commit)
+                .block();
+
+        assertNotNull(account);
+        assertEquals(0, ACCOUNT_AMOUNT.add(BigDecimal.TEN).compareTo(account.getAmount()));
+    }
+
+    @Test
+    void reserveWithdraw_NotEnoughMoney_Denied() {
+        StepVerifier.create(accountManager.reserveWithdraw(getNewId(), ACCOUNT_ID, ACCOUNT_AMOUNT.add(BigDecimal.ONE)))
+                .expectErrorSatisfies(e -> assertEquals(DenyReason.NOT_ENOUGH_MONEY,
+                        ((DeniedReserveException) e).getDenyReason()))
+                .verify();
+    }
+
+    @Test
+    void rollback_AlreadyRolledBack_Errors() {
+        var reserve = accountManager.reserveWithdraw(getNewId(), ACCOUNT_ID, BigDecimal.TEN).block();
+        assertNotNull(reserve);
+
+        StepVerifier.create(accountManager.rollback(reserve))
+                .verifyComplete();
+        StepVerifier.create(accountManager.rollback(reserve))
+                .verifyError(AlreadyHandledReserveException.class);
+        StepVerifier.create(accountManager.getReserve(reserve.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void reserveAll_MixedBatch_ResultPerOption() {
+        var duplicateId = getNewId();
+        var options = List.of(
+                option(getNewId(), ACCOUNT_ID, ReserveType.WITHDRAW, ACCOUNT_AMOUNT),
+                option(getNewId(), ACCOUNT_ID, ReserveType.WITHDRAW, BigDecimal.ONE),
+                option(getNewId(), ACCOUNT_ID, ReserveType.WITHDRAW, BigDecimal.ZERO),
+                option(duplicateId, ACCOUNT_ID, ReserveType.DEPOSIT, BigDecimal.ONE),
+                option(duplicateId, ACCOUNT_ID, ReserveType.DEPOSIT, BigDecimal.ONE),
+                option(getNewId(), NOT_EXISTING_ACCOUNT_ID, ReserveType.DEPOSIT, BigDecimal.ONE)
+        );
+
+        var results = accountManager.reserveAll(options).block();
+
+        assertNotNull(results);
+        assertEquals(options.size(), results.size());
+        assertTrue(results.get(0).isReserved());
+        assertEquals(DenyReason.NOT_ENOUGH_MONEY, results.get(1).getDenyReason());
+        assertEquals(DenyReason.EMPTY_RESERVE, results.get(2).getDenyReason());
+        assertTrue(results.get(3).isReserved());
+        assertEquals(DenyReason.NOT_UNIQUE_ID, results.get(4).getDenyReason());
+        assertEquals(DenyReason.ACCOUNT_NOT_FOUND, results.get(5).getDenyReason());
+    }
+
+    @Test
+    void reserveWithdraw_Concurrent_NeverOverdraws() {
+        var withdraws = 10;
+        var amount = ACCOUNT_AMOUNT.divide(BigDecimal.valueOf(withdraws / 2)); // only half of them fit
+
+        var reserved = Flux.range(0, withdraws)
+                .flatMap(i -> accountManager.reserveWithdraw(getNewId(), ACCOUNT_ID, amount)
+                        .map(reserve -> 1)
+                        .onErrorResume(e -> e instanceof DeniedReserveException
+                                || e instanceof ReserveConflictException, e -> Mono.just(0)))
+                .reduce(0, Integer::sum)
+                .block();
+
+        assertNotNull(reserved);
+        assertTrue(reserved <= withdraws / 2, "reserved " + reserved);
+        assertTrue(reserveRepository.getInconsistentReservedWithdrawAccountIds().isEmpty());
+    }
+
+    private static ReserveOption option(String id, long accountId, ReserveType type, BigDecimal amount) {
+        return ReserveOption.builder()
+                .id(id)
+                .accountId(accountId)
+                .reserveType(type)
+                .amount(amount)
+                .build();
+    }
+
+    private static String getNewId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,87 @@
+package dev.platonov.bank.accountapi.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReserveEventPublisherTest {
+    private static final String BINDING = "prepareReserve-out-0";
+    private static final Map<String, String> EVENT = Map.of("id", "1");
+
+    // completes the sends only when told to, like a broker that hasn't acked yet
+    private final MockProducer<String, byte[]> producer = new MockProducer<>(false,
+            new StringSerializer(), new ByteArraySerializer()) {
+        @Override
+        public void close(Duration timeout) { // KafkaTemplate closes the producer after every send
+        }
+    };
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void flush() {
+        producer.flush();
+    }
+
+    @Test
+    void send_Acked_CompletesAndReleasesPermit() {
+        var publisher = publisher(2, Duration.ofSeconds(1));
+
+        var sent = publisher.send(BINDING, EVENT);
+
+        assertFalse(sent.isDone());
+        assertEquals(1, publisher.getInFlight());
+        assertEquals("topic-" + BINDING, producer.history().get(0).topic());
+
+        producer.completeNext();
+
+        assertDoesNotThrow(sent::join);
+        assertEquals(0, publisher.getInFlight());
+    }
+
+    @Test
+    void send_NoPermitWithinTimeout_FailsWithoutSending() {
+        var publisher = publisher(1, Duration.ofMillis(10));
+        var waiting = publisher.send(BINDING, EVENT);
+
+        var rejected = publisher.send(BINDING, EVENT);
+
+        var e = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, producer.history().size());
+        assertEquals(1, publisher.getInFlight());
+        assertEquals(1, registry.get("reserve.events.send.failures").counter().count());
+        assertFalse(waiting.isDone());
+    }
+
+    @Test
+    void send_BrokerFails_CompletesExceptionallyAndReleasesPermit() {
+        var publisher = publisher(1, Duration.ofMillis(10));
+        var sent = publisher.send(BINDING, EVENT);
+
+        producer.errorNext(new IllegalStateException("the broker is down"));
+
+        var e = assertThrows(CompletionException.class, sent::join);
+        assertNotNull(e.getCause());
+        assertEquals(0, publisher.getInFlight());
+        assertEquals(1, registry.get("reserve.events.send.failures").counter().count());
+
+        publisher.send(BINDING, EVENT); // the permit is back
+        assertEquals(2, producer.history().size());
+    }
+
+    private ReserveEventPublisher publisher(int maxInFlight, Duration permitTimeout) {
+        return new ReserveEventPublisher(() -> producer, new ObjectMapper(), binding -> "topic-" + binding,
+                maxInFlight, permitTimeout, registry);
+    }
+}
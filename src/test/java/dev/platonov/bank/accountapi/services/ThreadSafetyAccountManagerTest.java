@@ -2,6 +2,7 @@ package dev.platonov.bank.accountapi.services;
 
 import dev.platonov.bank.accountapi.exceptions.DeniedReserveException;
 import dev.platonov.bank.accountapi.models.Account;
+import dev.platonov.bank.accountapi.models.Money;
 import org.junit.jupiter.api.RepeatedTest;
 
 import java.math.BigDecimal;
@@ -17,7 +18,7 @@ public interface ThreadSafetyAccountManagerTest {
     BigDecimal regularDepositAmount = ACCOUNT_AMOUNT.add(new BigDecimal("0.25"));
     BigDecimal legalWithdrawAmount = regularDepositAmount
             .add(new BigDecimal("2.5")); // ACCOUNT_AMOUNT / (SAMPLES_NUMBER * THREAD_NUMBER)
-    BigDecimal illegalWithdrawAmount = new BigDecimal(Long.MAX_VALUE); // sync with test/resources/data.sql
+    BigDecimal illegalWithdrawAmount = Money.MAX_AMOUNT; // the largest amount in bigint minor units
 
     BigDecimal ZERO_AMOUNT = new BigDecimal("0.00");
     int SAMPLES_NUMBER = 100;
@@ -0,0 +1,28 @@
+package dev.platonov.bank.accountapi.services;
+
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+/**
+ * {@link ExecutionModeBenchmarkTest} with account-api.virtual-threads.enabled:
+ * {@code mvn test -Dbenchmark=true -Dtest=VirtualThreadExecutionModeBenchmarkTest} on JDK 21+.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "account-api.virtual-threads.enabled=true",
+        "server.tomcat.threads.max=" + ExecutionModeBenchmarkTest.PLATFORM_THREADS,
+        "spring.datasource.hikari.maximum-pool-size=" + ExecutionModeBenchmarkTest.POOL_SIZE,
+        "account-api.account-cache.enabled=false"})
+@Import(ExecutionModeBenchmarkTest.SlowAccountController.class)
+@Sql({"/data.sql"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledIf("dev.platonov.bank.accountapi.configs.VirtualThreads#isSupported") // before the context fails to start
+class VirtualThreadExecutionModeBenchmarkTest extends ExecutionModeBenchmarkTest {
+
+    @Override
+    String mode() {
+        return "virtual";
+    }
+}
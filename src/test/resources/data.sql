@@ -3,8 +3,14 @@ BEGIN TRANSACTION;
 DELETE FROM reserves
 WHERE id != '';
 
+DELETE FROM reserve_ids;
+
+DELETE FROM reserve_outbox;
+
+UPDATE accounts SET reserved_withdraw = 0 WHERE reserved_withdraw <> 0;
+
 DELETE FROM accounts WHERE id = 1;
 
-INSERT INTO accounts VALUES (1, 1000, true, now(), now()) ON CONFLICT DO NOTHING ;
+INSERT INTO accounts VALUES (1, 100000, true, now(), now()) ON CONFLICT DO NOTHING ; -- 1000.00 in minor units
 
 END TRANSACTION ;